@@ -0,0 +1,124 @@
+package com.xenosync.sleuthkit;
+
+import org.sleuthkit.datamodel.BlackboardArtifact;
+import org.sleuthkit.datamodel.BlackboardAttribute;
+import org.sleuthkit.datamodel.CaseDbProfile;
+import org.sleuthkit.datamodel.SleuthkitCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures reads and blackboard writes per second on a copy of a case
+ * database while both run at once, with the default (rollback journal)
+ * profile and with the WAL profile. Readers look files and artifacts up
+ * while one writer adds an artifact with an attribute per file, as an
+ * ingest module would.
+ *
+ * usage: CaseDbBenchmark [case db] [reader threads] [seconds]
+ */
+public class CaseDbBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String db = args.length > 0 ? args[0] : "src/main/resources/M1126.db";
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        run("rollback journal", db, CaseDbProfile.defaults(), readers, seconds);
+        run("WAL", db, CaseDbProfile.wal(), readers, seconds);
+    }
+
+    private static void run(String name, String db, CaseDbProfile profile, int readers, int seconds) throws Exception {
+        File copy = File.createTempFile("casedb-benchmark", ".db");
+        copy.deleteOnExit();
+        copyFile(new File(db), copy);
+
+        final SleuthkitCase sleuthkitCase = SleuthkitCase.openCase(copy.getAbsolutePath(), profile);
+        final List<Long> fileIds = sleuthkitCase.findAllFileIdsWhere("size > 0");
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong reads = new AtomicLong();
+        final AtomicLong writes = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        Thread[] threads = new Thread[readers + 1];
+        for (int i = 0; i < readers; i++) {
+            final int offset = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int next = offset;
+                    while (running.get()) {
+                        try {
+                            long id = fileIds.get(next++ % fileIds.size());
+                            sleuthkitCase.getAbstractFileById(id);
+                            sleuthkitCase.getBlackboardArtifacts(BlackboardArtifact.ARTIFACT_TYPE.TSK_GEN_INFO);
+                            reads.incrementAndGet();
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        threads[readers] = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int next = 0;
+                while (running.get()) {
+                    try {
+                        long id = fileIds.get(next++ % fileIds.size());
+                        BlackboardArtifact artifact = sleuthkitCase.newBlackboardArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_GEN_INFO, id);
+                        artifact.addAttribute(new BlackboardAttribute(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_COMMENT.getTypeID(),
+                                "CaseDbBenchmark", "benchmark " + next));
+                        writes.incrementAndGet();
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        sleuthkitCase.close();
+        copy.delete();
+        new File(copy.getAbsolutePath() + "-wal").delete();
+        new File(copy.getAbsolutePath() + "-shm").delete();
+
+        System.out.println(String.format("%-16s %d readers: %8.0f reads/s, %6.0f artifact writes/s, %d errors",
+                name, readers, reads.get() / elapsed, writes.get() / elapsed, errors.get()));
+    }
+
+    private static void copyFile(File from, File to) throws IOException {
+        InputStream in = new FileInputStream(from);
+        try {
+            OutputStream out = new FileOutputStream(to);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
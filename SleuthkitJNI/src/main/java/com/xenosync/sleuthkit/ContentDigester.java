@@ -0,0 +1,115 @@
+package com.xenosync.sleuthkit;
+
+import org.apache.commons.codec.binary.Hex;
+import org.sleuthkit.datamodel.Content;
+import org.sleuthkit.datamodel.ReadContentInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Reads a Content's bytes from the image exactly once, feeding the MD5 and
+ * SHA-1 digests and keeping the first and last bytes for DROID signature
+ * matching. Nothing is written to disk.
+ */
+public class ContentDigester {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static class Result {
+        private final String md5;
+        private final String sha1;
+        private final byte[] head;
+        private final byte[] tail;
+        private final long size;
+
+        Result(String md5, String sha1, byte[] head, byte[] tail, long size) {
+            this.md5 = md5;
+            this.sha1 = sha1;
+            this.head = head;
+            this.tail = tail;
+            this.size = size;
+        }
+
+        public String getMd5() {
+            return md5;
+        }
+
+        public String getSha1() {
+            return sha1;
+        }
+
+        public byte[] getHead() {
+            return head;
+        }
+
+        public byte[] getTail() {
+            return tail;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * @param content the content to read
+     * @param windowSize bytes to keep from each end of the content, such as
+     * the detector's getScanWindow()
+     */
+    public static Result digest(Content content, int windowSize) throws IOException {
+        MessageDigest md5;
+        MessageDigest sha1;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+            sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] head = new byte[(int) Math.min(content.getSize(), windowSize)];
+        //tail is a ring buffer holding the most recent windowSize bytes read
+        byte[] ring = new byte[head.length];
+        long total = 0;
+
+        InputStream in = new ReadContentInputStream(content);
+        try {
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                md5.update(buffer, 0, len);
+                sha1.update(buffer, 0, len);
+
+                if (total < head.length) {
+                    System.arraycopy(buffer, 0, head, (int) total, (int) Math.min(len, head.length - total));
+                }
+                if (ring.length > 0) {
+                    int from = Math.max(0, len - ring.length);
+                    int pos = (int) ((total + from) % ring.length);
+                    for (int i = from; i < len; ) {
+                        int n = Math.min(len - i, ring.length - pos);
+                        System.arraycopy(buffer, i, ring, pos, n);
+                        i += n;
+                        pos = (pos + n) % ring.length;
+                    }
+                }
+                total += len;
+            }
+        } finally {
+            in.close();
+        }
+
+        if (total < head.length) {
+            head = Arrays.copyOf(head, (int) total);
+        }
+        byte[] tail = new byte[(int) Math.min(total, ring.length)];
+        int start = (int) ((total - tail.length) % Math.max(1, ring.length));
+        int first = Math.min(tail.length, ring.length - start);
+        System.arraycopy(ring, start, tail, 0, first);
+        System.arraycopy(ring, 0, tail, first, tail.length - first);
+
+        return new Result(Hex.encodeHexString(md5.digest()), Hex.encodeHexString(sha1.digest()), head, tail, total);
+    }
+}
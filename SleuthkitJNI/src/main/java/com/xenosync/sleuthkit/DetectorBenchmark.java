@@ -0,0 +1,44 @@
+package com.xenosync.sleuthkit;
+
+import uk.bl.wap.nanite.droid.DroidBinarySignatureDetector;
+import uk.bl.wap.nanite.droid.SeekableSource;
+
+import java.io.RandomAccessFile;
+
+/**
+ * Measures the per-file cost of DROID identification with a detector built
+ * for every file, as NaniteWrapper used to do, against the shared detector.
+ *
+ * usage: DetectorBenchmark <file> [iterations]
+ */
+public class DetectorBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String path = args[0];
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            identify(new DroidBinarySignatureDetector(), path);
+        }
+        long perFile = (System.nanoTime() - start) / iterations;
+        System.out.println("detector per file: " + perFile / 1000 + " us/file");
+
+        DroidBinarySignatureDetector shared = NaniteWrapper.getDetector();
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            identify(shared, path);
+        }
+        long sharedPerFile = (System.nanoTime() - start) / iterations;
+        System.out.println("shared detector:   " + sharedPerFile / 1000 + " us/file");
+    }
+
+    private static String identify(DroidBinarySignatureDetector detector, String path) throws Exception {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            return detector.getMimeType(SeekableSource.of(file), path);
+        } finally {
+            file.close();
+        }
+    }
+}
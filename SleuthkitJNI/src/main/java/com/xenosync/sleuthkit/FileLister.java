@@ -1,8 +1,7 @@
 package com.xenosync.sleuthkit;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.configuration.ConfigurationException;
-import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
 import org.apache.tika.Tika;
 import org.sleuthkit.datamodel.*;
 import org.sleuthkit.datamodel.File;
@@ -13,74 +12,75 @@ import java.io.*;
 import java.util.List;
 
 public class FileLister {
+    private static final Logger log = Logger.getLogger(FileLister.class.getName());
     private Image currentImage;
     private Tika tika = new Tika();
+    //bytes to keep from each end of a file for DROID
+    private final int scanWindow;
 
-    FileLister(String db) throws TskCoreException, IOException, SignatureParseException, SignatureFileException, ConfigurationException, InterruptedException {
+    FileLister(String db, int threads, int maxInFlight) throws TskCoreException, InterruptedException, IOException,
+            ConfigurationException, SignatureParseException, SignatureFileException {
+        scanWindow = NaniteWrapper.getDetector().getScanWindow();
 
         SleuthkitCase sleuthkitCase = SleuthkitCase.openCase(db);
-
-        List<Image> images = sleuthkitCase.getImages();
-        for(Image image: images){
-            currentImage = image;
-            System.out.println(image.getName());
-            if(image.hasChildren()){
-                for(Content content: image.getChildren()){
-                    recurseContent(content);
+        TraversalEngine engine = new TraversalEngine(threads, maxInFlight, new TraversalEngine.FileHandler() {
+            @Override
+            public String process(File file) throws Exception {
+                return processFile(file);
+            }
+        }, System.out);
+
+        IdentificationCache cache = NaniteWrapper.getCache();
+        try {
+            //load the whole tree up front so the traversal does not query per directory
+            List<Image> images = sleuthkitCase.loadCaseTree().getImages();
+            for(Image image: images){
+                currentImage = image;
+                System.out.println(image.getName());
+                if(image.hasChildren()){
+                    for(Content content: image.getChildren()){
+                        engine.traverse(content);
+                    }
                 }
             }
+            log.info("identification cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+        } finally {
+            engine.shutdown();
+            cache.close();
         }
     }
 
-    private void recurseContent(Content content) throws TskCoreException, IOException, SignatureParseException, SignatureFileException, ConfigurationException, InterruptedException {
-        if(content instanceof File){
-            File file =  (File) content;
-
-            //copy the bytestream from image to tmp file
-            InputStream is = new BufferedInputStream(new ReadContentInputStream(file));
-            FileOutputStream fos = new FileOutputStream("/tmp/" +  file.getName());
-            IOUtils.copy(is, fos);
-            is.close();
-            fos.close();
-
-            java.io.File tmpFile = new java.io.File("/tmp", file.getName());
-            if(tmpFile.exists() && DigestUtils.md5Hex(new FileInputStream(tmpFile)).equals(file.getMd5Hash())){
-                String path = file.getUniquePath();
-                /*
-                System.out.println("\t" + file.getName());
- 				System.out.println("\t\tbytes: " + file.getSize());
-				System.out.println("\t\tmd5: " + file.getMd5Hash());
-                System.out.println("\t\tsha" + new Hash().calculateSha1(file));
-                System.out.println("\t\tTIKA: " + tika.detect(new BufferedInputStream(new ReadContentInputStream(file))));
-                System.out.println("\t\tFIDO: " + fido(tmpFile));
-                 */
-                try{
-                    //NaniteWrapper nanite = new NaniteWrapper(tmpFile, file.getMd5Hash());
-                    NaniteWrapper nanite = new NaniteWrapper(new BufferedInputStream(new ReadContentInputStream(file)), path);
-
-                } catch (Exception e){
-
-                    System.err.println("\t\tNANITE FAILED: " + e);
-                }
-
-
-
-
-            } else {
-
-                System.err.println("checksum in image does not match or tmp file does not exist");
+    private String processFile(File file) throws TskCoreException, IOException {
+        StringBuilder sb = new StringBuilder();
+        String path = file.getUniquePath();
+        sb.append("\t").append(path).append("\n");
+
+        //one pass over the bytestream in the image for both checksums and the DROID windows
+        ContentDigester.Result digest = ContentDigester.digest(file, scanWindow);
+
+        if(digest.getMd5().equals(file.getMd5Hash())){
+            sb.append("\t\tsha1: ").append(digest.getSha1()).append("\n");
+            /*
+            System.out.println("\t" + file.getName());
+            System.out.println("\t\tbytes: " + file.getSize());
+            System.out.println("\t\tmd5: " + file.getMd5Hash());
+            System.out.println("\t\tTIKA: " + tika.detect(new BufferedInputStream(new ReadContentInputStream(file))));
+             */
+            try{
+                NaniteWrapper nanite = new NaniteWrapper(digest, path);
+                sb.append("\t\tNANITE: ").append(nanite.getMimeType()).append("\n");
+
+            } catch (Exception e){
+
+                sb.append("\t\tNANITE FAILED: ").append(e).append("\n");
             }
 
-            tmpFile.delete();
-
+        } else {
 
+            sb.append("\t\tchecksum in image does not match\n");
         }
 
-        if(content.hasChildren()){
-            for(Content child: content.getChildren()){
-                recurseContent(child);
-            }
-        }
+        return sb.toString();
     }
 
     private String fido(java.io.File file) throws IOException, InterruptedException {
@@ -99,6 +99,9 @@ public class FileLister {
     }
 
     public static void main(String[] args) throws Exception {
-        new FileLister("src/main/resources/M1126.db");
+        String db = args.length > 0 ? args[0] : "src/main/resources/M1126.db";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int maxInFlight = args.length > 2 ? Integer.parseInt(args[2]) : threads * 4;
+        new FileLister(db, threads, maxInFlight);
     }
 }
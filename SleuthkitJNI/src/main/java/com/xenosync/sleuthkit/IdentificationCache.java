@@ -0,0 +1,117 @@
+package com.xenosync.sleuthkit;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the identification result for each MD5 seen, so repeated content
+ * (system DLLs, fonts, installer payloads) is only matched against the
+ * signatures once. Entries are evicted least recently used first once there
+ * are more than maxEntries.
+ *
+ * If a store file is given, results are appended to it as they are found and
+ * read back on the next run. The store's first line records the signature
+ * file version it was built with; a store from another version is discarded.
+ */
+public class IdentificationCache {
+    private static final String VERSION_PREFIX = "#version ";
+
+    private final Map<String, String> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private PrintWriter store;
+
+    public IdentificationCache(final int maxEntries) {
+        entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Load any results stored by a previous run with the same signature version
+     * and append new results to the store from now on.
+     * Call before the cache is shared between threads.
+     */
+    public synchronized void open(java.io.File storeFile, int sigFileVersion) throws IOException {
+        String header = VERSION_PREFIX + sigFileVersion;
+        boolean current = false;
+
+        if (storeFile.exists()) {
+            BufferedReader reader = new BufferedReader(new FileReader(storeFile));
+            try {
+                current = header.equals(reader.readLine());
+                String line;
+                while (current && (line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab > 0) {
+                        entries.put(line.substring(0, tab), line.substring(tab + 1));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        //rewrite the store with just the entries kept, so it does not grow from run to run
+        store = new PrintWriter(new FileWriter(storeFile));
+        store.println(header);
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            store.println(entry.getKey() + "\t" + entry.getValue());
+        }
+        store.flush();
+    }
+
+    /**
+     * @return the stored MIME type for the given MD5, or null if not yet identified
+     */
+    public synchronized String get(String md5) {
+        if (md5 == null) {
+            return null;
+        }
+        String mimeType = entries.get(md5);
+        if (mimeType != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return mimeType;
+    }
+
+    public synchronized void put(String md5, String mimeType) {
+        if (md5 == null || mimeType == null) {
+            return;
+        }
+        if (entries.put(md5, mimeType) == null && store != null) {
+            store.println(md5 + "\t" + mimeType);
+            store.flush();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void close() {
+        if (store != null) {
+            store.close();
+            store = null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.xenosync.sleuthkit;
+
+import org.sleuthkit.datamodel.CaseDbIndexes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the case database's hot file lookups on a copy of a case database,
+ * first without the secondary indexes of CaseDbIndexes (a scan of tsk_files
+ * per lookup) and then with them, and prints the query plan SQLite chose
+ * each time.
+ *
+ * usage: IndexBenchmark [case db] [lookups per query]
+ */
+public class IndexBenchmark {
+
+    private static final String[][] QUERIES = {
+            {"files by md5", "SELECT * FROM tsk_files WHERE md5 = ? AND size > 0", "md5"},
+            {"file by name", "SELECT * FROM tsk_files WHERE name LIKE ? AND name NOT LIKE '%journal%' AND fs_obj_id = ?", "name"},
+            {"children", "SELECT tsk_objects.obj_id, tsk_objects.type FROM tsk_objects left join tsk_files "
+                    + "ON tsk_objects.obj_id=tsk_files.obj_id WHERE tsk_objects.par_obj_id = ?", "parent"},
+    };
+
+    public static void main(String[] args) throws Exception {
+        String db = args.length > 0 ? args[0] : "src/main/resources/M1126.db";
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        File copy = File.createTempFile("index-benchmark", ".db");
+        copy.deleteOnExit();
+        copyFile(new File(db), copy);
+
+        Class.forName("org.sqlite.JDBC");
+        Connection con = DriverManager.getConnection("jdbc:sqlite:" + copy.getAbsolutePath());
+        try {
+            List<Object[]> rows = new ArrayList<Object[]>();
+            Statement s = con.createStatement();
+            ResultSet rs = s.executeQuery("SELECT tsk_files.md5, tsk_files.name, tsk_files.fs_obj_id, tsk_objects.par_obj_id "
+                    + "FROM tsk_files JOIN tsk_objects ON tsk_files.obj_id = tsk_objects.obj_id");
+            while (rs.next()) {
+                rows.add(new Object[]{rs.getString(1), rs.getString(2), rs.getLong(3), rs.getLong(4)});
+            }
+            rs.close();
+            s.close();
+            System.out.println(rows.size() + " files, " + lookups + " lookups per query");
+
+            CaseDbIndexes.drop(con);
+            double[] scan = run(con, rows, lookups, "scan");
+            System.out.println("created " + CaseDbIndexes.create(con));
+            double[] index = run(con, rows, lookups, "index");
+
+            for (int q = 0; q < QUERIES.length; q++) {
+                System.out.println(String.format("%-14s scan: %8.3f ms/lookup   index: %8.3f ms/lookup   (%.1fx)",
+                        QUERIES[q][0], scan[q], index[q], scan[q] / index[q]));
+            }
+        } finally {
+            con.close();
+            copy.delete();
+        }
+    }
+
+    /**
+     * @return milliseconds per lookup for each query
+     */
+    private static double[] run(Connection con, List<Object[]> rows, int lookups, String label) throws SQLException {
+        double[] result = new double[QUERIES.length];
+        for (int q = 0; q < QUERIES.length; q++) {
+            System.out.println(label + " plan for " + QUERIES[q][0] + ": " + plan(con, QUERIES[q][1]));
+            PreparedStatement ps = con.prepareStatement(QUERIES[q][1]);
+            //one untimed pass to warm the page cache
+            for (int pass = 0; pass < 2; pass++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < lookups; i++) {
+                    Object[] row = rows.get((i * 7919) % rows.size());
+                    String kind = QUERIES[q][2];
+                    if (kind.equals("md5")) {
+                        ps.setString(1, row[0] == null ? "" : (String) row[0]);
+                    } else if (kind.equals("name")) {
+                        ps.setString(1, (String) row[1]);
+                        ps.setLong(2, (Long) row[2]);
+                    } else {
+                        ps.setLong(1, (Long) row[3]);
+                    }
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        rs.getLong(1);
+                    }
+                    rs.close();
+                }
+                result[q] = (System.nanoTime() - start) / 1e6 / lookups;
+            }
+            ps.close();
+        }
+        return result;
+    }
+
+    private static String plan(Connection con, String sql) throws SQLException {
+        PreparedStatement ps = con.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+        ResultSet rs = ps.executeQuery();
+        StringBuilder sb = new StringBuilder();
+        while (rs.next()) {
+            sb.append(rs.getString(rs.getMetaData().getColumnCount())).append("; ");
+        }
+        rs.close();
+        ps.close();
+        return sb.toString();
+    }
+
+    private static void copyFile(File from, File to) throws IOException {
+        InputStream in = new FileInputStream(from);
+        try {
+            OutputStream out = new FileOutputStream(to);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
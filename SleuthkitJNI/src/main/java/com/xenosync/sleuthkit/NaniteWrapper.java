@@ -2,8 +2,11 @@ package com.xenosync.sleuthkit;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.tika.mime.MediaType;
+import org.sleuthkit.datamodel.Content;
 import uk.bl.wap.nanite.droid.DroidBinarySignatureDetector;
+import uk.bl.wap.nanite.droid.DroidDetector;
 import uk.bl.wap.nanite.droid.Nanite;
+import uk.bl.wap.nanite.droid.SignatureCache;
 import uk.gov.nationalarchives.droid.core.SignatureParseException;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileException;
 
@@ -13,13 +16,70 @@ import java.io.IOException;
 import java.io.InputStream;
 
 public class NaniteWrapper {
+    private static volatile DroidBinarySignatureDetector detector;
+    private static volatile IdentificationCache cache;
+    private String mimeType;
+
     NaniteWrapper(File file, String md5) throws SignatureFileException, SignatureParseException, ConfigurationException, IOException {
         //System.out.println(file.getAbsolutePath());
         new Nanite(file.getAbsolutePath());
     }
 
     NaniteWrapper(InputStream is, String path) throws ConfigurationException, SignatureParseException, SignatureFileException, IOException {
-        DroidBinarySignatureDetector nan = new DroidBinarySignatureDetector();
-        System.out.println("\t\tNANITE: " + nan.getMimeType(is, path));
+        mimeType = getDetector().getMimeType(is, path);
+    }
+
+    NaniteWrapper(Content content, String path) throws ConfigurationException, SignatureParseException, SignatureFileException, IOException {
+        mimeType = getDetector().getMimeType(content, path);
+    }
+
+    NaniteWrapper(ContentDigester.Result digest, String path) throws ConfigurationException, SignatureParseException, SignatureFileException, IOException {
+        IdentificationCache results = getCache();
+        mimeType = results.get(digest.getMd5());
+        if (mimeType == null) {
+            mimeType = getDetector().getMimeType(digest.getHead(), digest.getTail(), digest.getSize(), path);
+            results.put(digest.getMd5(), mimeType);
+        }
+    }
+
+    /**
+     * Get the detector shared by all wrappers in this JVM. Building a detector
+     * parses the whole signature file, so it is done once; identification on
+     * the built detector is safe from many threads.
+     */
+    static DroidBinarySignatureDetector getDetector() throws ConfigurationException, SignatureParseException, SignatureFileException, IOException {
+        if (detector == null) {
+            synchronized (NaniteWrapper.class) {
+                if (detector == null) {
+                    detector = new DroidBinarySignatureDetector();
+                }
+            }
+        }
+        return detector;
+    }
+
+    /**
+     * Get the identification cache shared by all wrappers in this JVM, keyed
+     * by MD5. It holds nanite.cache.size entries (100000 by default) and is
+     * kept across runs in the file named by nanite.cache.file, if set.
+     */
+    static IdentificationCache getCache() throws IOException {
+        if (cache == null) {
+            synchronized (NaniteWrapper.class) {
+                if (cache == null) {
+                    IdentificationCache results = new IdentificationCache(Integer.getInteger("nanite.cache.size", 100000));
+                    String storeFile = System.getProperty("nanite.cache.file");
+                    if (storeFile != null) {
+                        results.open(new File(storeFile), SignatureCache.getVersion(DroidDetector.DROID_SIGNATURE_FILE));
+                    }
+                    cache = results;
+                }
+            }
+        }
+        return cache;
+    }
+
+    public String getMimeType() {
+        return mimeType;
     }
 }
@@ -0,0 +1,135 @@
+package com.xenosync.sleuthkit;
+
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.Content;
+import org.sleuthkit.datamodel.FileSystem;
+import org.sleuthkit.datamodel.Image;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.Volume;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how random 4 KB reads of one partition scale with threads. All
+ * threads share the same Volume (or, for an image with no volume system such
+ * as the bundled case, the same FileSystem) and the same file objects, so
+ * they all go through the same handles. Each run reads for a number of
+ * seconds with 1, 2, 4 ... up to the given number of threads, first from the
+ * partition itself and then from its files.
+ *
+ * The image block cache and raw image mapping are turned off, so that every
+ * read goes through libtsk. Needs the native Sleuth Kit library, and the
+ * image files where the case database says they are.
+ *
+ * usage: PartitionReadBenchmark [case db] [max threads] [seconds per run]
+ */
+public class PartitionReadBenchmark {
+
+    private static final int READ_SIZE = 4 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        String db = args.length > 0 ? args[0] : "src/main/resources/M1126.db";
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        SleuthkitCase sleuthkitCase = SleuthkitCase.openCase(db);
+        sleuthkitCase.getImageBlockCache().setMaxBytes(0);
+        sleuthkitCase.setRawImageMapping(false);
+        try {
+            Image image = sleuthkitCase.getImages().get(0);
+            List<FileSystem> fileSystems = image.getFileSystems();
+            if (fileSystems.isEmpty()) {
+                System.out.println(image.getName() + " has no file system");
+                return;
+            }
+            FileSystem fileSystem = fileSystems.get(0);
+            List<Volume> volumes = image.getVolumes();
+            Content partition = volumes.isEmpty() ? fileSystem : volumes.get(0);
+
+            List<Content> files = new ArrayList<Content>();
+            for (AbstractFile file : sleuthkitCase.findFilesWhere("fs_obj_id = " + fileSystem.getId() + " AND size > 0")) {
+                files.add(file);
+            }
+            List<Content> partitions = new ArrayList<Content>();
+            partitions.add(partition);
+            System.out.println(image.getName() + ": " + partition.getClass().getSimpleName() + " of " + partition.getSize()
+                    + " bytes, " + files.size() + " files, " + seconds + " s per run");
+
+            run("partition", partitions, maxThreads, seconds);
+            run("files", files, maxThreads, seconds);
+            System.out.println(sleuthkitCase.getHandleManager());
+        } finally {
+            sleuthkitCase.close();
+        }
+    }
+
+    private static void run(String what, List<Content> contents, int maxThreads, int seconds) throws InterruptedException {
+        //opens the handles and warms the page cache, untimed
+        measure(contents, 1, 1);
+        double single = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double readsPerSecond = measure(contents, threads, seconds);
+            if (threads == 1) {
+                single = readsPerSecond;
+            }
+            System.out.println(String.format("%-9s %3d threads %12.0f reads/s  %5.2fx", what, threads, readsPerSecond,
+                    single > 0 ? readsPerSecond / single : 0));
+        }
+    }
+
+    /**
+     * @return reads per second over all threads
+     */
+    private static double measure(final List<Content> contents, int threads, int seconds) throws InterruptedException {
+        final AtomicLong reads = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final long duration = seconds * 1000000000L;
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            final long seed = i;
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    byte[] buffer = new byte[READ_SIZE];
+                    long count = 0;
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    long end = System.nanoTime() + duration;
+                    while (System.nanoTime() < end) {
+                        Content content = contents.get(random.nextInt(contents.size()));
+                        long size = content.getSize();
+                        long offset = size > READ_SIZE ? (long) (random.nextDouble() * (size - READ_SIZE)) : 0;
+                        try {
+                            content.read(buffer, offset, Math.min(READ_SIZE, size));
+                            count++;
+                        } catch (Exception ex) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    reads.addAndGet(count);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = Math.max(1, System.nanoTime() - begin) / 1e9;
+        if (failures.get() > 0) {
+            System.out.println(failures.get() + " reads failed");
+        }
+        return reads.get() / elapsed;
+    }
+}
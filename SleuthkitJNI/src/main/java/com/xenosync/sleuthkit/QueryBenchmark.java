@@ -0,0 +1,150 @@
+package com.xenosync.sleuthkit;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares lookups per second for the case database's hot by-id and by-hash
+ * queries built by string concatenation on a new Statement, as SleuthkitCase
+ * used to run them, against the same queries on a prepared statement reused
+ * with new parameters. Each query is warmed up and then measured over several
+ * timed rounds, and the best and mean rates are printed.
+ *
+ * Runs straight on the database with the SQLite JDBC driver, so it needs no
+ * native Sleuth Kit library.
+ *
+ * usage: QueryBenchmark [case db] [rounds] [milliseconds per round]
+ */
+public class QueryBenchmark {
+
+    private interface Lookup {
+        void run(long id, String md5) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String db = args.length > 0 ? args[0] : "src/main/resources/M1126.db";
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+        Class.forName("org.sqlite.JDBC");
+        final Connection con = DriverManager.getConnection("jdbc:sqlite:" + db);
+        try {
+            final List<Long> ids = new ArrayList<Long>();
+            final List<String> md5s = new ArrayList<String>();
+            Statement s = con.createStatement();
+            ResultSet rs = s.executeQuery("SELECT obj_id, md5 FROM tsk_files");
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+                md5s.add(rs.getString(2) == null ? "" : rs.getString(2));
+            }
+            rs.close();
+            s.close();
+            System.out.println(ids.size() + " files, " + rounds + " rounds of " + millis + " ms");
+
+            compare("object by id", ids, md5s, rounds, millis,
+                    adHoc(con, "SELECT * FROM tsk_objects WHERE obj_id = %d LIMIT 1"),
+                    prepared(con, "SELECT * FROM tsk_objects WHERE obj_id = ? LIMIT 1"));
+            compare("parent info", ids, md5s, rounds, millis,
+                    adHoc(con, "SELECT parent.obj_id, parent.type FROM tsk_objects AS parent JOIN tsk_objects AS child "
+                            + "ON child.par_obj_id = parent.obj_id WHERE child.obj_id = %d"),
+                    prepared(con, "SELECT parent.obj_id, parent.type FROM tsk_objects AS parent JOIN tsk_objects AS child "
+                            + "ON child.par_obj_id = parent.obj_id WHERE child.obj_id = ?"));
+            compare("children info", ids, md5s, rounds, millis,
+                    adHoc(con, "SELECT tsk_objects.obj_id, tsk_objects.type FROM tsk_objects left join tsk_files "
+                            + "ON tsk_objects.obj_id=tsk_files.obj_id WHERE tsk_objects.par_obj_id = %d"),
+                    prepared(con, "SELECT tsk_objects.obj_id, tsk_objects.type FROM tsk_objects left join tsk_files "
+                            + "ON tsk_objects.obj_id=tsk_files.obj_id WHERE tsk_objects.par_obj_id = ?"));
+            compare("files by md5", ids, md5s, rounds, millis,
+                    new Lookup() {
+                        @Override
+                        public void run(long id, String md5) throws SQLException {
+                            Statement s = con.createStatement();
+                            drain(s.executeQuery("SELECT * FROM tsk_files WHERE md5 = '" + md5 + "' AND size > 0"));
+                            s.close();
+                        }
+                    },
+                    new Lookup() {
+                        private final PreparedStatement ps = con.prepareStatement("SELECT * FROM tsk_files WHERE md5 = ? AND size > 0");
+
+                        @Override
+                        public void run(long id, String md5) throws SQLException {
+                            ps.setString(1, md5);
+                            drain(ps.executeQuery());
+                        }
+                    });
+        } finally {
+            con.close();
+        }
+    }
+
+    private static Lookup adHoc(final Connection con, final String format) {
+        return new Lookup() {
+            @Override
+            public void run(long id, String md5) throws SQLException {
+                Statement s = con.createStatement();
+                drain(s.executeQuery(String.format(format, id)));
+                s.close();
+            }
+        };
+    }
+
+    private static Lookup prepared(final Connection con, final String sql) throws SQLException {
+        final PreparedStatement ps = con.prepareStatement(sql);
+        return new Lookup() {
+            @Override
+            public void run(long id, String md5) throws SQLException {
+                ps.setLong(1, id);
+                drain(ps.executeQuery());
+            }
+        };
+    }
+
+    private static void drain(ResultSet rs) throws SQLException {
+        while (rs.next()) {
+            rs.getLong(1);
+        }
+        rs.close();
+    }
+
+    private static void compare(String name, List<Long> ids, List<String> md5s, int rounds, long millis,
+                                Lookup adHoc, Lookup prepared) throws SQLException {
+        double[] adHocRates = measure(adHoc, ids, md5s, rounds, millis);
+        double[] preparedRates = measure(prepared, ids, md5s, rounds, millis);
+        System.out.println(String.format("%-14s ad hoc: %9.0f/s best %9.0f/s mean   prepared: %9.0f/s best %9.0f/s mean   (%.2fx)",
+                name, adHocRates[0], adHocRates[1], preparedRates[0], preparedRates[1], preparedRates[1] / adHocRates[1]));
+    }
+
+    /**
+     * @return the best and the mean lookups per second over the rounds, after
+     * one untimed warm-up round
+     */
+    private static double[] measure(Lookup lookup, List<Long> ids, List<String> md5s, int rounds, long millis) throws SQLException {
+        int next = 0;
+        double best = 0;
+        double total = 0;
+        for (int round = -1; round < rounds; round++) {
+            long count = 0;
+            long start = System.nanoTime();
+            long end = start + millis * 1000000L;
+            long now;
+            do {
+                int i = next++ % ids.size();
+                lookup.run(ids.get(i), md5s.get(i));
+                count++;
+                now = System.nanoTime();
+            } while (now < end);
+            if (round >= 0) {
+                double rate = count / ((now - start) / 1e9);
+                best = Math.max(best, rate);
+                total += rate;
+            }
+        }
+        return new double[]{best, total / rounds};
+    }
+}
@@ -0,0 +1,102 @@
+package com.xenosync.sleuthkit;
+
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.Content;
+import org.sleuthkit.datamodel.Image;
+import org.sleuthkit.datamodel.ReadContentInputStream;
+import org.sleuthkit.datamodel.SleuthkitCase;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares read throughput of ReadContentInputStream unbuffered, wrapped in
+ * a BufferedInputStream as Tika and DROID use it, against its read-ahead
+ * buffer of 1, 4 and 8 MB. Each mode reads the case's raw images
+ * (M1126-0018.001 and M1126-0019.001 for the bundled case) end to end, and
+ * then every file, in 8 KB reads, over a number of timed rounds after one
+ * untimed round.
+ *
+ * Raw images are memory mapped unless the third argument is false, when
+ * their reads go through libtsk. Needs the native Sleuth Kit library, and the
+ * image files where the case database says they are; the bundled case names
+ * them relative to the SleuthkitJNI directory.
+ *
+ * usage: StreamBenchmark [case db] [rounds] [map raw images]
+ */
+public class StreamBenchmark {
+
+    private static final int READ_SIZE = 8 * 1024;
+    private static final int[] BUFFER_SIZES = {0, 1024 * 1024, 4 * 1024 * 1024, 8 * 1024 * 1024};
+
+    public static void main(String[] args) throws Exception {
+        String db = args.length > 0 ? args[0] : "src/main/resources/M1126.db";
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        boolean mapRawImages = args.length > 2 ? Boolean.parseBoolean(args[2]) : true;
+
+        SleuthkitCase sleuthkitCase = SleuthkitCase.openCase(db);
+        sleuthkitCase.setRawImageMapping(mapRawImages);
+        try {
+            List<Content> images = new ArrayList<Content>();
+            for (Image image : sleuthkitCase.getImages()) {
+                images.add(image);
+                System.out.println(image.getName() + (image.isMemoryMapped() ? ": memory mapped" : ": read through libtsk"));
+            }
+            List<Content> files = new ArrayList<Content>();
+            for (AbstractFile file : sleuthkitCase.findFilesWhere("size > 0")) {
+                files.add(file);
+            }
+            System.out.println(images.size() + " images, " + files.size() + " files, " + rounds + " rounds");
+
+            for (int bufferSize : BUFFER_SIZES) {
+                String mode = bufferSize == 0 ? "unbuffered + BufferedInputStream" : "read-ahead " + (bufferSize >> 20) + " MB";
+                report(mode, "images", measure(images, bufferSize, rounds));
+                report(mode, "files", measure(files, bufferSize, rounds));
+            }
+        } finally {
+            sleuthkitCase.close();
+        }
+    }
+
+    private static void report(String mode, String what, double[] result) {
+        System.out.println(String.format("%-34s %-7s %8.1f MB/s  %10.0f reads/s", mode, what, result[0], result[1]));
+    }
+
+    /**
+     * @return MB per second and reads per second over the timed rounds
+     */
+    private static double[] measure(List<Content> contents, int bufferSize, int rounds) throws IOException {
+        byte[] readBuffer = new byte[READ_SIZE];
+        byte[] readAhead = bufferSize > 0 ? new byte[bufferSize] : null;
+        long bytes = 0;
+        long reads = 0;
+        long start = 0;
+        for (int round = -1; round < rounds; round++) {
+            if (round == 0) {
+                bytes = 0;
+                reads = 0;
+                start = System.nanoTime();
+            }
+            for (Content content : contents) {
+                InputStream in = new ReadContentInputStream(content, readAhead);
+                if (readAhead == null) {
+                    in = new BufferedInputStream(in);
+                }
+                try {
+                    int len;
+                    while ((len = in.read(readBuffer, 0, readBuffer.length)) != -1) {
+                        bytes += len;
+                        reads++;
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        }
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        return new double[]{bytes / 1048576.0 / seconds, reads / seconds};
+    }
+}
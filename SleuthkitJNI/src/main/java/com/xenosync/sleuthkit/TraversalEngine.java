@@ -0,0 +1,142 @@
+package com.xenosync.sleuthkit;
+
+import org.sleuthkit.datamodel.Content;
+import org.sleuthkit.datamodel.File;
+import org.sleuthkit.datamodel.TskCoreException;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Walks a content tree on the calling thread and hands every File to a pool
+ * of workers. Results are printed in the order the walk visited the files,
+ * which is name order within each directory, so the output does not depend
+ * on the pool size. A file whose processing fails is printed in its place,
+ * under its path, with the failure. At most maxInFlight files are queued or
+ * being processed at any time; the walk blocks on the oldest outstanding
+ * file once that limit is reached.
+ */
+public class TraversalEngine {
+
+    /**
+     * Per-file work run on a pool thread. The returned text is printed once
+     * all files visited before this one have been printed.
+     */
+    public interface FileHandler {
+        String process(File file) throws Exception;
+    }
+
+    private static final Comparator<Content> BY_NAME = new Comparator<Content>() {
+        @Override
+        public int compare(Content a, Content b) {
+            return a.getName().compareTo(b.getName());
+        }
+    };
+
+    private final ExecutorService pool;
+    private final int maxInFlight;
+    private final FileHandler handler;
+    private final PrintStream out;
+    private final LinkedList<Pending> inFlight = new LinkedList<Pending>();
+
+    private static class Pending {
+        private final File file;
+        private final Future<String> result;
+
+        Pending(File file, Future<String> result) {
+            this.file = file;
+            this.result = result;
+        }
+    }
+
+    public TraversalEngine(int threads, int maxInFlight, FileHandler handler, PrintStream out) {
+        if (threads < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("threads and maxInFlight must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.handler = handler;
+        this.out = out;
+        this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "filelister-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Walk the given content and all of its descendants, submitting every
+     * File found. Returns once every submitted file has been printed.
+     */
+    public void traverse(Content root) throws TskCoreException, InterruptedException {
+        walk(root);
+        while (!inFlight.isEmpty()) {
+            printHead();
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void walk(Content content) throws TskCoreException, InterruptedException {
+        if (content instanceof File) {
+            submit((File) content);
+        }
+
+        if (content.hasChildren()) {
+            List<Content> children = new ArrayList<Content>(content.getChildren());
+            Collections.sort(children, BY_NAME);
+            for (Content child : children) {
+                walk(child);
+            }
+        }
+    }
+
+    private void submit(final File file) throws InterruptedException {
+        if (inFlight.size() >= maxInFlight) {
+            printHead();
+        }
+        inFlight.add(new Pending(file, pool.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return handler.process(file);
+            }
+        })));
+    }
+
+    private void printHead() throws InterruptedException {
+        Pending head = inFlight.removeFirst();
+        try {
+            String result = head.result.get();
+            if (result != null) {
+                out.print(result);
+            }
+        } catch (ExecutionException e) {
+            out.print("\t" + pathOf(head.file) + "\n\t\tFAILED: " + e.getCause() + "\n");
+        }
+    }
+
+    private static String pathOf(File file) {
+        try {
+            return file.getUniquePath();
+        } catch (TskCoreException e) {
+            return file.getName();
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -34,12 +35,13 @@ public abstract class AbstractContent implements Content {
 	private final SleuthkitCase db;
 	private long objId;
 	private String name;
-	private Content parent;
-	private String uniquePath;
+	private volatile Content parent;
+	private volatile String uniquePath;
 	protected long parentId;
 	private volatile boolean hasChildren;
 	private volatile boolean checkedHasChildren;
 	private volatile int childrenCount;
+	private volatile CaseTree caseTree;
 	
 
 	protected AbstractContent(SleuthkitCase db, long obj_id, String name) {
@@ -58,25 +60,56 @@ public abstract class AbstractContent implements Content {
 		return this.name;
 	}
 
+	/*
+	 * This base implementation reads into a heap array and copies into the
+	 * buffer; content read by the native library overrides it to copy through
+	 * SleuthkitJNI's per-thread array instead of a new one per read.
+	 */
+	@Override
+	public int read(ByteBuffer buf, long offset) throws TskCoreException {
+		if (buf.hasArray() && buf.arrayOffset() + buf.position() == 0) {
+			int lenRead = read(buf.array(), offset, buf.remaining());
+			if (lenRead > 0) {
+				buf.position(lenRead);
+			}
+			return lenRead;
+		}
+		byte[] array = new byte[buf.remaining()];
+		int lenRead = read(array, offset, array.length);
+		if (lenRead > 0) {
+			buf.put(array, 0, lenRead);
+		}
+		return lenRead;
+	}
+
 	/*
 	 * This base implementation simply walks the hierarchy appending its own
-	 * name to the result of calling its parent's getUniquePath() method (with
-	 * interleaving forward slashes).
+	 * name to its parent's unique path (with interleaving forward slashes).
+	 * The parent's path comes from the case's table of path prefixes, so
+	 * siblings share one lookup of it.
 	 */
 	@Override
-	public synchronized String getUniquePath() throws TskCoreException {
-		if (uniquePath == null) {
-			uniquePath = "";
+	public String getUniquePath() throws TskCoreException {
+		String path = uniquePath;
+		if (path == null) {
+			path = "";
 			if (!name.isEmpty()) {
-				uniquePath = "/" + getName();
+				path = "/" + getName();
 			}
 
-			Content myParent = getParent();
-			if (myParent != null) {
-				uniquePath = myParent.getUniquePath() + uniquePath;
+			String parentPath = parentId != UNKNOWN_ID ? db.getCachedUniquePath(parentId) : null;
+			if (parentPath == null) {
+				Content myParent = getParent();
+				if (myParent != null) {
+					parentPath = db.cacheUniquePath(myParent);
+				}
+			}
+			if (parentPath != null) {
+				path = parentPath + path;
 			}
+			uniquePath = path;
 		}
-		return uniquePath;
+		return path;
 	}
 	
 	@Override
@@ -110,18 +143,25 @@ public abstract class AbstractContent implements Content {
 	}
 
 	@Override
-	public synchronized Content getParent() throws TskCoreException {
-		if (parent == null) {
-			ObjectInfo parentInfo = null;
-			try {
-				parentInfo = db.getParentInfo(this);
-			} catch (TskCoreException ex) {
-				// there is not parent; not an error if we've got an Image
-				return null;
+	public Content getParent() throws TskCoreException {
+		//locks only until the parent is known, reads of content call this
+		Content myParent = parent;
+		if (myParent == null) {
+			synchronized (this) {
+				if (parent == null) {
+					ObjectInfo parentInfo = null;
+					try {
+						parentInfo = db.getParentInfo(this);
+					} catch (TskCoreException ex) {
+						// there is not parent; not an error if we've got an Image
+						return null;
+					}
+					parent = db.getContentById(parentInfo.id);
+				}
+				myParent = parent;
 			}
-			parent = db.getContentById(parentInfo.id);
 		}
-		return parent;
+		return myParent;
 	}
 
 	void setParent(Content parent) {
@@ -138,6 +178,28 @@ public abstract class AbstractContent implements Content {
 		this.parentId = parentId;
 	}
 
+	/**
+	 * Mark this content as loaded with a case tree, which then answers for
+	 * its children
+	 *
+	 * @param caseTree the tree the content was loaded with
+	 * @param childrenCount the number of children the content has in the tree
+	 */
+	void setCaseTree(CaseTree caseTree, int childrenCount) {
+		this.childrenCount = childrenCount;
+		this.hasChildren = childrenCount > 0;
+		this.checkedHasChildren = true;
+		this.caseTree = caseTree;
+	}
+
+	/**
+	 * @return the case tree this content was loaded with, or null if it was
+	 * queried on its own
+	 */
+	CaseTree getCaseTree() {
+		return caseTree;
+	}
+
 	@Override
 	public long getId() {
 		return this.objId;
@@ -153,6 +215,28 @@ public abstract class AbstractContent implements Content {
 		return image;
 	}
 
+	/**
+	 * Make the native handle reads of this content go through. Called by the
+	 * case's HandleManager when the content has no open handle.
+	 *
+	 * @return a new, unopened handle, or null if the content is not read
+	 * through a native handle
+	 */
+	NativeHandle newNativeHandle() {
+		return null;
+	}
+
+	/**
+	 * Take a reference on the native handle of this content for a read;
+	 * release it when the read is done
+	 *
+	 * @return the acquired handle
+	 * @throws TskCoreException if the content has no native handle
+	 */
+	NativeHandle acquireNativeHandle() throws TskCoreException {
+		return db.getHandleManager().acquire(this);
+	}
+
 	/**
 	 * Gets handle of SleuthkitCase to which this content belongs
 	 *
@@ -21,6 +21,7 @@ package org.sleuthkit.datamodel;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -660,6 +661,31 @@ public abstract class AbstractFile extends AbstractContent {
 		return 0;
 	}
 
+	@Override
+	public final int read(ByteBuffer buf, long offset) throws TskCoreException {
+		//template method, as read(byte[], long, long)
+		if (localPathSet) {
+			return readLocal(buf, offset);
+		}
+		else {
+			return readInt(buf, offset);
+		}
+	}
+
+	/**
+	 * Internal custom read (non-local) into a buffer that child classes read
+	 * by the native library implement; by default reads through
+	 * readInt(byte[], long, long)
+	 *
+	 * @param buf buffer to read into, from its position up to its limit
+	 * @param offset start reading position in the file
+	 * @return number of bytes read
+	 * @throws TskCoreException exception thrown when file could not be read
+	 */
+	protected int readInt(ByteBuffer buf, long offset) throws TskCoreException {
+		return super.read(buf, offset);
+	}
+
 	/**
 	 * Local file path read support 
 	 * 
@@ -678,6 +704,63 @@ public abstract class AbstractFile extends AbstractContent {
 			return 0;
 		}
 
+		int bytesRead = 0;
+		RandomAccessFile handle = getLocalFileHandle();
+
+		try {
+			//move to the user request offset in the stream
+			long curOffset = handle.getFilePointer();
+			if (curOffset != offset) {
+				handle.seek(offset);
+			}
+			//note, we are always writing at 0 offset of user buffer
+			bytesRead = handle.read(buf, 0, (int) len);
+		} catch (IOException ex) {
+			final String msg = "Cannot read local file: " + this.toString();
+			logger.log(Level.SEVERE, msg, ex);
+			//local file could have been deleted / moved
+			throw new TskCoreException(msg, ex);
+		}
+
+		return bytesRead;
+	}
+
+	/**
+	 * Local file path read support into a buffer, with a positional read of
+	 * the file's channel
+	 *
+	 * @param buf buffer to read into, from its position up to its limit
+	 * @param offset start reading position in the file
+	 * @return number of bytes read, or -1 at the end of the file
+	 * @throws TskCoreException exception thrown when file could not be read
+	 */
+	protected final int readLocal(ByteBuffer buf, long offset) throws TskCoreException {
+		if (!localPathSet) {
+			throw new TskCoreException("Error reading local file, local path is not set");
+		}
+
+		if (isDir()) {
+			return 0;
+		}
+
+		try {
+			return getLocalFileHandle().getChannel().read(buf, offset);
+		} catch (IOException ex) {
+			final String msg = "Cannot read local file: " + this.toString();
+			logger.log(Level.SEVERE, msg, ex);
+			//local file could have been deleted / moved
+			throw new TskCoreException(msg, ex);
+		}
+	}
+
+	/**
+	 * Open the local file for reading, once
+	 *
+	 * @return the open local file
+	 * @throws TskCoreException exception thrown when the file does not exist
+	 * or cannot be read
+	 */
+	private RandomAccessFile getLocalFileHandle() throws TskCoreException {
 		getLocalFile();
 		if (!localFile.exists()) {
 			throw new TskCoreException("Error reading local file, it does not exist at local path: " + localAbsPath);
@@ -686,8 +769,6 @@ public abstract class AbstractFile extends AbstractContent {
 			throw new TskCoreException("Error reading local file, file not readable at local path: " + localAbsPath);
 		}
 
-		int bytesRead = 0;
-
 		if (localFileHandle == null) {
 			synchronized (this) {
 				if (localFileHandle == null) {
@@ -702,23 +783,7 @@ public abstract class AbstractFile extends AbstractContent {
 				}
 			}
 		}
-
-		try {
-			//move to the user request offset in the stream
-			long curOffset = localFileHandle.getFilePointer();
-			if (curOffset != offset) {
-				localFileHandle.seek(offset);
-			}
-			//note, we are always writing at 0 offset of user buffer
-			bytesRead = localFileHandle.read(buf, 0, (int) len);
-		} catch (IOException ex) {
-			final String msg = "Cannot read local file: " + this.toString();
-			logger.log(Level.SEVERE, msg, ex);
-			//local file could have been deleted / moved
-			throw new TskCoreException(msg, ex);
-		}
-
-		return bytesRead;
+		return localFileHandle;
 	}
 
 	/**
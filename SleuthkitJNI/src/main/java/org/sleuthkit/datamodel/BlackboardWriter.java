@@ -0,0 +1,495 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+
+/**
+ * Buffers blackboard artifacts and attributes from any number of threads and
+ * writes them in batches, one transaction and one JDBC batch per statement for
+ * each, rather than a transaction (and a MAX(artifact_id) lookup) per row as
+ * newBlackboardArtifact() and addBlackboardAttribute() do.
+ *
+ * A batch is written once batchRows rows are queued, or maxDelay milliseconds
+ * after the oldest queued row was added, whichever comes first. An artifact
+ * counts as one row plus one per attribute. Adding blocks while maxPendingRows
+ * rows are waiting to be written, so producers cannot outrun the database.
+ * Rows are visible to readers once written; call flush() to wait for that.
+ *
+ * If the writer thread stops before close() (it is interrupted, or fails
+ * outside a batch), the rows still queued are counted as failed, flush() and
+ * close() throw the error, and adding throws IllegalStateException.
+ *
+ * Close the writer before closing the case.
+ */
+public class BlackboardWriter {
+
+	private static final Logger logger = Logger.getLogger(BlackboardWriter.class.getName());
+	private static final String INSERT_ARTIFACT =
+			"INSERT INTO blackboard_artifacts (artifact_id, obj_id, artifact_type_id) VALUES (?, ?, ?)";
+	private static final String INSERT_STRING_ATTRIBUTE = insertAttribute("value_text");
+	private static final String INSERT_BYTE_ATTRIBUTE = insertAttribute("value_byte");
+	private static final String INSERT_INTEGER_ATTRIBUTE = insertAttribute("value_int32");
+	private static final String INSERT_LONG_ATTRIBUTE = insertAttribute("value_int64");
+	private static final String INSERT_DOUBLE_ATTRIBUTE = insertAttribute("value_double");
+	private static final String[] INSERTS = {INSERT_ARTIFACT, INSERT_STRING_ATTRIBUTE,
+		INSERT_BYTE_ATTRIBUTE, INSERT_INTEGER_ATTRIBUTE, INSERT_LONG_ATTRIBUTE, INSERT_DOUBLE_ATTRIBUTE};
+	private final SleuthkitCase db;
+	private final int batchRows;
+	private final long maxDelay;
+	private final int maxPendingRows;
+	private final Object lock = new Object();
+	private final ArrayDeque<Pending> queue = new ArrayDeque<Pending>();
+	private final Thread flusher;
+	//all guarded by lock
+	private int queuedRows = 0;
+	private long oldestQueuedAt = 0;
+	private long submittedRows = 0;
+	private long writtenRows = 0;
+	private long flushTarget = 0;
+	private long failedRows = 0;
+	private long batches = 0;
+	private long writeNanos = 0;
+	private TskCoreException lastError;
+	private boolean closed = false;
+	//set once the writer thread has stopped, for whatever reason
+	private boolean stopped = false;
+
+	/**
+	 * @param db case to write to
+	 * @param batchRows rows to write in one transaction
+	 * @param maxDelay longest time in milliseconds a row waits to be written
+	 * @param maxPendingRows rows that may wait before adding blocks
+	 */
+	public BlackboardWriter(SleuthkitCase db, int batchRows, long maxDelay, int maxPendingRows) {
+		this.db = db;
+		this.batchRows = batchRows;
+		this.maxDelay = maxDelay;
+		this.maxPendingRows = Math.max(maxPendingRows, batchRows);
+		flusher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					writeLoop();
+				} catch (Throwable ex) {
+					logger.log(Level.SEVERE, "Blackboard writer failed", ex);
+					synchronized (lock) {
+						lastError = asTskCoreException(ex);
+					}
+				} finally {
+					stop();
+				}
+			}
+		}, "blackboard-writer");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Queue a new artifact with its attributes.
+	 *
+	 * @param artifactType type of the artifact
+	 * @param objId content object id the artifact is about
+	 * @param attributes attributes of the artifact, may be empty
+	 * @throws InterruptedException if interrupted waiting for room in the queue
+	 */
+	public void addArtifact(ARTIFACT_TYPE artifactType, long objId, Collection<BlackboardAttribute> attributes) throws InterruptedException {
+		addArtifact(artifactType.getTypeID(), objId, attributes);
+	}
+
+	/**
+	 * Queue a new artifact with its attributes.
+	 *
+	 * @param artifactTypeID type of the artifact, which must exist
+	 * @param objId content object id the artifact is about
+	 * @param attributes attributes of the artifact, may be empty
+	 * @throws InterruptedException if interrupted waiting for room in the queue
+	 */
+	public void addArtifact(int artifactTypeID, long objId, Collection<BlackboardAttribute> attributes) throws InterruptedException {
+		enqueue(new Pending(artifactTypeID, objId, 0, attributes));
+	}
+
+	/**
+	 * Queue attributes for an artifact that already exists.
+	 *
+	 * @param artifact the artifact to add to
+	 * @param attributes attributes to add
+	 * @throws InterruptedException if interrupted waiting for room in the queue
+	 */
+	public void addAttributes(BlackboardArtifact artifact, Collection<BlackboardAttribute> attributes) throws InterruptedException {
+		if (!attributes.isEmpty()) {
+			enqueue(new Pending(artifact.getArtifactTypeID(), artifact.getObjectID(), artifact.getArtifactID(), attributes));
+		}
+	}
+
+	/**
+	 * Wait until everything queued so far has been written.
+	 *
+	 * @throws TskCoreException if any batch failed since the last flush
+	 * @throws InterruptedException
+	 */
+	public void flush() throws TskCoreException, InterruptedException {
+		synchronized (lock) {
+			flushTarget = submittedRows;
+			lock.notifyAll();
+			while (writtenRows < flushTarget && flusher.isAlive()) {
+				lock.wait(100);
+			}
+			if (lastError != null) {
+				TskCoreException error = lastError;
+				lastError = null;
+				throw error;
+			}
+		}
+	}
+
+	/**
+	 * Write everything queued and stop the writer.
+	 *
+	 * @throws TskCoreException if any batch failed since the last flush
+	 * @throws InterruptedException
+	 */
+	public void close() throws TskCoreException, InterruptedException {
+		synchronized (lock) {
+			closed = true;
+			lock.notifyAll();
+		}
+		flusher.join();
+		synchronized (lock) {
+			if (lastError != null) {
+				TskCoreException error = lastError;
+				lastError = null;
+				throw error;
+			}
+		}
+	}
+
+	/**
+	 * @return rows waiting to be written
+	 */
+	public int getPendingRows() {
+		synchronized (lock) {
+			return queuedRows;
+		}
+	}
+
+	/**
+	 * @return rows written so far
+	 */
+	public long getRowsWritten() {
+		synchronized (lock) {
+			return writtenRows - failedRows;
+		}
+	}
+
+	/**
+	 * @return rows in batches that failed to be written
+	 */
+	public long getRowsFailed() {
+		synchronized (lock) {
+			return failedRows;
+		}
+	}
+
+	/**
+	 * @return batches written so far
+	 */
+	public long getBatchesWritten() {
+		synchronized (lock) {
+			return batches;
+		}
+	}
+
+	/**
+	 * @return rows written per second of time spent writing, the rate the
+	 * writer can sustain when it is kept busy
+	 */
+	public double getRowsPerSecond() {
+		synchronized (lock) {
+			return writeNanos == 0 ? 0 : (writtenRows - failedRows) * 1e9 / writeNanos;
+		}
+	}
+
+	private void enqueue(Pending pending) throws InterruptedException {
+		synchronized (lock) {
+			while (queuedRows >= maxPendingRows && !closed && !stopped) {
+				lock.wait();
+			}
+			if (closed) {
+				throw new IllegalStateException("Blackboard writer is closed");
+			}
+			if (stopped) {
+				throw new IllegalStateException("Blackboard writer has stopped", lastError);
+			}
+			if (queue.isEmpty()) {
+				oldestQueuedAt = System.currentTimeMillis();
+			}
+			queue.add(pending);
+			queuedRows += pending.rows();
+			submittedRows += pending.rows();
+			if (queuedRows >= batchRows) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	private void writeLoop() {
+		while (true) {
+			List<Pending> batch = new ArrayList<Pending>();
+			int rows = 0;
+			synchronized (lock) {
+				try {
+					while (!readyToWrite()) {
+						if (closed && queue.isEmpty()) {
+							lock.notifyAll();
+							return;
+						}
+						long wait = queue.isEmpty() ? 0 : Math.max(1, oldestQueuedAt + maxDelay - System.currentTimeMillis());
+						lock.wait(wait);
+					}
+				} catch (InterruptedException ex) {
+					logger.log(Level.WARNING, "Blackboard writer interrupted, " + queuedRows + " rows not written");
+					lastError = new TskCoreException("Blackboard writer interrupted, " + queuedRows + " rows not written", ex);
+					return;
+				}
+				while (!queue.isEmpty() && rows < batchRows) {
+					Pending pending = queue.poll();
+					batch.add(pending);
+					rows += pending.rows();
+				}
+				queuedRows -= rows;
+				oldestQueuedAt = System.currentTimeMillis();
+				//there is room in the queue again
+				lock.notifyAll();
+			}
+
+			long start = System.nanoTime();
+			TskCoreException error = null;
+			try {
+				write(batch);
+			} catch (Throwable ex) {
+				logger.log(Level.WARNING, "Error writing " + rows + " blackboard rows", ex);
+				error = asTskCoreException(ex);
+			}
+			long elapsed = System.nanoTime() - start;
+
+			synchronized (lock) {
+				writtenRows += rows;
+				writeNanos += elapsed;
+				batches++;
+				if (error != null) {
+					failedRows += rows;
+					lastError = error;
+				}
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Count the rows still queued when the writer thread stops as failed, so
+	 * that flush() returns, and wake producers waiting for room.
+	 */
+	private void stop() {
+		synchronized (lock) {
+			if (queuedRows > 0) {
+				writtenRows += queuedRows;
+				failedRows += queuedRows;
+				if (lastError == null) {
+					lastError = new TskCoreException("Blackboard writer stopped, " + queuedRows + " rows not written");
+				}
+			}
+			queue.clear();
+			queuedRows = 0;
+			stopped = true;
+			lock.notifyAll();
+		}
+	}
+
+	private static TskCoreException asTskCoreException(Throwable ex) {
+		if (ex instanceof TskCoreException) {
+			return (TskCoreException) ex;
+		}
+		TskCoreException error = new TskCoreException("Error writing blackboard artifacts and attributes: " + ex);
+		error.initCause(ex);
+		return error;
+	}
+
+	/**
+	 * Called holding lock.
+	 */
+	private boolean readyToWrite() {
+		if (queue.isEmpty()) {
+			return false;
+		}
+		return closed
+				|| queuedRows >= batchRows
+				|| flushTarget > writtenRows
+				|| System.currentTimeMillis() - oldestQueuedAt >= maxDelay;
+	}
+
+	/**
+	 * Write a batch in one transaction. New artifacts get ids after the
+	 * highest one in the table; nothing else adds artifacts while the write
+	 * lock is held.
+	 */
+	private void write(List<Pending> batch) throws TskCoreException {
+		db.writeLock();
+		try {
+			CaseDbConnection connection = db.getWriteConnection();
+			Connection con = connection.getConnection();
+			con.setAutoCommit(false);
+			try {
+				long nextArtifactId = lastArtifactId(connection) + 1;
+				PreparedStatement artifacts = connection.prepareStatement(INSERT_ARTIFACT);
+				List<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
+				for (Pending pending : batch) {
+					long artifactId = pending.artifactId;
+					if (artifactId == 0) {
+						artifactId = nextArtifactId++;
+						artifacts.setLong(1, artifactId);
+						artifacts.setLong(2, pending.objId);
+						artifacts.setInt(3, pending.artifactTypeId);
+						artifacts.addBatch();
+					}
+					for (BlackboardAttribute attr : pending.attributes) {
+						attr.setArtifactID(artifactId);
+						attr.setCase(db);
+						attributes.add(attr);
+					}
+				}
+				artifacts.executeBatch();
+				addAttributes(connection, attributes);
+				con.commit();
+			} catch (SQLException ex) {
+				con.rollback();
+				//the statements are kept, so drop whatever did not get executed
+				for (String sql : INSERTS) {
+					connection.prepareStatement(sql).clearBatch();
+				}
+				throw ex;
+			} finally {
+				con.setAutoCommit(true);
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error writing blackboard artifacts and attributes, batch rolled back.", ex);
+		} finally {
+			db.writeUnlock();
+		}
+	}
+
+	private static long lastArtifactId(CaseDbConnection connection) throws SQLException {
+		Statement s = connection.createStatement();
+		try {
+			ResultSet rs = s.executeQuery("SELECT MAX(artifact_id) FROM blackboard_artifacts");
+			try {
+				return rs.next() ? rs.getLong(1) : 0;
+			} finally {
+				rs.close();
+			}
+		} finally {
+			s.close();
+		}
+	}
+
+	private static void addAttributes(CaseDbConnection connection, List<BlackboardAttribute> attributes) throws SQLException {
+		PreparedStatement strings = null, bytes = null, ints = null, longs = null, doubles = null;
+		for (BlackboardAttribute attr : attributes) {
+			PreparedStatement ps;
+			switch (attr.getValueType()) {
+				case STRING:
+					ps = strings = strings != null ? strings : connection.prepareStatement(INSERT_STRING_ATTRIBUTE);
+					ps.setString(6, SleuthkitCase.escapeForBlackboard(attr.getValueString()));
+					break;
+				case BYTE:
+					ps = bytes = bytes != null ? bytes : connection.prepareStatement(INSERT_BYTE_ATTRIBUTE);
+					ps.setBytes(6, attr.getValueBytes());
+					break;
+				case INTEGER:
+					ps = ints = ints != null ? ints : connection.prepareStatement(INSERT_INTEGER_ATTRIBUTE);
+					ps.setInt(6, attr.getValueInt());
+					break;
+				case LONG:
+					ps = longs = longs != null ? longs : connection.prepareStatement(INSERT_LONG_ATTRIBUTE);
+					ps.setLong(6, attr.getValueLong());
+					break;
+				case DOUBLE:
+					ps = doubles = doubles != null ? doubles : connection.prepareStatement(INSERT_DOUBLE_ATTRIBUTE);
+					ps.setDouble(6, attr.getValueDouble());
+					break;
+				default:
+					throw new SQLException("Unknown attribute value type " + attr.getValueType());
+			}
+			//set common fields
+			ps.setLong(1, attr.getArtifactID());
+			ps.setString(2, attr.getModuleName());
+			ps.setString(3, attr.getContext());
+			ps.setInt(4, attr.getAttributeTypeID());
+			ps.setLong(5, attr.getValueType().getType());
+			ps.addBatch();
+		}
+		for (PreparedStatement ps : new PreparedStatement[]{strings, bytes, ints, longs, doubles}) {
+			if (ps != null) {
+				ps.executeBatch();
+			}
+		}
+	}
+
+	private static String insertAttribute(String valueColumn) {
+		return "INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, "
+				+ valueColumn + ") VALUES (?,?,?,?,?,?)";
+	}
+
+	/**
+	 * An artifact to add, or attributes to add to an existing artifact
+	 */
+	private static class Pending {
+
+		final int artifactTypeId;
+		final long objId;
+		//0 for a new artifact
+		final long artifactId;
+		final List<BlackboardAttribute> attributes;
+
+		Pending(int artifactTypeId, long objId, long artifactId, Collection<BlackboardAttribute> attributes) {
+			this.artifactTypeId = artifactTypeId;
+			this.objId = objId;
+			this.artifactId = artifactId;
+			this.attributes = attributes != null
+					? new ArrayList<BlackboardAttribute>(attributes)
+					: Collections.<BlackboardAttribute>emptyList();
+		}
+
+		int rows() {
+			return (artifactId == 0 ? 1 : 0) + attributes.size();
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of direct buffers for Content.read(ByteBuffer, long). Direct
+ * buffers live outside the heap and are slow to allocate and only freed by
+ * the garbage collector, so readers should take one for a run of reads and
+ * give it back rather than allocate one per read. Native reads are copied
+ * into them, but they can then go to a FileChannel without another copy.
+ *
+ * Buffers come in powers of two from MIN_CAPACITY. Up to maxPooledBytes of
+ * returned buffers are kept; buffers returned beyond that are left to the
+ * garbage collector.
+ */
+public class BufferPool {
+
+	public static final int MIN_CAPACITY = 64 * 1024;
+	private static final BufferPool DEFAULT = new BufferPool(64L * 1024 * 1024);
+	private final long maxPooledBytes;
+	//free buffers by log2 of their capacity
+	private final List<ConcurrentLinkedQueue<ByteBuffer>> free = new ArrayList<ConcurrentLinkedQueue<ByteBuffer>>(31);
+	private final AtomicLong pooledBytes = new AtomicLong();
+	private final AtomicLong allocations = new AtomicLong();
+	private final AtomicLong reuses = new AtomicLong();
+
+	/**
+	 * @param maxPooledBytes most bytes of free buffers to keep
+	 */
+	public BufferPool(long maxPooledBytes) {
+		this.maxPooledBytes = maxPooledBytes;
+		for (int i = 0; i < 31; i++) {
+			free.add(new ConcurrentLinkedQueue<ByteBuffer>());
+		}
+	}
+
+	/**
+	 * @return the pool shared by the data model, which keeps up to 64 MB
+	 */
+	public static BufferPool getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Take a direct buffer from the pool, or allocate one.
+	 *
+	 * @param capacity bytes needed, at most 1 GB
+	 * @return a cleared buffer with its limit at capacity; its real capacity
+	 * may be larger
+	 */
+	public ByteBuffer acquire(int capacity) {
+		int sizeClass = sizeClass(capacity);
+		ByteBuffer buffer = free.get(sizeClass).poll();
+		if (buffer != null) {
+			pooledBytes.addAndGet(-buffer.capacity());
+			reuses.incrementAndGet();
+		} else {
+			buffer = ByteBuffer.allocateDirect(1 << sizeClass);
+			allocations.incrementAndGet();
+		}
+		buffer.clear();
+		buffer.limit(capacity);
+		return buffer;
+	}
+
+	/**
+	 * Give a buffer back to the pool. It must not be used after that.
+	 *
+	 * @param buffer a buffer from acquire()
+	 */
+	public void release(ByteBuffer buffer) {
+		int capacity = buffer.capacity();
+		if (!buffer.isDirect() || Integer.bitCount(capacity) != 1 || capacity < MIN_CAPACITY) {
+			return;
+		}
+		if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+			pooledBytes.addAndGet(-capacity);
+			return;
+		}
+		free.get(Integer.numberOfTrailingZeros(capacity)).offer(buffer);
+	}
+
+	private static int sizeClass(int capacity) {
+		if (capacity < 0 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Buffer capacity out of range: " + capacity);
+		}
+		int size = Math.max(capacity, MIN_CAPACITY);
+		return 32 - Integer.numberOfLeadingZeros(size - 1);
+	}
+
+	/**
+	 * @return number of buffers allocated
+	 */
+	public long getAllocations() {
+		return allocations.get();
+	}
+
+	/**
+	 * @return number of buffers handed out again from the pool
+	 */
+	public long getReuses() {
+		return reuses.get();
+	}
+
+	/**
+	 * @return bytes of free buffers in the pool
+	 */
+	public long getPooledBytes() {
+		return pooledBytes.get();
+	}
+
+	@Override
+	public String toString() {
+		return "BufferPool [allocations=" + getAllocations() + ", reuses=" + getReuses()
+				+ ", pooled=" + getPooledBytes() + " of " + maxPooledBytes + " bytes]";
+	}
+}
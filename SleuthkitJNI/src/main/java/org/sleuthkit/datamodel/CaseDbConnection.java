@@ -0,0 +1,177 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A connection to the case database together with the prepared statements
+ * created on it. Prepared statements are kept per connection and looked up by
+ * their SQL, so each reading thread gets its own copy of a query rather than
+ * sharing one statement (and its parameters) with every other thread.
+ *
+ * If the case logs slow queries, statements are timed when they execute and
+ * the slow ones recorded in its SlowQueryLog; otherwise they are used as they
+ * are.
+ *
+ * A connection is used by one thread at a time.
+ */
+class CaseDbConnection {
+
+	private static final Logger logger = Logger.getLogger(CaseDbConnection.class.getName());
+	private final Connection connection;
+	private final boolean pooled;
+	private final Map<String, PreparedStatement> preparedStatements = new HashMap<String, PreparedStatement>();
+	private final List<Statement> statements = new ArrayList<Statement>();
+	private final SlowQueryLog slowQueries;
+
+	/**
+	 * @param connection the JDBC connection to wrap
+	 * @param pooled true if the connection is handed from thread to thread, in
+	 * which case plain statements are closed each time it is released
+	 * @param slowQueries where to record slow statements, or null to not time
+	 * them
+	 */
+	CaseDbConnection(Connection connection, boolean pooled, SlowQueryLog slowQueries) {
+		this.connection = connection;
+		this.pooled = pooled;
+		this.slowQueries = slowQueries;
+	}
+
+	Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Create a plain statement. The caller should close it, but on a pooled
+	 * connection it is also closed when the connection is released, so that a
+	 * statement left open by an error does not hold the database read lock.
+	 */
+	Statement createStatement() throws SQLException {
+		Statement statement = timed(connection.createStatement(), Statement.class, null);
+		if (pooled) {
+			statements.add(statement);
+		}
+		return statement;
+	}
+
+	/**
+	 * Get the prepared statement for the query, preparing it the first time it
+	 * is used on this connection. The statement belongs to the connection and
+	 * must not be closed by the caller.
+	 */
+	PreparedStatement prepareStatement(String sql) throws SQLException {
+		PreparedStatement statement = preparedStatements.get(sql);
+		if (statement == null) {
+			statement = timed(connection.prepareStatement(sql), PreparedStatement.class, sql);
+			preparedStatements.put(sql, statement);
+		}
+		return statement;
+	}
+
+	/**
+	 * Wrap a statement so that its execute calls are timed.
+	 *
+	 * @param sql the SQL of a prepared statement, null for a plain statement
+	 * whose SQL is passed to execute
+	 */
+	private <T extends Statement> T timed(final T statement, Class<T> type, final String sql) {
+		if (slowQueries == null) {
+			return statement;
+		}
+		return type.cast(Proxy.newProxyInstance(CaseDbConnection.class.getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				boolean execute = method.getName().startsWith("execute");
+				long start = execute ? System.nanoTime() : 0;
+				try {
+					return method.invoke(statement, args);
+				} catch (InvocationTargetException ex) {
+					throw ex.getCause();
+				} finally {
+					if (execute) {
+						String executed = sql;
+						if (executed == null && args != null && args.length > 0 && args[0] instanceof String) {
+							executed = (String) args[0];
+						}
+						slowQueries.record(executed, System.nanoTime() - start);
+					}
+				}
+			}
+		}));
+	}
+
+	/**
+	 * Called when the thread using the connection is done with it.
+	 */
+	void release() {
+		for (Statement statement : statements) {
+			try {
+				statement.close();
+			} catch (SQLException ex) {
+				logger.log(Level.WARNING, "Error closing a statement", ex);
+			}
+		}
+		statements.clear();
+		for (PreparedStatement statement : preparedStatements.values()) {
+			try {
+				statement.clearParameters();
+			} catch (SQLException ex) {
+				logger.log(Level.WARNING, "Error clearing a prepared statement", ex);
+			}
+		}
+	}
+
+	/**
+	 * Close the prepared statements and, if pooled, the connection itself.
+	 * The connection of the case (the one writes go through) is closed by
+	 * SleuthkitCase.
+	 */
+	void close() {
+		release();
+		for (PreparedStatement statement : preparedStatements.values()) {
+			try {
+				statement.close();
+			} catch (SQLException ex) {
+				logger.log(Level.WARNING, "Error closing a prepared statement", ex);
+			}
+		}
+		preparedStatements.clear();
+		if (pooled) {
+			try {
+				connection.close();
+			} catch (SQLException ex) {
+				logger.log(Level.WARNING, "Error closing a read connection", ex);
+			}
+		}
+	}
+}
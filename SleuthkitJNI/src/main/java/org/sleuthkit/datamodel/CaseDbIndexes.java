@@ -0,0 +1,114 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Secondary indexes the case database needs for its hot lookups, which the
+ * schema created by the native library does not have:
+ *
+ * - tsk_files.md5, for findFilesByMd5() and the hash counts
+ * - tsk_files.fs_obj_id and name, for findFiles() by name in a data source
+ * - tsk_files.name, for name lookups across data sources
+ *
+ * tsk_objects.par_obj_id, which every children and parent lookup uses, is
+ * already indexed by the native schema (parObjId).
+ *
+ * Names are indexed with NOCASE collation and matched with a plain LIKE,
+ * which is case insensitive, so that SQLite can use the index for a name
+ * lookup. LOWER(name) would need an index on an expression, which SQLite
+ * only has from 3.9.
+ *
+ * SQLite keeps the indexes up to date as rows are added; create() only has to
+ * build them once for a case database that does not have them yet.
+ */
+public class CaseDbIndexes {
+
+	private static final Logger logger = Logger.getLogger(CaseDbIndexes.class.getName());
+	private static final String[][] INDEXES = {
+		{"tsk_files_md5", "tsk_files (md5)"},
+		{"tsk_files_fs_obj_id_name", "tsk_files (fs_obj_id, name COLLATE NOCASE)"},
+		{"tsk_files_name", "tsk_files (name COLLATE NOCASE)"},};
+
+	private CaseDbIndexes() {
+	}
+
+	/**
+	 * Create the indexes the database does not have yet, and update the
+	 * query planner's statistics if any were created.
+	 *
+	 * @param con a writable connection to the case database
+	 * @return the names of the indexes created
+	 * @throws SQLException if an index could not be created
+	 */
+	public static List<String> create(Connection con) throws SQLException {
+		List<String> created = new ArrayList<String>();
+		Statement statement = con.createStatement();
+		try {
+			for (String[] index : INDEXES) {
+				if (!exists(statement, index[0])) {
+					long start = System.currentTimeMillis();
+					statement.execute("CREATE INDEX IF NOT EXISTS " + index[0] + " ON " + index[1]);
+					logger.log(Level.INFO, "Created index {0} in {1} ms", new Object[]{index[0], System.currentTimeMillis() - start});
+					created.add(index[0]);
+				}
+			}
+			if (!created.isEmpty()) {
+				statement.execute("ANALYZE");
+			}
+		} finally {
+			statement.close();
+		}
+		return created;
+	}
+
+	/**
+	 * Drop the indexes, for comparing lookups with and without them.
+	 *
+	 * @param con a writable connection to the case database
+	 * @throws SQLException if an index could not be dropped
+	 */
+	public static void drop(Connection con) throws SQLException {
+		Statement statement = con.createStatement();
+		try {
+			for (String[] index : INDEXES) {
+				statement.execute("DROP INDEX IF EXISTS " + index[0]);
+			}
+		} finally {
+			statement.close();
+		}
+	}
+
+	private static boolean exists(Statement statement, String name) throws SQLException {
+		ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = '" + name + "'");
+		try {
+			return rs.next() && rs.getInt(1) > 0;
+		} finally {
+			rs.close();
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package org.sleuthkit.datamodel;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * SQLite settings a case database is opened with. Pass one to
+ * SleuthkitCase.openCase() or newCase(); defaults() matches what the case
+ * database has always used, wal() switches it to write-ahead logging.
+ *
+ * In WAL mode readers see the last committed state while a write is in
+ * progress, so SleuthkitCase lets readers run without waiting for the case
+ * write lock. The WAL is then checkpointed in the background every
+ * checkpointInterval milliseconds instead of by whichever commit crosses the
+ * autocheckpoint threshold.
+ *
+ * Settings left at 0 or null are not applied, leaving SQLite's own default.
+ * Pragmas an older SQLite does not know (mmap_size before 3.7.17) are ignored
+ * by SQLite.
+ */
+public class CaseDbProfile {
+
+	private String journalMode;
+	private String synchronous = "OFF";
+	private int pageSize = 0;
+	private int cacheSize = 0;
+	private long mmapSize = 0;
+	private String tempStore;
+	private int walAutoCheckpoint = 0;
+	private long checkpointInterval = 0;
+	private boolean createIndexes = false;
+	private boolean logSlowQueries = false;
+
+	/**
+	 * @return the settings case databases have always been opened with:
+	 * rollback journal, synchronous off
+	 */
+	public static CaseDbProfile defaults() {
+		return new CaseDbProfile();
+	}
+
+	/**
+	 * @return WAL journal with a 64 MB page cache, 256 MB memory map, temp
+	 * tables in memory and a background checkpoint every 5 seconds
+	 */
+	public static CaseDbProfile wal() {
+		return new CaseDbProfile()
+				.setJournalMode("WAL")
+				.setCacheSize(-64 * 1024)
+				.setMmapSize(256L * 1024 * 1024)
+				.setTempStore("MEMORY")
+				.setCheckpointInterval(5000);
+	}
+
+	/**
+	 * @param journalMode DELETE, TRUNCATE, PERSIST, MEMORY, WAL or OFF. The
+	 * journal mode is stored in the database, so WAL stays on for later opens;
+	 * only opens with a WAL profile let readers run without the read lock.
+	 */
+	public CaseDbProfile setJournalMode(String journalMode) {
+		this.journalMode = journalMode;
+		return this;
+	}
+
+	/**
+	 * @param synchronous OFF, NORMAL or FULL
+	 */
+	public CaseDbProfile setSynchronous(String synchronous) {
+		this.synchronous = synchronous;
+		return this;
+	}
+
+	/**
+	 * @param pageSize page size in bytes, a power of two from 512 to 65536.
+	 * Changing the page size of an existing case rewrites the whole database
+	 * (VACUUM), so it is best set when the case is created.
+	 */
+	public CaseDbProfile setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+		return this;
+	}
+
+	/**
+	 * @param cacheSize page cache per connection, in pages if positive or in
+	 * KB if negative
+	 */
+	public CaseDbProfile setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+		return this;
+	}
+
+	/**
+	 * @param mmapSize bytes of the database file to memory map per connection
+	 */
+	public CaseDbProfile setMmapSize(long mmapSize) {
+		this.mmapSize = mmapSize;
+		return this;
+	}
+
+	/**
+	 * @param tempStore DEFAULT, FILE or MEMORY
+	 */
+	public CaseDbProfile setTempStore(String tempStore) {
+		this.tempStore = tempStore;
+		return this;
+	}
+
+	/**
+	 * @param walAutoCheckpoint WAL size in pages at which a commit checkpoints,
+	 * 0 to leave SQLite's default (1000). Ignored if a checkpoint interval is
+	 * set, in which case automatic checkpoints are turned off.
+	 */
+	public CaseDbProfile setWalAutoCheckpoint(int walAutoCheckpoint) {
+		this.walAutoCheckpoint = walAutoCheckpoint;
+		return this;
+	}
+
+	/**
+	 * @param checkpointInterval milliseconds between background WAL
+	 * checkpoints, 0 to leave checkpointing to SQLite
+	 */
+	public CaseDbProfile setCheckpointInterval(long checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+		return this;
+	}
+
+	/**
+	 * @param createIndexes whether to create the secondary indexes of
+	 * CaseDbIndexes when opening a database that does not have them. Off by
+	 * default, as it writes to the case database and takes a while for a
+	 * large case; SleuthkitCase.createIndexes() does the same on request. A
+	 * database that cannot be written to is opened without them.
+	 */
+	public CaseDbProfile setCreateIndexes(boolean createIndexes) {
+		this.createIndexes = createIndexes;
+		return this;
+	}
+
+	public boolean isCreateIndexes() {
+		return createIndexes;
+	}
+
+	/**
+	 * @param logSlowQueries whether to time every statement and record the
+	 * slow ones in the case's SlowQueryLog. Off by default, as timing wraps
+	 * each statement.
+	 */
+	public CaseDbProfile setLogSlowQueries(boolean logSlowQueries) {
+		this.logSlowQueries = logSlowQueries;
+		return this;
+	}
+
+	public boolean isLogSlowQueries() {
+		return logSlowQueries;
+	}
+
+	public boolean isWal() {
+		return "WAL".equalsIgnoreCase(journalMode);
+	}
+
+	public long getCheckpointInterval() {
+		return isWal() ? checkpointInterval : 0;
+	}
+
+	/**
+	 * Apply the settings stored in the database file itself. Run once, on the
+	 * connection writes go through, before anything else uses the database.
+	 */
+	void configureDatabase(Connection con) throws SQLException {
+		Statement statement = con.createStatement();
+		try {
+			if (pageSize > 0 && queryLong(statement, "PRAGMA page_size;") != pageSize) {
+				//the page size of a WAL database cannot be changed
+				if (queryString(statement, "PRAGMA journal_mode;").equalsIgnoreCase("wal")) {
+					statement.execute("PRAGMA journal_mode = DELETE;");
+				}
+				statement.execute("PRAGMA page_size = " + pageSize + ";");
+				statement.execute("VACUUM;");
+			}
+			if (journalMode != null) {
+				String mode = queryString(statement, "PRAGMA journal_mode = " + journalMode + ";");
+				if (!journalMode.equalsIgnoreCase(mode)) {
+					throw new SQLException("Could not set journal mode " + journalMode + ", database is in " + mode + " mode");
+				}
+			}
+			if (isWal()) {
+				if (checkpointInterval > 0) {
+					statement.execute("PRAGMA wal_autocheckpoint = 0;");
+				} else if (walAutoCheckpoint > 0) {
+					statement.execute("PRAGMA wal_autocheckpoint = " + walAutoCheckpoint + ";");
+				}
+			}
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Apply the settings that belong to each connection. Run on every
+	 * connection to the case database, reading or writing.
+	 */
+	void configureConnection(Connection con) throws SQLException {
+		Statement statement = con.createStatement();
+		try {
+			if (synchronous != null) {
+				statement.execute("PRAGMA synchronous = " + synchronous + ";");
+			}
+			if (cacheSize != 0) {
+				statement.execute("PRAGMA cache_size = " + cacheSize + ";");
+			}
+			if (mmapSize > 0) {
+				statement.execute("PRAGMA mmap_size = " + mmapSize + ";");
+			}
+			if (tempStore != null) {
+				statement.execute("PRAGMA temp_store = " + tempStore + ";");
+			}
+		} finally {
+			statement.close();
+		}
+	}
+
+	private static String queryString(Statement statement, String pragma) throws SQLException {
+		ResultSet rs = statement.executeQuery(pragma);
+		try {
+			return rs.next() ? rs.getString(1) : "";
+		} finally {
+			rs.close();
+		}
+	}
+
+	private static long queryLong(Statement statement, String pragma) throws SQLException {
+		ResultSet rs = statement.executeQuery(pragma);
+		try {
+			return rs.next() ? rs.getLong(1) : 0;
+		} finally {
+			rs.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "journal_mode=" + (journalMode == null ? "(unchanged)" : journalMode)
+				+ " synchronous=" + synchronous + " page_size=" + pageSize
+				+ " cache_size=" + cacheSize + " mmap_size=" + mmapSize
+				+ " temp_store=" + tempStore + " checkpoint_interval=" + getCheckpointInterval()
+				+ " create_indexes=" + createIndexes + " log_slow_queries=" + logSlowQueries;
+	}
+}
@@ -0,0 +1,419 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.sleuthkit.datamodel.TskData.ObjectType;
+
+/**
+ * The whole content hierarchy of a case, loaded in one scan of each of
+ * tsk_objects, tsk_image_info, tsk_image_names, tsk_vs_info, tsk_vs_parts,
+ * tsk_fs_info and the ids and types of tsk_files, instead of one query per
+ * object and per child list as getChildren() normally costs.
+ *
+ * The parent/child graph is kept in primitive arrays indexed by position in
+ * the sorted object id array: the parent of each object, its object and file
+ * types, and the children of each object as a range of one shared array.
+ * Only the images, volume systems, volumes and file systems are built as
+ * Content objects up front. Files are built when a child list holding them is
+ * asked for, in one query for the whole list, and are not kept by the tree,
+ * so memory stays proportional to the number of objects, a few bytes each,
+ * rather than to the files in use. Content from the tree answers
+ * getChildren() and getChildrenCount() from it.
+ *
+ * The tree is a snapshot: objects added to the case after it was loaded are
+ * not in it, and getChildren() on content loaded with it does not see them.
+ * Load a new tree (SleuthkitCase.loadCaseTree()) to pick them up.
+ */
+public class CaseTree {
+
+	private static final int NO_PARENT = -1;
+	private static final byte NOT_A_FILE = -1;
+	//most files read in one query
+	private static final int FILES_PER_QUERY = 500;
+	private final SleuthkitCase db;
+	private final long[] ids;
+	private final byte[] types;
+	//TSK_DB_FILES_TYPE_ENUM of files, NOT_A_FILE for other objects
+	private final byte[] fileTypes;
+	private final int[] parents;
+	//children of object i are children[childStart[i]] to children[childStart[i + 1] - 1]
+	private final int[] childStart;
+	private final int[] children;
+	//images, volume systems, volumes and file systems by object id
+	private final Map<Long, Content> containers = new HashMap<Long, Content>();
+
+	/**
+	 * Load the tree. The caller holds the case read lock.
+	 */
+	CaseTree(SleuthkitCase db, CaseDbConnection connection) throws SQLException, TskCoreException {
+		this.db = db;
+		Statement s = connection.createStatement();
+		try {
+			//objects, in id order so an object's index can be found by binary search
+			int n = 0;
+			long[] objIds = new long[1024];
+			long[] parIds = new long[1024];
+			byte[] objTypes = new byte[1024];
+			ResultSet rs = s.executeQuery("SELECT obj_id, par_obj_id, type FROM tsk_objects ORDER BY obj_id");
+			while (rs.next()) {
+				if (n == objIds.length) {
+					objIds = Arrays.copyOf(objIds, n * 2);
+					parIds = Arrays.copyOf(parIds, n * 2);
+					objTypes = Arrays.copyOf(objTypes, n * 2);
+				}
+				objIds[n] = rs.getLong(1);
+				parIds[n] = rs.getLong(2);
+				if (rs.wasNull()) {
+					parIds[n] = AbstractContent.UNKNOWN_ID;
+				}
+				objTypes[n] = (byte) rs.getShort(3);
+				n++;
+			}
+			rs.close();
+
+			ids = Arrays.copyOf(objIds, n);
+			types = Arrays.copyOf(objTypes, n);
+			parents = new int[n];
+			childStart = new int[n + 1];
+			for (int i = 0; i < n; i++) {
+				parents[i] = parIds[i] == AbstractContent.UNKNOWN_ID ? NO_PARENT : Arrays.binarySearch(ids, parIds[i]);
+				if (parents[i] < 0) {
+					parents[i] = NO_PARENT;
+				} else {
+					childStart[parents[i] + 1]++;
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				childStart[i + 1] += childStart[i];
+			}
+			children = new int[childStart[n]];
+			int[] next = Arrays.copyOf(childStart, n);
+			for (int i = 0; i < n; i++) {
+				if (parents[i] != NO_PARENT) {
+					children[next[parents[i]]++] = i;
+				}
+			}
+
+			fileTypes = new byte[n];
+			Arrays.fill(fileTypes, NOT_A_FILE);
+			rs = s.executeQuery("SELECT obj_id, type FROM tsk_files");
+			while (rs.next()) {
+				int i = indexOf(rs.getLong(1));
+				if (i >= 0) {
+					fileTypes[i] = (byte) rs.getShort(2);
+				}
+			}
+			rs.close();
+
+			//the containers, parents before children so each can be given its parent
+			ResultSetHelper rsHelper = new ResultSetHelper(db);
+
+			Map<Long, List<String>> imagePaths = new HashMap<Long, List<String>>();
+			rs = s.executeQuery("SELECT * FROM tsk_image_names ORDER BY obj_id, sequence");
+			while (rs.next()) {
+				long id = rs.getLong("obj_id");
+				if (!imagePaths.containsKey(id)) {
+					imagePaths.put(id, new ArrayList<String>());
+				}
+				imagePaths.get(id).add(rsHelper.imagePath(rs));
+			}
+			rs.close();
+
+			rs = s.executeQuery("SELECT * FROM tsk_image_info");
+			while (rs.next()) {
+				long id = rs.getLong("obj_id");
+				List<String> paths = imagePaths.get(id);
+				if (paths != null && indexOf(id) >= 0) {
+					String name = (new java.io.File(paths.get(0))).getName();
+					containers.put(id, rsHelper.image(rs, name, paths.toArray(new String[paths.size()])));
+				}
+			}
+			rs.close();
+
+			rs = s.executeQuery("SELECT * FROM tsk_vs_info");
+			while (rs.next()) {
+				int i = indexOf(rs.getLong("obj_id"));
+				if (i >= 0 && parentContainer(i) instanceof Image) {
+					containers.put(ids[i], rsHelper.volumeSystem(rs, (Image) parentContainer(i)));
+				}
+			}
+			rs.close();
+
+			rs = s.executeQuery("SELECT * FROM tsk_vs_parts");
+			while (rs.next()) {
+				int i = indexOf(rs.getLong("obj_id"));
+				if (i >= 0 && parentContainer(i) instanceof VolumeSystem) {
+					containers.put(ids[i], rsHelper.volume(rs, (VolumeSystem) parentContainer(i)));
+				}
+			}
+			rs.close();
+
+			rs = s.executeQuery("SELECT * FROM tsk_fs_info");
+			while (rs.next()) {
+				int i = indexOf(rs.getLong("obj_id"));
+				if (i >= 0) {
+					containers.put(ids[i], rsHelper.fileSystem(rs, parentContainer(i)));
+				}
+			}
+			rs.close();
+		} finally {
+			s.close();
+		}
+
+		for (Content container : containers.values()) {
+			int i = indexOf(container.getId());
+			link((AbstractContent) container, i, parentContainer(i));
+		}
+	}
+
+	/**
+	 * @return the number of objects in the tree
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * @param id object id
+	 * @return the content object with the id, or null if the tree does not
+	 * contain it
+	 * @throws TskCoreException if a file could not be read from the database
+	 */
+	public Content getContent(long id) throws TskCoreException {
+		int i = indexOf(id);
+		if (i < 0) {
+			return null;
+		}
+		List<Content> content = build(new int[]{i}, 1, parentContainer(i));
+		return content.isEmpty() ? null : content.get(0);
+	}
+
+	/**
+	 * @return the objects with no parent: images, and the virtual directories
+	 * local files are added under
+	 * @throws TskCoreException if a file could not be read from the database
+	 */
+	public List<Content> getRootObjects() throws TskCoreException {
+		int[] roots = new int[ids.length];
+		int count = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (parents[i] == NO_PARENT) {
+				roots[count++] = i;
+			}
+		}
+		return build(roots, count, null);
+	}
+
+	/**
+	 * @return the images in the case
+	 */
+	public List<Image> getImages() {
+		List<Image> images = new ArrayList<Image>();
+		for (int i = 0; i < ids.length; i++) {
+			if (types[i] == ObjectType.IMG.getObjectType() && containers.get(ids[i]) instanceof Image) {
+				images.add((Image) containers.get(ids[i]));
+			}
+		}
+		return images;
+	}
+
+	/**
+	 * @param id object id
+	 * @return the id of the parent of the object, or AbstractContent.UNKNOWN_ID
+	 * if it has none or is not in the tree
+	 */
+	public long getParentId(long id) {
+		int i = indexOf(id);
+		return i < 0 || parents[i] == NO_PARENT ? AbstractContent.UNKNOWN_ID : ids[parents[i]];
+	}
+
+	/**
+	 * @param id object id
+	 * @return the number of direct children of the object, 0 if it is not in
+	 * the tree
+	 */
+	public int getChildrenCount(long id) {
+		int i = indexOf(id);
+		return i < 0 ? 0 : childStart[i + 1] - childStart[i];
+	}
+
+	/**
+	 * @param parent content to get the children of
+	 * @return the direct children of the content, in object id order; files
+	 * among them are read from the database in a query per few hundred
+	 * @throws TskCoreException if the files could not be read from the
+	 * database
+	 */
+	public List<Content> getChildren(Content parent) throws TskCoreException {
+		return getChildren(parent, null);
+	}
+
+	/**
+	 * @param parent content to get the children of
+	 * @return the ids of the direct children of the content, in order
+	 */
+	public List<Long> getChildrenIds(Content parent) {
+		return getChildrenIds(parent, null);
+	}
+
+	/**
+	 * @param parent content to get the children of
+	 * @param type file type to keep, or null for all children
+	 * @return the direct children of the content that are files of the type
+	 * @throws TskCoreException if the files could not be read from the
+	 * database
+	 */
+	public List<Content> getChildren(Content parent, TskData.TSK_DB_FILES_TYPE_ENUM type) throws TskCoreException {
+		int i = indexOf(parent.getId());
+		if (i < 0) {
+			return Collections.emptyList();
+		}
+		int[] selected = new int[childStart[i + 1] - childStart[i]];
+		int count = 0;
+		for (int c = childStart[i]; c < childStart[i + 1]; c++) {
+			if (type == null || fileTypes[children[c]] == type.getFileType()) {
+				selected[count++] = children[c];
+			}
+		}
+		return build(selected, count, parent);
+	}
+
+	/**
+	 * @param parent content to get the children of
+	 * @param type file type to keep, or null for all children
+	 * @return the ids of the direct children of the content that are files of
+	 * the type
+	 */
+	public List<Long> getChildrenIds(Content parent, TskData.TSK_DB_FILES_TYPE_ENUM type) {
+		int i = indexOf(parent.getId());
+		if (i < 0) {
+			return Collections.emptyList();
+		}
+		List<Long> result = new ArrayList<Long>(childStart[i + 1] - childStart[i]);
+		for (int c = childStart[i]; c < childStart[i + 1]; c++) {
+			if (type == null || fileTypes[children[c]] == type.getFileType()) {
+				result.add(ids[children[c]]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the content objects of the first count objects of indexes, in that
+	 * order: containers from the tree, files read from the database
+	 *
+	 * @param parent the parent of the objects if they share one, else null
+	 */
+	private List<Content> build(int[] indexes, int count, Content parent) throws TskCoreException {
+		List<Content> result = new ArrayList<Content>(count);
+		int files = 0;
+		for (int k = 0; k < count; k++) {
+			if (fileTypes[indexes[k]] != NOT_A_FILE) {
+				files++;
+			}
+		}
+		Map<Long, AbstractFile> loaded = files == 0 ? Collections.<Long, AbstractFile>emptyMap() : loadFiles(indexes, count);
+		for (int k = 0; k < count; k++) {
+			int i = indexes[k];
+			Content content = fileTypes[i] != NOT_A_FILE ? loaded.get(ids[i]) : containers.get(ids[i]);
+			if (content != null) {
+				result.add(content);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Read the files among the first count objects of indexes from
+	 * tsk_files, a few hundred per query
+	 */
+	private Map<Long, AbstractFile> loadFiles(int[] indexes, int count) throws TskCoreException {
+		Map<Long, AbstractFile> files = new HashMap<Long, AbstractFile>();
+		db.dbReadLock();
+		try {
+			Statement s = db.getReadConnection().createStatement();
+			try {
+				int k = 0;
+				while (k < count) {
+					StringBuilder in = new StringBuilder();
+					int inQuery = 0;
+					for (; k < count && inQuery < FILES_PER_QUERY; k++) {
+						if (fileTypes[indexes[k]] != NOT_A_FILE) {
+							in.append(inQuery++ == 0 ? "" : ",").append(ids[indexes[k]]);
+						}
+					}
+					if (inQuery == 0) {
+						continue;
+					}
+					ResultSet rs = s.executeQuery("SELECT * FROM tsk_files WHERE obj_id IN (" + in + ")");
+					while (rs.next()) {
+						int i = indexOf(rs.getLong("obj_id"));
+						if (i >= 0) {
+							Content fs = containers.get(rs.getLong("fs_obj_id"));
+							AbstractFile file = db.resultSetToAbstractFile(rs, fs instanceof FileSystem ? (FileSystem) fs : null,
+									parents[i] == NO_PARENT ? AbstractContent.UNKNOWN_ID : ids[parents[i]]);
+							files.put(file.getId(), file);
+						}
+					}
+					rs.close();
+				}
+			} finally {
+				s.close();
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error reading files of the case tree.", ex);
+		} finally {
+			db.dbReadUnlock();
+		}
+		for (AbstractFile file : files.values()) {
+			int i = indexOf(file.getId());
+			link(file, i, parentContainer(i));
+		}
+		return files;
+	}
+
+	/**
+	 * Give content of the tree its parent, if known, and its child count
+	 */
+	private void link(AbstractContent c, int i, Content parent) {
+		if (parent != null) {
+			c.setParent(parent);
+			c.setParentId(parent.getId());
+		}
+		c.setCaseTree(this, childStart[i + 1] - childStart[i]);
+	}
+
+	private int indexOf(long id) {
+		int i = Arrays.binarySearch(ids, id);
+		return i < 0 ? -1 : i;
+	}
+
+	private Content parentContainer(int i) {
+		return parents[i] == NO_PARENT ? null : containers.get(ids[parents[i]]);
+	}
+}
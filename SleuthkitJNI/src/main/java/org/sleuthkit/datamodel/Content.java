@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -37,6 +38,22 @@ public interface Content extends SleuthkitVisitableItem {
 	 * tsk core
 	 */
 	public int read(byte[] buf, long offset, long len) throws TskCoreException;
+
+	/**
+	 * Read data from the content object into a buffer, such as a direct
+	 * buffer from BufferPool that can be handed to a FileChannel or
+	 * MessageDigest as it is. The native library reads into byte[], so data
+	 * read through it is copied into the buffer unless the buffer is a heap
+	 * buffer whose array starts at its position.
+	 *
+	 * @param buf buffer to read into, from its position up to its limit; the
+	 * position is moved past the data read
+	 * @param offset offset in the content to start reading from
+	 * @return num of bytes read, or -1 on error
+	 * @throws TskCoreException if critical error occurred during read in the
+	 * tsk core
+	 */
+	public int read(ByteBuffer buf, long offset) throws TskCoreException;
 	
 	/**
 	 * Free native resources after read is done on the Content object.  
@@ -0,0 +1,191 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content objects of a case by object id, so that looking the same object up
+ * again returns the same instance instead of querying and building a new one.
+ * Sharing the instance also shares what it has opened: an Image, Volume or
+ * FileSystem opens its native handle once rather than once per lookup.
+ *
+ * Images, volume systems, volumes and file systems are few and are kept apart
+ * from files, so a long traversal that cycles through many files does not
+ * push them out. Both are least recently used caches of a fixed size.
+ *
+ * Files are updated in place by SleuthkitCase.setKnown() and setMd5Hash(),
+ * which also drop any other cached instance of the file with invalidate().
+ *
+ * A miss is counted for each object built and cached, so misses is the number
+ * of objects that had to be loaded from the database.
+ */
+public class ContentCache {
+
+	public static final int DEFAULT_MAX_CONTAINERS = 1000;
+	public static final int DEFAULT_MAX_FILES = 10000;
+	private final Map<Long, Content> containers;
+	private final Map<Long, Content> files;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * @param maxContainers the most images, volume systems, volumes and file
+	 * systems to keep, 0 to keep none
+	 * @param maxFiles the most files to keep, 0 to keep none
+	 */
+	ContentCache(int maxContainers, int maxFiles) {
+		containers = lru(maxContainers);
+		files = lru(maxFiles);
+	}
+
+	private Map<Long, Content> lru(final int max) {
+		return new LinkedHashMap<Long, Content>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Content> eldest) {
+				if (size() > max) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @param id object id
+	 * @return the cached object, or null if it is not cached
+	 */
+	Content get(long id) {
+		Content content = lookup(id);
+		if (content != null) {
+			hits.incrementAndGet();
+		}
+		return content;
+	}
+
+	/**
+	 * @param id object id
+	 * @param type the type the object is expected to be
+	 * @return the cached object if it is cached and of the type, else null.
+	 * Only a cached object of the type counts as a hit.
+	 */
+	<T extends Content> T get(long id, Class<T> type) {
+		Content content = lookup(id);
+		if (!type.isInstance(content)) {
+			return null;
+		}
+		hits.incrementAndGet();
+		return type.cast(content);
+	}
+
+	private synchronized Content lookup(long id) {
+		Content content = containers.get(id);
+		if (content == null) {
+			content = files.get(id);
+		}
+		return content;
+	}
+
+	/**
+	 * Cache an object, unless another thread cached the same one first.
+	 *
+	 * @param content the object
+	 * @return the cached instance, which callers should use in place of
+	 * content so every lookup shares one
+	 */
+	synchronized <T extends Content> T put(T content) {
+		if (content == null) {
+			return null;
+		}
+		misses.incrementAndGet();
+		Map<Long, Content> map = content instanceof AbstractFile ? files : containers;
+		Content existing = map.get(content.getId());
+		if (existing != null && existing.getClass() == content.getClass()) {
+			@SuppressWarnings("unchecked")
+			T cached = (T) existing;
+			return cached;
+		}
+		map.put(content.getId(), content);
+		return content;
+	}
+
+	/**
+	 * Drop the cached instance of an object whose row has been updated, so
+	 * the next lookup builds it again from the database. Nothing is dropped
+	 * if the updated instance is the cached one, as it is already up to date.
+	 *
+	 * @param updated the object that was updated
+	 */
+	void invalidate(Content updated) {
+		boolean removed = false;
+		synchronized (this) {
+			Map<Long, Content> map = updated instanceof AbstractFile ? files : containers;
+			Content cached = map.get(updated.getId());
+			if (cached != null && cached != updated) {
+				map.remove(updated.getId());
+				removed = true;
+			}
+		}
+		if (removed) {
+			invalidations.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Drop everything.
+	 */
+	synchronized void clear() {
+		containers.clear();
+		files.clear();
+	}
+
+	/**
+	 * @return the number of objects cached
+	 */
+	public synchronized int size() {
+		return containers.size() + files.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ContentCache [size " + size() + ", hits " + getHits() + ", misses " + getMisses()
+				+ ", evictions " + getEvictions() + ", invalidations " + getInvalidations() + "]";
+	}
+}
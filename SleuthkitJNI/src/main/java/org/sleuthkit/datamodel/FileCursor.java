@@ -0,0 +1,137 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.Closeable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Files matching a where clause, fetched a page at a time rather than all at
+ * once. Only one page of file objects is held in memory, so memory use does
+ * not grow with the size of the result.
+ *
+ * Each page is one query, keyed on the last object id of the previous page,
+ * and the case read lock and a database connection are held only while it
+ * runs. Between pages other threads, writers included, can use the database.
+ * Files come back in object id order. A file added or changed while the cursor
+ * is open is seen if its page has not been fetched yet.
+ *
+ * Get one from SleuthkitCase.openFileCursor() or openFsContentCursor():
+ *
+ * <pre>
+ * FileCursor&lt;AbstractFile&gt; files = db.openFileCursor("size > 0", 1000);
+ * try {
+ *     AbstractFile file;
+ *     while ((file = files.next()) != null) {
+ *         ...
+ *     }
+ * } finally {
+ *     files.close();
+ * }
+ * </pre>
+ *
+ * @param <T> the type of file returned
+ */
+public class FileCursor<T extends AbstractFile> implements Closeable {
+
+	private final SleuthkitCase db;
+	private final String sqlWhereClause;
+	private final Class<T> fileClass;
+	private final int fetchSize;
+	private final Queue<T> page;
+	private long lastId = Long.MIN_VALUE;
+	private boolean exhausted = false;
+
+	/**
+	 * @param db the case
+	 * @param sqlWhereClause a SQL where clause on tsk_files, without the word
+	 * WHERE and without ORDER BY or LIMIT
+	 * @param fileClass the type of file returned; rows of other types are
+	 * skipped
+	 * @param fetchSize the number of rows to fetch per query
+	 */
+	FileCursor(SleuthkitCase db, String sqlWhereClause, Class<T> fileClass, int fetchSize) {
+		if (fetchSize < 1) {
+			throw new IllegalArgumentException("fetchSize must be at least 1: " + fetchSize);
+		}
+		this.db = db;
+		this.sqlWhereClause = sqlWhereClause;
+		this.fileClass = fileClass;
+		this.fetchSize = fetchSize;
+		this.page = new ArrayDeque<T>(fetchSize);
+	}
+
+	/**
+	 * @return the next file, or null when there are no more
+	 * @throws TskCoreException if a page could not be fetched
+	 */
+	public T next() throws TskCoreException {
+		while (page.isEmpty() && !exhausted) {
+			fetch();
+		}
+		return page.poll();
+	}
+
+	/**
+	 * Fetch the next page of rows. A page may yield no files if all its rows
+	 * were of another type, in which case the caller fetches again.
+	 */
+	private void fetch() throws TskCoreException {
+		db.dbReadLock();
+		try {
+			Statement statement = db.getReadConnection().createStatement();
+			try {
+				statement.setFetchSize(fetchSize);
+				ResultSet rs = statement.executeQuery("SELECT * FROM tsk_files WHERE (" + sqlWhereClause
+						+ ") AND obj_id > " + lastId + " ORDER BY obj_id LIMIT " + fetchSize);
+				int rows = 0;
+				while (rs.next()) {
+					rows++;
+					lastId = rs.getLong("obj_id");
+					AbstractFile file = db.resultSetToAbstractFile(rs, null, AbstractContent.UNKNOWN_ID);
+					if (fileClass.isInstance(file)) {
+						page.add(fileClass.cast(file));
+					}
+				}
+				rs.close();
+				exhausted = rows < fetchSize;
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error fetching files where " + sqlWhereClause, ex);
+		} finally {
+			db.dbReadUnlock();
+		}
+	}
+
+	/**
+	 * Drop the files fetched but not yet returned. The cursor holds no
+	 * database resources between calls to next(), so this only frees memory.
+	 */
+	@Override
+	public void close() {
+		exhausted = true;
+		page.clear();
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Computes any of MD5, SHA-1, SHA-256 and CRC32 of files in one read of each
+ * file, so asking for more digests costs CPU time but no more image reads.
+ *
+ * hashFiles() spreads the files over a pool of threads, each with its own
+ * read buffer, and stores the MD5s in the case database in batches, one
+ * transaction per batch rather than one per file. A FileHasher can be shared
+ * between threads.
+ */
+public class FileHasher {
+
+	/**
+	 * Digests a FileHasher can compute
+	 */
+	public enum Algorithm {
+
+		MD5("MD5"),
+		SHA1("SHA-1"),
+		SHA256("SHA-256"),
+		CRC32(null);
+		private final String jcaName;
+
+		private Algorithm(String jcaName) {
+			this.jcaName = jcaName;
+		}
+	}
+
+	/**
+	 * The digests of one file, in lower case hex. A digest that was not asked
+	 * for is null, or -1 for the CRC32.
+	 */
+	public static class Digests {
+
+		private final long objId;
+		private final long size;
+		private final String md5;
+		private final String sha1;
+		private final String sha256;
+		private final long crc32;
+
+		Digests(long objId, long size, String md5, String sha1, String sha256, long crc32) {
+			this.objId = objId;
+			this.size = size;
+			this.md5 = md5;
+			this.sha1 = sha1;
+			this.sha256 = sha256;
+			this.crc32 = crc32;
+		}
+
+		public long getObjId() {
+			return objId;
+		}
+
+		/**
+		 * @return the number of bytes read, which is less than the file size if
+		 * the file could only be read in part
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		public String getMd5() {
+			return md5;
+		}
+
+		public String getSha1() {
+			return sha1;
+		}
+
+		public String getSha256() {
+			return sha256;
+		}
+
+		public long getCrc32() {
+			return crc32;
+		}
+	}
+	public static final int DEFAULT_BATCH_SIZE = 500;
+	//large enough that a read is a few image blocks, not a JNI call per cluster
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final Logger logger = Logger.getLogger(FileHasher.class.getName());
+	private final Set<Algorithm> algorithms;
+	private final int threads;
+	private final int batchSize;
+	private final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[BUFFER_SIZE];
+		}
+	};
+
+	/**
+	 * A hasher of MD5, SHA-1 and SHA-256 on a thread per processor
+	 */
+	public FileHasher() {
+		this(EnumSet.of(Algorithm.MD5, Algorithm.SHA1, Algorithm.SHA256), Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * @param algorithms the digests to compute
+	 * @param threads number of files hashFiles() reads at a time
+	 * @param batchSize number of MD5s hashFiles() stores per transaction
+	 */
+	public FileHasher(Set<Algorithm> algorithms, int threads, int batchSize) {
+		this.algorithms = algorithms.isEmpty() ? EnumSet.noneOf(Algorithm.class) : EnumSet.copyOf(algorithms);
+		this.threads = Math.max(1, threads);
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * Compute the digests of a file, reading it once. Nothing is stored in
+	 * the database.
+	 *
+	 * @param file the file to read
+	 * @return the digests
+	 * @throws IOException if the file could not be read
+	 */
+	public Digests digest(AbstractFile file) throws IOException {
+		return digest(file, algorithms, buffers.get());
+	}
+
+	/**
+	 * Compute the digests of files, reading several files at a time, and
+	 * store their MD5s in the case database if MD5 is one of the digests.
+	 * Files that cannot be read are logged and left out of the result. Files
+	 * that can only be read in part are logged and their MD5s not stored.
+	 *
+	 * @param files the files to hash, all of the same case
+	 * @return the digests of each file by object id, in the order the files
+	 * were hashed
+	 * @throws TskCoreException if the MD5s could not be stored; those of
+	 * earlier batches are
+	 * @throws InterruptedException if interrupted waiting for a file to be
+	 * hashed; the MD5s of the current batch are not stored
+	 */
+	public Map<Long, Digests> hashFiles(Collection<? extends AbstractFile> files) throws TskCoreException, InterruptedException {
+		Map<Long, Digests> result = new LinkedHashMap<Long, Digests>();
+		if (files.isEmpty()) {
+			return result;
+		}
+		final boolean storeMd5 = algorithms.contains(Algorithm.MD5);
+		List<AbstractFile> batchFiles = new ArrayList<AbstractFile>(batchSize);
+		List<String> batchMd5s = new ArrayList<String>(batchSize);
+		long bytes = 0;
+		long start = System.nanoTime();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CompletionService<Object[]> completion = new ExecutorCompletionService<Object[]>(executor);
+			Iterator<? extends AbstractFile> next = files.iterator();
+			//a few files queued per thread, so that a million files are not all queued at once
+			int inFlight = 0;
+			while (inFlight < threads * 4 && next.hasNext()) {
+				submit(completion, next.next());
+				inFlight++;
+			}
+			while (inFlight > 0) {
+				Object[] done;
+				try {
+					done = completion.take().get();
+				} catch (ExecutionException ex) {
+					throw new TskCoreException("Error hashing files", ex);
+				}
+				inFlight--;
+				if (next.hasNext()) {
+					submit(completion, next.next());
+					inFlight++;
+				}
+				AbstractFile file = (AbstractFile) done[0];
+				Digests digests = (Digests) done[1];
+				if (digests == null) {
+					continue;
+				}
+				result.put(file.getId(), digests);
+				bytes += digests.getSize();
+				if (storeMd5 && digests.getSize() != file.getSize()) {
+					//the MD5 of part of the file is not the file's hash
+					logger.log(Level.WARNING, "Could only read {0} of {1} bytes of file: {2}: {3}, not storing its MD5",
+							new Object[]{digests.getSize(), file.getSize(), file.getId(), file.getName()});
+				} else if (storeMd5) {
+					batchFiles.add(file);
+					batchMd5s.add(digests.getMd5());
+					if (batchFiles.size() >= batchSize) {
+						file.getSleuthkitCase().setMd5Hashes(batchFiles, batchMd5s);
+						batchFiles.clear();
+						batchMd5s.clear();
+					}
+				}
+			}
+			if (!batchFiles.isEmpty()) {
+				batchFiles.get(0).getSleuthkitCase().setMd5Hashes(batchFiles, batchMd5s);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		long millis = Math.max(1, (System.nanoTime() - start) / 1000000L);
+		logger.log(Level.INFO, "Hashed {0} files, {1} MB in {2} ms ({3} MB/s) on {4} threads",
+				new Object[]{result.size(), bytes >> 20, millis, (bytes >> 20) * 1000 / millis, threads});
+		return result;
+	}
+
+	private void submit(CompletionService<Object[]> completion, final AbstractFile file) {
+		completion.submit(new Callable<Object[]>() {
+			@Override
+			public Object[] call() {
+				Digests digests = null;
+				try {
+					digests = digest(file);
+				} catch (IOException ex) {
+					logger.log(Level.WARNING, "Error hashing file: " + file.getId() + ": " + file.getName(), ex);
+				}
+				return new Object[]{file, digests};
+			}
+		});
+	}
+
+	/**
+	 * Compute the digests of a file in one read of it
+	 *
+	 * @param file the file to read
+	 * @param algorithms the digests to compute
+	 * @param buffer buffer to read into, owned by the calling thread
+	 * @return the digests
+	 * @throws IOException if the file could not be read
+	 */
+	static Digests digest(AbstractFile file, Set<Algorithm> algorithms, byte[] buffer) throws IOException {
+		MessageDigest md5 = null;
+		MessageDigest sha1 = null;
+		MessageDigest sha256 = null;
+		CRC32 crc32 = algorithms.contains(Algorithm.CRC32) ? new CRC32() : null;
+		try {
+			md5 = algorithms.contains(Algorithm.MD5) ? MessageDigest.getInstance(Algorithm.MD5.jcaName) : null;
+			sha1 = algorithms.contains(Algorithm.SHA1) ? MessageDigest.getInstance(Algorithm.SHA1.jcaName) : null;
+			sha256 = algorithms.contains(Algorithm.SHA256) ? MessageDigest.getInstance(Algorithm.SHA256.jcaName) : null;
+		} catch (NoSuchAlgorithmException ex) {
+			//every Java platform has all three
+			throw new IOException(ex);
+		}
+
+		long total = 0;
+		InputStream in = new ReadContentInputStream(file);
+		try {
+			int len;
+			while ((len = in.read(buffer)) != -1) {
+				if (md5 != null) {
+					md5.update(buffer, 0, len);
+				}
+				if (sha1 != null) {
+					sha1.update(buffer, 0, len);
+				}
+				if (sha256 != null) {
+					sha256.update(buffer, 0, len);
+				}
+				if (crc32 != null) {
+					crc32.update(buffer, 0, len);
+				}
+				total += len;
+			}
+		} finally {
+			in.close();
+		}
+		return new Digests(file.getId(), total,
+				md5 != null ? toHex(md5.digest()) : null,
+				sha1 != null ? toHex(sha1.digest()) : null,
+				sha256 != null ? toHex(sha256.digest()) : null,
+				crc32 != null ? crc32.getValue() : -1);
+	}
+
+	/**
+	 * @return the bytes as lower case hex, two digits per byte
+	 */
+	static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A full-text index of the names and parent paths of the files in a case
+ * database, in an FTS3 table (tsk_files_fts) whose docid is the file's
+ * obj_id. FTS3 is the full-text module of the SQLite the case database is
+ * opened with; FTS5 needs 3.9.
+ *
+ * Names and paths are split into words at every ASCII character that is not
+ * a letter or digit, as FTS3's simple tokenizer does, so "Q3_report-final.doc"
+ * is found by searching for "report", "rep" or "final doc". Each word of a
+ * search matches words it starts.
+ *
+ * Rows of tsk_files are only ever added, and never renamed, so the index is
+ * kept in step by adding the files whose obj_id is above the highest one
+ * indexed (see catchUp()). There are no triggers on tsk_files, so the native
+ * library, whose SQLite may not have FTS3, can keep adding files.
+ */
+class FileNameIndex {
+
+	static final String TABLE = "tsk_files_fts";
+	//files whose name matches first, then files matched through their path
+	static final String SEARCH = "SELECT docid, 1 AS rank FROM " + TABLE + " WHERE " + TABLE + " MATCH ? "
+			+ "UNION ALL "
+			+ "SELECT docid, 2 AS rank FROM " + TABLE + " WHERE " + TABLE + " MATCH ? "
+			+ "AND docid NOT IN (SELECT docid FROM " + TABLE + " WHERE " + TABLE + " MATCH ?) "
+			+ "ORDER BY rank, docid LIMIT ? OFFSET ?";
+	static final String LAST_INDEXED = "SELECT MAX(docid) FROM " + TABLE;
+	static final String LAST_FILE = "SELECT MAX(obj_id) FROM tsk_files";
+
+	private FileNameIndex() {
+	}
+
+	/**
+	 * @return true if the case database has the index
+	 */
+	static boolean exists(Connection con) throws SQLException {
+		Statement statement = con.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE name = '" + TABLE + "'");
+			try {
+				return rs.next() && rs.getInt(1) > 0;
+			} finally {
+				rs.close();
+			}
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Create the index table if the database does not have it. It is filled
+	 * by catchUp().
+	 */
+	static void create(Connection con) throws SQLException {
+		Statement statement = con.createStatement();
+		try {
+			statement.execute("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE + " USING fts3(name, parent_path)");
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Add the files added to tsk_files since the index was last brought up to
+	 * date. Run under the case write lock.
+	 *
+	 * @return the number of files added to the index
+	 */
+	static int catchUp(Connection con) throws SQLException {
+		Statement statement = con.createStatement();
+		try {
+			return statement.executeUpdate("INSERT INTO " + TABLE + " (docid, name, parent_path) "
+					+ "SELECT obj_id, name, parent_path FROM tsk_files "
+					+ "WHERE obj_id > (SELECT COALESCE(MAX(docid), 0) FROM " + TABLE + ") ORDER BY obj_id");
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * @return true if tsk_files has files the index does not
+	 */
+	static boolean isBehind(CaseDbConnection connection) throws SQLException {
+		return maxId(connection.prepareStatement(LAST_FILE)) > maxId(connection.prepareStatement(LAST_INDEXED));
+	}
+
+	private static long maxId(PreparedStatement statement) throws SQLException {
+		ResultSet rs = statement.executeQuery();
+		try {
+			return rs.next() ? rs.getLong(1) : 0;
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * Turn search text into FTS3 queries, one matching the words in the name
+	 * column only and one matching them in either column.
+	 *
+	 * @param text words to search for, in any case and with any punctuation
+	 * @return the name query and the query over both columns, or null if the
+	 * text has no words
+	 */
+	static String[] toQueries(String text) {
+		List<String> words = new ArrayList<String>();
+		StringBuilder word = new StringBuilder();
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : ' ';
+			if (c >= 0x80 || Character.isLetterOrDigit(c)) {
+				//the simple tokenizer folds ASCII only
+				word.append(c < 0x80 ? Character.toLowerCase(c) : c);
+			} else if (word.length() > 0) {
+				words.add(word.toString());
+				word.setLength(0);
+			}
+		}
+		if (words.isEmpty()) {
+			return null;
+		}
+		StringBuilder inName = new StringBuilder();
+		StringBuilder anywhere = new StringBuilder();
+		for (String w : words) {
+			inName.append(inName.length() > 0 ? " " : "").append("name:").append(w).append('*');
+			anywhere.append(anywhere.length() > 0 ? " " : "").append(w).append('*');
+		}
+		return new String[]{inName.toString(), anywhere.toString()};
+	}
+}
@@ -18,14 +18,15 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
  * Represents a file system object stored in tsk_fs_info table FileSystem has a
  * parent content object (volume or image) and children content objects (files
- * and directories) and fs-specific attributes. The object also maintains a
- * handle to internal file-system structures and the handle is reused across
- * reads.
+ * and directories) and fs-specific attributes. Reads go through the handle to
+ * internal file-system structures, which the case's HandleManager keeps open
+ * while the file system is in use.
  */
 public class FileSystem extends AbstractContent {
 
@@ -33,7 +34,6 @@ public class FileSystem extends AbstractContent {
 			firstInum, lastInum;
 	private TskData.TSK_FS_TYPE_ENUM fsType;
 	private Content parent;
-	private volatile long filesystemHandle = 0;
 
 	/**
 	 * Constructor most inputs are from the database
@@ -62,16 +62,47 @@ public class FileSystem extends AbstractContent {
 		this.lastInum = last_inum;
 	}
 
+	/**
+	 * Close the file system's native handle, and those of its files, if no
+	 * read holds them. They are reopened if read again.
+	 */
 	@Override
 	public void close() {
-		//does nothing currently, we are caching the fs handles
+		getSleuthkitCase().getHandleManager().close(getId());
 	}
-	
-	
 
 	@Override
 	public int read(byte[] buf, long offset, long len) throws TskCoreException {
-		return SleuthkitJNI.readFs(getFileSystemHandle(), buf, offset, len);
+		if (getSleuthkitCase().getImageBlockCache().isCached(len)) {
+			//the file system's bytes are the image's from imgOffset
+			len = Math.min(Math.min(len, buf.length), getSize() - offset);
+			return len > 0 ? getImage().read(buf, 0, imgOffset + offset, (int) len) : 0;
+		}
+		NativeHandle handle = acquireNativeHandle();
+		try {
+			return SleuthkitJNI.readFs(handle.getPointer(), buf, offset, len);
+		} finally {
+			handle.release();
+		}
+	}
+
+	@Override
+	public int read(ByteBuffer buf, long offset) throws TskCoreException {
+		if (getSleuthkitCase().getImageBlockCache().isCached(buf.remaining())) {
+			int limit = buf.limit();
+			buf.limit(buf.position() + (int) Math.max(0, Math.min(buf.remaining(), getSize() - offset)));
+			try {
+				return getImage().read(buf, imgOffset + offset);
+			} finally {
+				buf.limit(limit);
+			}
+		}
+		NativeHandle handle = acquireNativeHandle();
+		try {
+			return SleuthkitJNI.readFs(handle.getPointer(), buf, offset);
+		} finally {
+			handle.release();
+		}
 	}
 
 	@Override
@@ -81,22 +112,28 @@ public class FileSystem extends AbstractContent {
 	}
 
 	/**
-	 * Lazily loads the internal file system structure: won't be loaded until
-	 * this is called and maintains the handle to it to reuse it
-	 *
-	 * @return a filesystem pointer from the sleuthkit
-	 * @throws TskCoreException exception throw if an internal tsk core error
-	 * occurs
+	 * The handle to the internal file system structure, opened from the
+	 * image's handle on the first read and held open by the files opened
+	 * from it
 	 */
-	long getFileSystemHandle() throws TskCoreException {
-		if (filesystemHandle == 0) {
-			synchronized (this) {
-				if (filesystemHandle == 0) {
-					filesystemHandle = SleuthkitJNI.openFs(getImage().getImageHandle(), imgOffset);
-				}
+	@Override
+	NativeHandle newNativeHandle() {
+		return new NativeHandle(getSleuthkitCase().getHandleManager(), getId(), HandleManager.Kind.FILE_SYSTEM) {
+			@Override
+			protected NativeHandle acquireParent() throws TskCoreException {
+				return getImage().acquireNativeHandle();
 			}
-		}
-		return this.filesystemHandle;
+
+			@Override
+			protected long open(long parentPointer) throws TskCoreException {
+				return SleuthkitJNI.openFsHandle(parentPointer, imgOffset);
+			}
+
+			@Override
+			protected void close(long pointer) {
+				SleuthkitJNI.closeFsHandle(pointer);
+			}
+		};
 	}
 
 	public Directory getRootDirectory() throws TskCoreException {
@@ -176,18 +213,6 @@ public class FileSystem extends AbstractContent {
 		return lastInum;
 	}
 
-	@Override
-	public void finalize() throws Throwable {
-		try {
-			if (filesystemHandle != 0) {
-				SleuthkitJNI.closeFs(filesystemHandle);
-				filesystemHandle = 0;
-			}
-		} finally {
-			super.finalize();
-		}
-	}
-
 	@Override
 	public <T> T accept(SleuthkitItemVisitor<T> v) {
 		return v.visit(this);
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.sleuthkit.datamodel.TskData.FileKnown;
@@ -28,8 +29,10 @@ import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_TYPE_ENUM;
 
 /**
  * Generalized class that stores metadata that are common to both File and
- * Directory objects stored in tsk_files table Caches internal tsk file handle
- * and reuses it for reads
+ * Directory objects stored in tsk_files table Reads through the internal tsk
+ * file handle, which the case's HandleManager keeps open while in use. The
+ * handle is shared by every object of the file and may be closed between
+ * reads, so it is not kept in a field of its own: read with read().
  *
  * TODO move common getters to AbstractFile class
  */
@@ -38,7 +41,7 @@ public abstract class FsContent extends AbstractFile {
 	private static final Logger logger = Logger.getLogger(AbstractFile.class.getName());
 	///read only database tsk_files fields
 	protected final long fsObjId;
-	private String uniquePath;
+	private volatile String uniquePath;
 	///read-write database tsk_files fields
 	private final SleuthkitCase tskCase;
 	
@@ -46,11 +49,6 @@ public abstract class FsContent extends AbstractFile {
 	 * parent file system
 	 */
 	private volatile FileSystem parentFileSystem;
-	///other members
-	/**
-	 * file Handle
-	 */
-	protected volatile long fileHandle = 0;
 
 	/**
 	 * Create an FsContent object from a database object
@@ -129,14 +127,34 @@ public abstract class FsContent extends AbstractFile {
 				//special case for 0-size file
 				return 0;
 			}
-			if (fileHandle == 0) {
-				synchronized (this) {
-					if (fileHandle == 0) {
-						fileHandle = SleuthkitJNI.openFile(getFileSystem().getFileSystemHandle(), metaAddr, attrType, attrId);
-					}
-				}
+			NativeHandle handle = acquireNativeHandle();
+			try {
+				return SleuthkitJNI.readFile(handle.getPointer(), buf, offset, len);
+			} finally {
+				handle.release();
+			}
+		}
+		catch (TskCoreException ex) {
+			if (!getImage().imageFileExists()) {
+				tskCase.submitError("Image File Read Error", "Image file is does not exist or is inaccessible.");
+			}
+			throw ex;
+		}
+	}
+
+	@Override
+	protected int readInt(ByteBuffer buf, long offset) throws TskCoreException {
+		try {
+			if (offset == 0 && size == 0) {
+				//special case for 0-size file
+				return 0;
+			}
+			NativeHandle handle = acquireNativeHandle();
+			try {
+				return SleuthkitJNI.readFile(handle.getPointer(), buf, offset);
+			} finally {
+				handle.release();
 			}
-			return SleuthkitJNI.readFile(fileHandle, buf, offset, len);
 		}
 		catch (TskCoreException ex) {
 			if (!getImage().imageFileExists()) {
@@ -146,6 +164,26 @@ public abstract class FsContent extends AbstractFile {
 		}
 	}
 
+	@Override
+	NativeHandle newNativeHandle() {
+		return new NativeHandle(tskCase.getHandleManager(), getId(), HandleManager.Kind.FILE) {
+			@Override
+			protected NativeHandle acquireParent() throws TskCoreException {
+				return getFileSystem().acquireNativeHandle();
+			}
+
+			@Override
+			protected long open(long parentPointer) throws TskCoreException {
+				return SleuthkitJNI.openFile(parentPointer, metaAddr, attrType, attrId);
+			}
+
+			@Override
+			protected void close(long pointer) {
+				SleuthkitJNI.closeFile(pointer);
+			}
+		};
+	}
+
 	@Override
 	public boolean isRoot() {
 		FileSystem fs = null;
@@ -179,37 +217,31 @@ public abstract class FsContent extends AbstractFile {
 	}
 
 	@Override
-	public synchronized String getUniquePath() throws TskCoreException {
-		if (uniquePath == null) {
+	public String getUniquePath() throws TskCoreException {
+		String path = uniquePath;
+		if (path == null) {
+			//the file system path is looked up once per case, not once per file
+			String fsPath = getSleuthkitCase().getCachedUniquePath(fsObjId);
+			if (fsPath == null) {
+				fsPath = getSleuthkitCase().cacheUniquePath(getFileSystem());
+			}
 			StringBuilder sb = new StringBuilder();
-			sb.append(getFileSystem().getUniquePath());
+			sb.append(fsPath);
 			sb.append(getParentPath());
 			sb.append(getName());
-			uniquePath = sb.toString();
+			path = sb.toString();
+			uniquePath = path;
 		}
-		return uniquePath;
+		return path;
 	}
 
+	/**
+	 * Close the file's native handle if no read holds it. It is reopened if
+	 * the file is read again.
+	 */
 	@Override
 	public void close() {
-		if (fileHandle != 0) {
-			synchronized (this) {
-				//need to recheck the handle after unlock
-				if (fileHandle != 0) {
-					SleuthkitJNI.closeFile(fileHandle);
-					fileHandle = 0;
-				}
-			}
-		}
-	}
-
-	@Override
-	public void finalize() throws Throwable {
-		try {
-			close();
-		} finally {
-			super.finalize();
-		}
+		tskCase.getHandleManager().close(getId());
 	}
 
 	@Override
@@ -218,7 +250,6 @@ public abstract class FsContent extends AbstractFile {
 				+ "FsContent [\t"
 				+ "fsObjId " + fsObjId
 				+ "\t" + "uniquePath " + uniquePath
-				+ "\t" + "fileHandle " + fileHandle
 				+ "]\t";
 	}
 }
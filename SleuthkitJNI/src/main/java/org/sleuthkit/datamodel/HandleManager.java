@@ -0,0 +1,308 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The native Sleuth Kit handles of a case's images, volume systems, volumes,
+ * file systems and files, so that native memory stays bounded when many
+ * images are read in one process.
+ *
+ * Each handle is shared by the content objects with its object id and is
+ * reference counted for the length of a read. When the estimated native
+ * memory of the open handles goes over the budget, the least recently used
+ * handles that no read holds are closed, down to 7/8 of the budget. A closed
+ * handle is reopened by the next read of its content. A parent is held open
+ * by its open children, so an image closes once its file systems have.
+ *
+ * The sizes are rough estimates of what the Sleuth Kit allocates per handle:
+ * an image keeps a 2 MB cache of its blocks, a file system its superblock,
+ * group descriptors or MFT entries, a file its attributes and run lists.
+ */
+public class HandleManager {
+
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	/**
+	 * Kinds of native handle, with an estimate of the native memory of each
+	 */
+	public enum Kind {
+
+		IMAGE(2L * 1024 * 1024),
+		VOLUME_SYSTEM(64 * 1024),
+		VOLUME(1024),
+		FILE_SYSTEM(512 * 1024),
+		FILE(16 * 1024);
+		private final long estimatedBytes;
+
+		private Kind(long estimatedBytes) {
+			this.estimatedBytes = estimatedBytes;
+		}
+
+		public long getEstimatedBytes() {
+			return estimatedBytes;
+		}
+	}
+	private final ConcurrentMap<Long, NativeHandle> handles = new ConcurrentHashMap<Long, NativeHandle>();
+	private volatile long maxBytes;
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong[] open = new AtomicLong[Kind.values().length];
+	private final AtomicLong opens = new AtomicLong();
+	private final AtomicLong closes = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param maxBytes estimated native memory to keep open handles within
+	 */
+	HandleManager(long maxBytes) {
+		this.maxBytes = maxBytes;
+		for (int i = 0; i < open.length; i++) {
+			open[i] = new AtomicLong();
+		}
+	}
+
+	/**
+	 * @param maxBytes estimated native memory to keep open handles within;
+	 * idle handles over a smaller budget are closed now
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		evictIdle();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Take a reference on the handle of a content object, making one if it
+	 * has none. Release it when the read is done.
+	 *
+	 * @param content an Image, VolumeSystem, Volume, FileSystem or FsContent
+	 * @return the handle, acquired
+	 * @throws TskCoreException if the content has no native handle
+	 */
+	NativeHandle acquire(AbstractContent content) throws TskCoreException {
+		long id = content.getId();
+		while (true) {
+			NativeHandle handle = handles.get(id);
+			if (handle == null) {
+				NativeHandle created = content.newNativeHandle();
+				if (created == null) {
+					throw new TskCoreException("No native handle for object " + id);
+				}
+				handle = handles.putIfAbsent(id, created);
+				if (handle == null) {
+					handle = created;
+				}
+			}
+			if (handle.tryAcquire()) {
+				return handle;
+			}
+			//closed since it was looked up
+			handles.remove(id, handle);
+		}
+	}
+
+	/**
+	 * Count a native handle opened, and close idle handles if over budget
+	 */
+	void opened(NativeHandle handle) {
+		opens.incrementAndGet();
+		open[handle.kind.ordinal()].incrementAndGet();
+		if (bytes.addAndGet(handle.kind.getEstimatedBytes()) > maxBytes) {
+			evictIdle();
+		}
+	}
+
+	/**
+	 * Close least recently used idle handles until within 7/8 of the budget.
+	 * Closing a child releases its parent, so this takes another pass while
+	 * that frees more.
+	 */
+	private synchronized void evictIdle() {
+		long target = maxBytes - maxBytes / 8;
+		boolean evicted = true;
+		while (bytes.get() > target && evicted) {
+			evicted = false;
+			//when each was last used, taken once as reads go on while sorting
+			List<Candidate> idle = new ArrayList<Candidate>();
+			for (NativeHandle handle : handles.values()) {
+				if (handle.isOpen()) {
+					idle.add(new Candidate(handle));
+				}
+			}
+			Collections.sort(idle);
+			for (Candidate candidate : idle) {
+				if (bytes.get() <= target) {
+					break;
+				}
+				if (close(candidate.handle)) {
+					evictions.incrementAndGet();
+					evicted = true;
+				}
+			}
+		}
+	}
+
+	private static final class Candidate implements Comparable<Candidate> {
+
+		private final NativeHandle handle;
+		private final long lastUsed;
+
+		Candidate(NativeHandle handle) {
+			this.handle = handle;
+			this.lastUsed = handle.lastUsed;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			return lastUsed < other.lastUsed ? -1 : (lastUsed == other.lastUsed ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Close a handle if no read holds it
+	 *
+	 * @return true if it was open and has been closed
+	 */
+	private boolean close(NativeHandle handle) {
+		boolean closed = handle.closeIfIdle();
+		if (handle.isDead()) {
+			handles.remove(handle.id, handle);
+		}
+		if (closed) {
+			closes.incrementAndGet();
+			open[handle.kind.ordinal()].decrementAndGet();
+			bytes.addAndGet(-handle.kind.getEstimatedBytes());
+		}
+		return closed;
+	}
+
+	/**
+	 * Close the idle handle of a content object and the idle handles opened
+	 * from it, such as the files of a file system. Handles a read holds stay
+	 * open; content closed here reopens its handle when read again.
+	 *
+	 * @param id object id of the content
+	 */
+	synchronized void close(long id) {
+		NativeHandle root = handles.get(id);
+		if (root == null) {
+			return;
+		}
+		//nothing is opened from a file, and files are closed one by one
+		boolean closed = root.kind != Kind.FILE;
+		while (closed) {
+			closed = false;
+			for (NativeHandle handle : handles.values()) {
+				if (handle.isOpenedFrom(root) && handle != root && close(handle)) {
+					closed = true;
+				}
+			}
+		}
+		close(root);
+	}
+
+	/**
+	 * Close all idle handles, when the case is closed
+	 *
+	 * @return the number of handles left open because reads hold them
+	 */
+	synchronized int closeAll() {
+		boolean closed = true;
+		while (closed) {
+			closed = false;
+			for (NativeHandle handle : handles.values()) {
+				if (close(handle)) {
+					closed = true;
+				}
+			}
+		}
+		return handles.size();
+	}
+
+	/**
+	 * @return number of native handles open
+	 */
+	public long getOpenHandles() {
+		long total = 0;
+		for (AtomicLong count : open) {
+			total += count.get();
+		}
+		return total;
+	}
+
+	/**
+	 * @return number of native handles of a kind open
+	 */
+	public long getOpenHandles(Kind kind) {
+		return open[kind.ordinal()].get();
+	}
+
+	/**
+	 * @return estimated native memory of the open handles
+	 */
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * @return number of native handles opened, including reopens
+	 */
+	public long getOpens() {
+		return opens.get();
+	}
+
+	/**
+	 * @return number of native handles closed
+	 */
+	public long getCloses() {
+		return closes.get();
+	}
+
+	/**
+	 * @return number of idle native handles closed to stay within the budget
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("HandleManager [open=");
+		sb.append(getOpenHandles()).append(" (");
+		for (Kind kind : Kind.values()) {
+			if (kind.ordinal() > 0) {
+				sb.append(", ");
+			}
+			sb.append(kind.name().toLowerCase()).append('=').append(getOpenHandles(kind));
+		}
+		sb.append("), opens=").append(getOpens()).append(", closes=").append(getCloses())
+				.append(", evictions=").append(getEvictions())
+				.append(", bytes=").append(getBytes()).append(" of ").append(maxBytes).append(']');
+		return sb.toString();
+	}
+}
@@ -19,20 +19,20 @@
 package org.sleuthkit.datamodel;
 
 import java.io.IOException;
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.io.InputStream;
 
 /**
- * Utility to calculate a hash for FsContent and store in tsk database
+ * Utility to calculate a hash for FsContent and store in tsk database. To
+ * compute several digests in one read, or hash many files, use FileHasher.
  */
 public class Hash {
 
 	private final static int BUFFER_SIZE = 16 * 1024;
-	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private final static Set<FileHasher.Algorithm> MD5 = EnumSet.of(FileHasher.Algorithm.MD5);
+	private final static Set<FileHasher.Algorithm> SHA1 = EnumSet.of(FileHasher.Algorithm.SHA1);
 
 	/**
 	 * Generate the md5 hash for the given FsContent and store it in the
@@ -42,59 +42,23 @@ public class Hash {
 	 * @return md5 of the given FsContent object
 	 */
 	public String calculateMd5(AbstractFile file) throws IOException {
-		String hashText = "";
-		InputStream in = new ReadContentInputStream(file);
-		Logger logger = Logger.getLogger(Hash.class.getName());
+		//the buffer is per call, so that a Hash can be shared between threads
+		String hashText = FileHasher.digest(file, MD5, new byte[BUFFER_SIZE]).getMd5();
 		try {
-			MessageDigest md = MessageDigest.getInstance("md5");
-			int len = in.read(buffer);
-			while (len != -1) {
-				md.update(buffer, 0, len);
-				len = in.read(buffer);
-			}
-			byte[] hash = md.digest();
-			BigInteger bigInt = new BigInteger(1, hash);
-			hashText = bigInt.toString(16);
-			// zero padding
-			while (hashText.length() < 32) {
-				hashText = "0" + hashText;
-			}
 			file.getSleuthkitCase().setMd5Hash(file, hashText);
-		} catch (NoSuchAlgorithmException ex) {
-			logger.log(Level.WARNING, "No algorithm known as 'md5'", ex);
 		} catch (TskCoreException ex) {
-			logger.log(Level.WARNING, "Error updating content's md5 in database", ex);
-		} finally {
-			in.close();
+			Logger.getLogger(Hash.class.getName()).log(Level.WARNING, "Error updating content's md5 in database", ex);
 		}
 		return hashText;
 	}
 
-    public String calculateSha1(AbstractFile file) throws IOException {
-        String hashText = "";
-        InputStream in = new ReadContentInputStream(file);
-        Logger logger = Logger.getLogger(Hash.class.getName());
-        try{
-            MessageDigest md = MessageDigest.getInstance("sha1");
-            int len = in.read(buffer);
-            while (len != -1){
-                md.update(buffer, 0, len);
-                len = in.read(buffer);
-            }
-
-            byte[] hash = md.digest();
-
-            BigInteger bigInt = new BigInteger(1, hash);
-            hashText = bigInt.toString(16);
-
-            while(hashText.length() > 40){
-                hashText = "0" + hashText;
-            }
-        } catch (NoSuchAlgorithmException ex) {
-            logger.log(Level.WARNING, "No algorithm known as 'sha1'", ex);
-        } finally {
-            in.close();
-        }
-        return hashText;
-    }
+	/**
+	 * Generate the sha1 hash for the given FsContent
+	 *
+	 * @param file file object whose sha1 hash we want to calculate
+	 * @return sha1 of the given FsContent object
+	 */
+	public String calculateSha1(AbstractFile file) throws IOException {
+		return FileHasher.digest(file, SHA1, new byte[BUFFER_SIZE]).getSha1();
+	}
 }
@@ -18,26 +18,31 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Represents a disk image file, stored in tsk_image_info. Populated based on
  * data in database.
  *
- * Caches internal tsk image handle and reuses it for reads
+ * Reads through the case's HandleManager, which keeps the tsk image handle
+ * open while the image is in use
  */
 public class Image extends AbstractContent {
 	//data about image
 
 	private long type, ssize, size;
 	private String[] paths;
-	private volatile long imageHandle = 0;
 	private String timezone;
+	//the image files mapped, if raw; looked for on the first read
+	private volatile MappedRawImage mappedImage;
+	private volatile boolean mappingTried = false;
 
 	/**
 	 * constructor most inputs are from the database
@@ -59,17 +64,24 @@ public class Image extends AbstractContent {
 		this.size = 0;
 	}
 
-	/**
-	 * Get the handle to the sleuthkit image info object
-	 *
-	 * @return the object pointer
-	 */
-	public synchronized long getImageHandle() throws TskCoreException {
-		if (imageHandle == 0) {
-			imageHandle = SleuthkitJNI.openImage(paths);
-		}
+	@Override
+	NativeHandle newNativeHandle() {
+		return new NativeHandle(getSleuthkitCase().getHandleManager(), getId(), HandleManager.Kind.IMAGE) {
+			@Override
+			protected NativeHandle acquireParent() {
+				return null;
+			}
+
+			@Override
+			protected long open(long parentPointer) throws TskCoreException {
+				return SleuthkitJNI.openImageHandle(paths);
+			}
 
-		return imageHandle;
+			@Override
+			protected void close(long pointer) {
+				SleuthkitJNI.closeImageHandle(pointer);
+			}
+		};
 	}
 
 	@Override
@@ -77,29 +89,158 @@ public class Image extends AbstractContent {
 		return this;
 	}
 
+	/**
+	 * Close the image's native handle, and those of its volume systems,
+	 * volumes, file systems and files, if no read holds them, and unmap its
+	 * files if they are mapped. They are reopened if read again.
+	 */
 	@Override
 	public void close() {
-		//frees nothing, as we are caching image handles
+		getSleuthkitCase().getHandleManager().close(getId());
+		releaseMappedImage();
+	}
+
+	@Override
+	public int read(byte[] buf, long offset, long len) throws TskCoreException {
+		return read(buf, 0, offset, (int) Math.min(len, buf.length));
 	}
 
-	
-	
 	@Override
-	public void finalize() throws Throwable {
+	public int read(ByteBuffer buf, long offset) throws TskCoreException {
+		MappedRawImage mapped = getMappedImage();
+		if (mapped != null) {
+			int lenRead = mapped.read(buf, offset);
+			if (lenRead >= 0) {
+				return lenRead;
+			}
+			//closed under the read, read through the native library
+		}
+		ImageBlockCache cache = getSleuthkitCase().getImageBlockCache();
+		if (cache.isCached(buf.remaining())) {
+			return cache.read(this, buf, offset);
+		}
+		cache.countUncachedRead();
+		// read from the image
+		NativeHandle handle = acquireNativeHandle();
+		try {
+			return SleuthkitJNI.readImg(handle.getPointer(), buf, offset);
+		} finally {
+			handle.release();
+		}
+	}
+
+	/**
+	 * Read from the image into a buffer at an offset in it: from the mapped
+	 * image files if the image is raw, otherwise through the case's image
+	 * block cache if the read is small
+	 *
+	 * @param buf buffer to read to
+	 * @param bufOffset where in buf the data goes
+	 * @param offset byte offset in the image to start at
+	 * @param len amount of data to read
+	 * @return the number of bytes read
+	 * @throws TskCoreException if the image could not be read
+	 */
+	int read(byte[] buf, int bufOffset, long offset, int len) throws TskCoreException {
+		MappedRawImage mapped = getMappedImage();
+		if (mapped != null) {
+			int lenRead = mapped.read(buf, bufOffset, offset, len);
+			if (lenRead >= 0) {
+				return lenRead;
+			}
+			//closed under the read, read through the native library
+		}
+		ImageBlockCache cache = getSleuthkitCase().getImageBlockCache();
+		if (cache.isCached(len)) {
+			return cache.read(this, buf, bufOffset, offset, len);
+		}
+		cache.countUncachedRead();
+		return readNative(buf, bufOffset, offset, len);
+	}
+
+	/**
+	 * Read from the image through its native handle, bypassing the mapping
+	 * and the block cache
+	 *
+	 * @see #read(byte[], int, long, int)
+	 */
+	int readNative(byte[] buf, int bufOffset, long offset, int len) throws TskCoreException {
+		NativeHandle handle = acquireNativeHandle();
 		try {
-			if (imageHandle != 0) {
-				SleuthkitJNI.closeImg(imageHandle);
-				imageHandle = 0;
+			if (bufOffset == 0) {
+				return SleuthkitJNI.readImg(handle.getPointer(), buf, offset, len);
 			}
+			//through the reading thread's heap array, not a new one per read
+			return SleuthkitJNI.readImg(handle.getPointer(), ByteBuffer.wrap(buf, bufOffset, len), offset);
 		} finally {
-			super.finalize();
+			handle.release();
 		}
 	}
 
-	@Override
-	public int read(byte[] buf, long offset, long len) throws TskCoreException {
-		// read from the image
-		return SleuthkitJNI.readImg(getImageHandle(), buf, offset, len);
+	/**
+	 * @return true if the image is a raw image, one dd file or a split one
+	 */
+	public boolean isRaw() {
+		return type == TskData.TSK_IMG_TYPE_ENUM.TSK_IMG_TYPE_RAW_SING.getImageType()
+				|| type == TskData.TSK_IMG_TYPE_ENUM.TSK_IMG_TYPE_RAW_SPLIT.getImageType();
+	}
+
+	/**
+	 * @return true if reads of the image are served from its memory mapped
+	 * files rather than through the native library
+	 */
+	public boolean isMemoryMapped() {
+		return getMappedImage() != null;
+	}
+
+	/**
+	 * Map the image files the first time this is called, if the image is raw
+	 * and the case maps raw images
+	 *
+	 * @return the mapped image, or null to read through the native library
+	 */
+	private MappedRawImage getMappedImage() {
+		if (!mappingTried) {
+			synchronized (this) {
+				if (!mappingTried) {
+					if (isRaw() && getSleuthkitCase().isRawImageMapping() && paths.length > 0) {
+						try {
+							MappedRawImage mapped = new MappedRawImage(paths);
+							if (getSleuthkitCase().addMappedImage(this)) {
+								mappedImage = mapped;
+							} else {
+								//the case closed meanwhile
+								mapped.close();
+							}
+						} catch (IOException ex) {
+							Logger.getLogger(Image.class.getName()).log(Level.INFO, "Could not map raw image, reading it through the native library: " + this.getId(), ex);
+						} catch (OutOfMemoryError ex) {
+							//no address space left for the mapping, e.g. on a 32 bit JVM
+							Logger.getLogger(Image.class.getName()).log(Level.INFO, "Could not map raw image, reading it through the native library: " + this.getId(), ex);
+						}
+					}
+					mappingTried = true;
+				}
+			}
+		}
+		return mappedImage;
+	}
+
+	/**
+	 * Unmap the image files, so that they are not held open; the image is
+	 * mapped again on its next read if the case still maps raw images
+	 */
+	void releaseMappedImage() {
+		MappedRawImage mapped;
+		synchronized (this) {
+			mapped = mappedImage;
+			mappedImage = null;
+			mappingTried = false;
+		}
+		if (mapped != null) {
+			getSleuthkitCase().removeMappedImage(this);
+			mapped.close();
+		}
 	}
 
 	@Override
@@ -0,0 +1,299 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of blocks of image data, shared by the images of a case, so that
+ * small reads of the same sectors - DROID's probes of the ends of files, the
+ * hashing of small files, file system metadata read by directory walks - are
+ * copies from memory rather than reads through the native library.
+ *
+ * Blocks are BLOCK_SIZE bytes at multiples of BLOCK_SIZE in the image, keyed
+ * by image object id and block number. Reads larger than MAX_CACHED_READ,
+ * such as streaming a whole file, go straight to the image, so that they do
+ * not push out the blocks that are read again.
+ *
+ * The cache is split into segments, each an LRU list under its own lock, so
+ * that concurrent readers of different blocks rarely wait for each other. A
+ * block missed by two threads at once may be read twice. Images are never
+ * written, so blocks need no invalidation. Blocks that fail to read or read
+ * short before the end of the image are not kept.
+ */
+public class ImageBlockCache {
+
+	//a multiple of any sector size
+	public static final int BLOCK_SIZE = 64 * 1024;
+	public static final int MAX_CACHED_READ = 4 * BLOCK_SIZE;
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	private static final int SEGMENTS = 16;
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private volatile long maxBytes;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong uncachedReads = new AtomicLong();
+
+	private static final class BlockKey {
+
+		private final long imageId;
+		private final long block;
+
+		BlockKey(long imageId, long block) {
+			this.imageId = imageId;
+			this.block = block;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof BlockKey)) {
+				return false;
+			}
+			BlockKey other = (BlockKey) obj;
+			return imageId == other.imageId && block == other.block;
+		}
+
+		@Override
+		public int hashCode() {
+			long h = imageId * 31 + block;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+
+	private final class Segment {
+
+		private final LinkedHashMap<BlockKey, byte[]> blocks = new LinkedHashMap<BlockKey, byte[]>(64, 0.75f, true);
+		private long bytes = 0;
+
+		synchronized byte[] get(BlockKey key) {
+			return blocks.get(key);
+		}
+
+		synchronized void put(BlockKey key, byte[] block) {
+			byte[] old = blocks.put(key, block);
+			bytes += block.length - (old != null ? old.length : 0);
+			long max = maxBytes / SEGMENTS;
+			Iterator<Map.Entry<BlockKey, byte[]>> eldest = blocks.entrySet().iterator();
+			while (bytes > max && eldest.hasNext()) {
+				bytes -= eldest.next().getValue().length;
+				eldest.remove();
+				evictions.incrementAndGet();
+			}
+		}
+
+		synchronized void clear() {
+			blocks.clear();
+			bytes = 0;
+		}
+
+		synchronized long getBytes() {
+			return bytes;
+		}
+	}
+
+	/**
+	 * @param maxBytes most bytes of image data to keep, 0 to read uncached
+	 */
+	public ImageBlockCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment();
+		}
+	}
+
+	/**
+	 * @param maxBytes most bytes of image data to keep, 0 to read uncached;
+	 * blocks over a smaller size are evicted as blocks are added
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		if (maxBytes == 0) {
+			clear();
+		}
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return true if a read of len bytes goes through the cache
+	 */
+	boolean isCached(long len) {
+		return maxBytes > 0 && len <= MAX_CACHED_READ;
+	}
+
+	/**
+	 * Read from an image through the cache, into buf at bufOffset.
+	 *
+	 * @param image the image to read
+	 * @param buf buffer to read to
+	 * @param bufOffset where in buf the data goes
+	 * @param offset byte offset in the image to start at
+	 * @param len amount of data to read
+	 * @return the number of bytes read, less than len at the end of the image
+	 * @throws TskCoreException if the image could not be read
+	 */
+	int read(Image image, byte[] buf, int bufOffset, long offset, int len) throws TskCoreException {
+		int done = 0;
+		while (done < len) {
+			long position = offset + done;
+			byte[] block = getBlock(image, position / BLOCK_SIZE);
+			int inBlock = (int) (position % BLOCK_SIZE);
+			if (inBlock >= block.length) {
+				break;
+			}
+			int n = Math.min(len - done, block.length - inBlock);
+			System.arraycopy(block, inBlock, buf, bufOffset + done, n);
+			done += n;
+		}
+		return done;
+	}
+
+	/**
+	 * Read from an image through the cache, into buf from its position up to
+	 * its limit.
+	 *
+	 * @see #read(Image, byte[], int, long, int)
+	 */
+	int read(Image image, ByteBuffer buf, long offset) throws TskCoreException {
+		int len = buf.remaining();
+		int done = 0;
+		while (done < len) {
+			long position = offset + done;
+			byte[] block = getBlock(image, position / BLOCK_SIZE);
+			int inBlock = (int) (position % BLOCK_SIZE);
+			if (inBlock >= block.length) {
+				break;
+			}
+			int n = Math.min(len - done, block.length - inBlock);
+			buf.put(block, inBlock, n);
+			done += n;
+		}
+		return done;
+	}
+
+	/**
+	 * Count a read that bypassed the cache
+	 */
+	void countUncachedRead() {
+		uncachedReads.incrementAndGet();
+	}
+
+	private byte[] getBlock(Image image, long blockNumber) throws TskCoreException {
+		BlockKey key = new BlockKey(image.getId(), blockNumber);
+		Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+		byte[] block = segment.get(key);
+		if (block != null) {
+			hits.incrementAndGet();
+			return block;
+		}
+		misses.incrementAndGet();
+		block = new byte[BLOCK_SIZE];
+		long start = blockNumber * BLOCK_SIZE;
+		long imageSize = image.getSize();
+		int len = imageSize > 0 ? (int) Math.max(0, Math.min(BLOCK_SIZE, imageSize - start)) : BLOCK_SIZE;
+		int lenRead = 0;
+		while (lenRead < len) {
+			int n = image.readNative(block, lenRead, start + lenRead, len - lenRead);
+			if (n <= 0) {
+				if (n < 0 && lenRead == 0) {
+					throw new TskCoreException("Error reading block " + blockNumber + " of image " + image.getId());
+				}
+				break;
+			}
+			lenRead += n;
+		}
+		if (lenRead < BLOCK_SIZE) {
+			block = Arrays.copyOf(block, lenRead);
+		}
+		//a block cut short other than at the known end of the image may read
+		//in full next time, so only whole blocks and the last one are kept
+		if (lenRead == BLOCK_SIZE || (imageSize > 0 && lenRead == len && len > 0)) {
+			segment.put(key, block);
+		}
+		return block;
+	}
+
+	/**
+	 * Drop all cached blocks
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * @return number of block lookups served from the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of blocks read from the image
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return hits as a fraction of block lookups, 0 before any
+	 */
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return number of reads too large for the cache
+	 */
+	public long getUncachedReads() {
+		return uncachedReads.get();
+	}
+
+	/**
+	 * @return bytes of image data in the cache
+	 */
+	public long getBytes() {
+		long bytes = 0;
+		for (Segment segment : segments) {
+			bytes += segment.getBytes();
+		}
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ImageBlockCache [hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d, uncachedReads=%d, bytes=%d of %d]",
+				getHits(), getMisses(), getHitRate() * 100, getEvictions(), getUncachedReads(), getBytes(), maxBytes);
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -42,6 +43,9 @@ import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_TYPE_ENUM;
  * The class also supports reads of layout files, reading blocks across ranges in a sequence
  */
 public class LayoutFile extends AbstractFile{
+
+	private volatile RangeIndex rangeIndex;
+	private volatile Image image;
 	
 	protected LayoutFile(SleuthkitCase db, long objId, String name, 
 			TSK_DB_FILES_TYPE_ENUM fileType, 
@@ -99,49 +103,118 @@ public class LayoutFile extends AbstractFile{
 	}
 	
 	@Override
-    protected int readInt(byte[] buf, long offset, long len) throws TskCoreException {
-        long offsetInThisLayoutContent = 0; // current offset in this LayoutContent
-        int bytesRead = 0; // Bytes read so far
-		
-        for (TskFileRange range : getRanges()) {
-            if (bytesRead < len) { // we haven't read enough yet
-                if (offset < offsetInThisLayoutContent + range.getByteLen()) { // if we are in a range object we want to read from
-                    long offsetInRange = 0; // how far into the current range object to start reading
-                    if(bytesRead == 0){ // we haven't read anything yet so we want to read from the correct offset in this range object
-                        offsetInRange = offset - offsetInThisLayoutContent; // start reading from the correct offset
-                    }
-                    long offsetInImage = range.getByteStart() + offsetInRange; // how far into the image to start reading
-                    long lenToRead = Math.min(range.getByteLen() - offsetInRange, len-bytesRead); // how much we can read this time
-                    int lenRead = readImgToOffset(getImage().getImageHandle(), buf, bytesRead, offsetInImage, (int) lenToRead);
-                    bytesRead += lenRead;
-                    if(lenToRead != lenRead) { // If image read failed or was cut short
-                        break;
-                    }
-                }
-				offsetInThisLayoutContent += range.getByteLen();
-            } else { // we're done reading
-                break;
-            }
-        }
-        return bytesRead;
-    }
-	
-	/*
-	 * Read bytes from an image into a buffer, starting at given position in buffer
-	 * 
-	 * @param imgHandle		the image to read from
-	 * @param buf			the array to read into
-	 * @param offsetInBuf	where to start in the array
-	 * @param offsetInImage	where to start in the image
-	 * @param lenToRead		how far to read in the image
+	protected int readInt(byte[] buf, long offset, long len) throws TskCoreException {
+		final RangeIndex index = getRangeIndex();
+		final Image image = getImage();
+		len = Math.min(len, buf.length);
+		int bytesRead = 0; // Bytes read so far
+		for (int i = index.rangeAt(offset); i >= 0 && i < index.size() && bytesRead < len; i++) {
+			long offsetInRange = offset + bytesRead - index.fileStarts[i];
+			int lenToRead = (int) Math.min(index.fileStarts[i + 1] - offset - bytesRead, len - bytesRead);
+			if (lenToRead == 0) {
+				//an empty range
+				continue;
+			}
+			//straight into the caller's array at bytesRead
+			int lenRead = image.read(buf, bytesRead, index.imageStarts[i] + offsetInRange, lenToRead);
+			if (lenRead > 0) {
+				bytesRead += lenRead;
+			}
+			if (lenToRead != lenRead) { // If image read failed or was cut short
+				break;
+			}
+		}
+		return bytesRead;
+	}
+
+	@Override
+	protected int readInt(ByteBuffer buf, long offset) throws TskCoreException {
+		final RangeIndex index = getRangeIndex();
+		final Image image = getImage();
+		final int limit = buf.limit();
+		final long len = buf.remaining();
+		int bytesRead = 0; // Bytes read so far
+		try {
+			for (int i = index.rangeAt(offset); i >= 0 && i < index.size() && bytesRead < len; i++) {
+				long offsetInRange = offset + bytesRead - index.fileStarts[i];
+				int lenToRead = (int) Math.min(index.fileStarts[i + 1] - offset - bytesRead, len - bytesRead);
+				if (lenToRead == 0) {
+					//an empty range
+					continue;
+				}
+				//the image read fills the buffer up to its limit, so stop it at the end of the range
+				buf.limit(buf.position() + lenToRead);
+				int lenRead = image.read(buf, index.imageStarts[i] + offsetInRange);
+				if (lenRead > 0) {
+					bytesRead += lenRead;
+				}
+				if (lenToRead != lenRead) { // If image read failed or was cut short
+					break;
+				}
+			}
+		} finally {
+			buf.limit(limit);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * The ranges of a layout file as arrays: where each range starts in the
+	 * file, cumulatively, and in the image, so that the range holding a file
+	 * offset is found by binary search
 	 */
-    private int readImgToOffset(long imgHandle, byte[] buf, int offsetInBuf, long offsetInImage, int lenToRead) throws TskCoreException {
-        byte[] currentBuffer = new byte[lenToRead]; // the buffer for the current range object
-        int lenRead = SleuthkitJNI.readImg(imgHandle, currentBuffer, offsetInImage, lenToRead);
-        System.arraycopy(currentBuffer, 0, buf, offsetInBuf, lenToRead); // copy what we just read into the main buffer
-        return lenRead;
-    }
+	static final class RangeIndex {
 
+		//fileStarts[i] is the file offset of range i; fileStarts[size()] the file size
+		private final long[] fileStarts;
+		private final long[] imageStarts;
+
+		RangeIndex(List<TskFileRange> ranges) {
+			fileStarts = new long[ranges.size() + 1];
+			imageStarts = new long[ranges.size()];
+			for (int i = 0; i < ranges.size(); i++) {
+				TskFileRange range = ranges.get(i);
+				imageStarts[i] = range.getByteStart();
+				fileStarts[i + 1] = fileStarts[i] + range.getByteLen();
+			}
+		}
+
+		int size() {
+			return imageStarts.length;
+		}
+
+		/**
+		 * @return index of the range holding the file offset, or -1 if the
+		 * offset is past the end of the file
+		 */
+		int rangeAt(long offset) {
+			if (offset < 0 || offset >= fileStarts[size()]) {
+				return -1;
+			}
+			//the last range starting at or before the offset, which skips empty ranges
+			int low = 0;
+			int high = size() - 1;
+			while (low < high) {
+				int mid = (low + high + 1) >>> 1;
+				if (fileStarts[mid] <= offset) {
+					low = mid;
+				} else {
+					high = mid - 1;
+				}
+			}
+			return low;
+		}
+	}
+
+	private RangeIndex getRangeIndex() throws TskCoreException {
+		RangeIndex index = rangeIndex;
+		if (index == null) {
+			//ranges do not change, so a race builds the same index twice at worst
+			index = new RangeIndex(getRanges());
+			rangeIndex = index;
+		}
+		return index;
+	}
 
 	@Override
 	public <T> T accept(ContentVisitor<T> v) {
@@ -157,7 +230,12 @@ public class LayoutFile extends AbstractFile{
 
 	@Override
 	public Image getImage() throws TskCoreException{
-		return getParent().getImage();
+		Image parentImage = image;
+		if (parentImage == null) {
+			parentImage = getParent().getImage();
+			image = parentImage;
+		}
+		return parentImage;
 	}
 
 	
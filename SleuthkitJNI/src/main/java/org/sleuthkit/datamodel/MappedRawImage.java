@@ -0,0 +1,256 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A raw image - one dd file, or the segments of a split one in order -
+ * memory mapped, so that reads of it are copies from the page cache with no
+ * call into the native library. The bytes of a raw image are the bytes of
+ * its files, so they can be read without libtsk.
+ *
+ * The files are mapped read only in chunks of at most CHUNK_SIZE, as a
+ * mapping cannot be larger than 2 GB. A mapping keeps its file open, and on
+ * Windows locked, until it is released, so close() unmaps the files rather
+ * than leave them to the garbage collector. Reads are safe from any number
+ * of threads; close() waits for those under way.
+ */
+class MappedRawImage {
+
+	static final long CHUNK_SIZE = 1L << 30;
+	private static final Logger logger = Logger.getLogger(MappedRawImage.class.getName());
+	//file offset in the image of each chunk, ascending
+	private final long[] chunkStarts;
+	private final ByteBuffer[] chunks;
+	private final long size;
+	//reads hold the read lock, so that close() does not unmap under them
+	private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+	private boolean closed = false;
+
+	/**
+	 * Map the files of a raw image
+	 *
+	 * @param paths the image file, or the segments of a split image in order
+	 * @throws IOException if a file could not be opened or mapped
+	 */
+	MappedRawImage(String[] paths) throws IOException {
+		List<Long> starts = new ArrayList<Long>();
+		List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+		long total = 0;
+		for (String path : paths) {
+			RandomAccessFile file = new RandomAccessFile(new File(path), "r");
+			try {
+				FileChannel channel = file.getChannel();
+				long fileSize = channel.size();
+				for (long position = 0; position < fileSize; position += CHUNK_SIZE) {
+					MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE, fileSize - position));
+					starts.add(total + position);
+					buffers.add(chunk);
+				}
+				total += fileSize;
+			} finally {
+				//the mappings stay valid
+				file.close();
+			}
+		}
+		chunkStarts = new long[starts.size()];
+		for (int i = 0; i < chunkStarts.length; i++) {
+			chunkStarts[i] = starts.get(i);
+		}
+		chunks = buffers.toArray(new ByteBuffer[buffers.size()]);
+		size = total;
+	}
+
+	/**
+	 * Map chunks at the given image offsets, without files, to test the
+	 * chunk lookup
+	 *
+	 * @param chunkStarts image offset of each chunk, ascending, the first 0
+	 * @param chunks the chunks
+	 */
+	MappedRawImage(long[] chunkStarts, ByteBuffer[] chunks) {
+		this.chunkStarts = chunkStarts;
+		this.chunks = chunks;
+		this.size = chunkStarts.length == 0 ? 0 : chunkStarts[chunkStarts.length - 1] + chunks[chunks.length - 1].capacity();
+	}
+
+	/**
+	 * @return the size of the image, the sum of the sizes of its files
+	 */
+	long getSize() {
+		return size;
+	}
+
+	/**
+	 * Read from the image into buf at bufOffset
+	 *
+	 * @return the number of bytes read, less than len at the end of the
+	 * image, or -1 if the image has been closed
+	 * @throws TskCoreException if a file has been cut short since it was
+	 * mapped
+	 */
+	int read(byte[] buf, int bufOffset, long offset, int len) throws TskCoreException {
+		closeLock.readLock().lock();
+		try {
+			if (closed) {
+				return -1;
+			}
+			int done = 0;
+			while (done < len && offset + done < size) {
+				int i = chunkAt(offset + done);
+				//a view per read, as a get moves the buffer's position
+				ByteBuffer chunk = chunks[i].duplicate();
+				chunk.position((int) (offset + done - chunkStarts[i]));
+				int n = Math.min(len - done, chunk.remaining());
+				chunk.get(buf, bufOffset + done, n);
+				done += n;
+			}
+			return done;
+		} catch (InternalError e) {
+			throw truncated(offset, e);
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Read from the image into buf from its position up to its limit
+	 *
+	 * @return the number of bytes read, less than the buffer's remaining
+	 * bytes at the end of the image, or -1 if the image has been closed
+	 * @throws TskCoreException if a file has been cut short since it was
+	 * mapped
+	 */
+	int read(ByteBuffer buf, long offset) throws TskCoreException {
+		closeLock.readLock().lock();
+		try {
+			if (closed) {
+				return -1;
+			}
+			int len = buf.remaining();
+			int done = 0;
+			while (done < len && offset + done < size) {
+				int i = chunkAt(offset + done);
+				ByteBuffer chunk = chunks[i].duplicate();
+				chunk.position((int) (offset + done - chunkStarts[i]));
+				int n = Math.min(len - done, chunk.remaining());
+				chunk.limit(chunk.position() + n);
+				buf.put(chunk);
+				done += n;
+			}
+			return done;
+		} catch (InternalError e) {
+			throw truncated(offset, e);
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * A page of a mapped file that is no longer in the file faults (SIGBUS),
+	 * which the JVM raises as an InternalError
+	 */
+	private static TskCoreException truncated(long offset, InternalError e) {
+		TskCoreException ex = new TskCoreException("Error reading mapped image at offset " + offset + ", was an image file truncated?");
+		ex.initCause(e);
+		return ex;
+	}
+
+	/**
+	 * Unmap the files, once reads under way are done. Later reads return -1.
+	 */
+	void close() {
+		closeLock.writeLock().lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			for (ByteBuffer chunk : chunks) {
+				unmap(chunk);
+			}
+		} finally {
+			closeLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Release a mapping now, through the JDK's internal cleaner: Unsafe's
+	 * invokeCleaner from Java 9, the buffer's cleaner before. If neither can
+	 * be reached the mapping is left to the garbage collector.
+	 */
+	private static void unmap(ByteBuffer buffer) {
+		if (!buffer.isDirect()) {
+			return;
+		}
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner;
+			try {
+				invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			} catch (NoSuchMethodException e) {
+				invokeCleaner = null;
+			}
+			if (invokeCleaner != null) {
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			} else {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		} catch (Exception e) {
+			logger.log(Level.FINE, "Could not unmap image file, leaving it to the garbage collector", e);
+		}
+	}
+
+	/**
+	 * @return index of the chunk holding the image offset
+	 */
+	int chunkAt(long offset) {
+		int low = 0;
+		int high = chunkStarts.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (chunkStarts[mid] <= offset) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+}
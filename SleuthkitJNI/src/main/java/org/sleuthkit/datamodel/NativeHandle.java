@@ -0,0 +1,188 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A native Sleuth Kit handle of an image, volume system, volume, file system
+ * or file, shared by the content objects with its object id. It is reference
+ * counted: a reader acquires it from the HandleManager, reads through
+ * getPointer() and releases it. The native handle is opened on the first
+ * getPointer() and closed by the manager once no reader holds it.
+ *
+ * While open, a handle holds a reference on the handle it was opened from -
+ * a file on its file system, a file system on its image - so that a parent is
+ * never closed under its children.
+ *
+ * Once closed a handle is dead and cannot be acquired again; the manager
+ * makes a new one for the next reader, which reopens the native handle.
+ */
+abstract class NativeHandle {
+
+	//refs once closed
+	private static final int DEAD = -1;
+	final long id;
+	final HandleManager.Kind kind;
+	private final HandleManager manager;
+	private final AtomicInteger refs = new AtomicInteger();
+	private volatile long pointer = 0;
+	//the handle this one was opened from, held while open
+	private volatile NativeHandle parent;
+	//when last released, for least recently used eviction
+	volatile long lastUsed = System.nanoTime();
+
+	NativeHandle(HandleManager manager, long id, HandleManager.Kind kind) {
+		this.manager = manager;
+		this.id = id;
+		this.kind = kind;
+	}
+
+	/**
+	 * @return the acquired handle of the parent to open this one from, or
+	 * null for an image
+	 */
+	protected abstract NativeHandle acquireParent() throws TskCoreException;
+
+	/**
+	 * @param parentPointer the native handle of the parent, 0 for an image
+	 * @return the opened native handle
+	 */
+	protected abstract long open(long parentPointer) throws TskCoreException;
+
+	/**
+	 * Free the native handle
+	 */
+	protected abstract void close(long pointer);
+
+	/**
+	 * Take a reference, unless the handle is dead
+	 *
+	 * @return false if the handle has been closed
+	 */
+	boolean tryAcquire() {
+		while (true) {
+			int r = refs.get();
+			if (r == DEAD) {
+				return false;
+			}
+			if (refs.compareAndSet(r, r + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Give back a reference taken by HandleManager.acquire()
+	 */
+	void release() {
+		lastUsed = System.nanoTime();
+		refs.decrementAndGet();
+	}
+
+	/**
+	 * Get the native handle, opening it the first time. The caller must hold
+	 * a reference.
+	 *
+	 * @return the native handle
+	 * @throws TskCoreException if it could not be opened
+	 */
+	long getPointer() throws TskCoreException {
+		long p = pointer;
+		if (p == 0) {
+			boolean opened = false;
+			synchronized (this) {
+				if (pointer == 0) {
+					NativeHandle up = acquireParent();
+					long handle = 0;
+					try {
+						handle = open(up != null ? up.getPointer() : 0);
+					} finally {
+						if (handle == 0 && up != null) {
+							up.release();
+						}
+					}
+					if (handle == 0) {
+						throw new TskCoreException("Could not open the native handle of object " + id);
+					}
+					parent = up;
+					pointer = handle;
+					opened = true;
+				}
+				p = pointer;
+			}
+			if (opened) {
+				//may close other idle handles to stay within the budget
+				manager.opened(this);
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * Kill the handle if no reader holds it, closing its native handle if
+	 * open and releasing its parent
+	 *
+	 * @return true if a native handle was closed
+	 */
+	boolean closeIfIdle() {
+		if (!refs.compareAndSet(0, DEAD)) {
+			return false;
+		}
+		long p = pointer;
+		if (p == 0) {
+			return false;
+		}
+		pointer = 0;
+		close(p);
+		NativeHandle up = parent;
+		parent = null;
+		if (up != null) {
+			up.release();
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the handle has been closed and cannot be acquired
+	 */
+	boolean isDead() {
+		return refs.get() == DEAD;
+	}
+
+	/**
+	 * @return true if the native handle is open
+	 */
+	boolean isOpen() {
+		return pointer != 0;
+	}
+
+	/**
+	 * @return true if this is the handle, or it was opened from it directly
+	 * or through other handles
+	 */
+	boolean isOpenedFrom(NativeHandle handle) {
+		for (NativeHandle h = this; h != null; h = h.parent) {
+			if (h == handle) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-only connections to a case database, so that threads holding the case
+ * read lock can query at the same time rather than queueing on the single
+ * connection writes go through. Connections are opened as they are first
+ * needed, up to a fixed number; after that a reader waits for one to be given
+ * back.
+ */
+class ReadConnectionPool {
+
+	//SQLITE_OPEN_READONLY
+	private static final String READ_ONLY_OPEN_MODE = "1";
+	private final String dbPath;
+	private final int maxConnections;
+	private final CaseDbProfile profile;
+	private final SlowQueryLog slowQueries;
+	private final BlockingQueue<CaseDbConnection> idle = new LinkedBlockingQueue<CaseDbConnection>();
+	private int opened = 0;
+	private boolean closed = false;
+
+	/**
+	 * @param dbPath path to the case database
+	 * @param maxConnections the most connections to open
+	 * @param profile settings to apply to each connection opened
+	 * @param slowQueries where the connections record slow statements, or null
+	 * to not time them
+	 */
+	ReadConnectionPool(String dbPath, int maxConnections, CaseDbProfile profile, SlowQueryLog slowQueries) {
+		this.dbPath = dbPath;
+		this.maxConnections = maxConnections;
+		this.profile = profile;
+		this.slowQueries = slowQueries;
+	}
+
+	/**
+	 * Take a connection for the calling thread, opening one if none are free
+	 * and there are fewer than the maximum. Give it back with giveBack().
+	 *
+	 * @return a connection for the calling thread to use
+	 * @throws SQLException if a connection could not be opened, the pool is
+	 * closed or the thread is interrupted while waiting
+	 */
+	CaseDbConnection borrow() throws SQLException {
+		CaseDbConnection connection = idle.poll();
+		if (connection != null) {
+			return connection;
+		}
+		synchronized (this) {
+			if (closed) {
+				throw new SQLException("The case database is closed");
+			}
+			if (opened < maxConnections) {
+				Properties props = new Properties();
+				props.setProperty("open_mode", READ_ONLY_OPEN_MODE);
+				Connection con = DriverManager.getConnection("jdbc:sqlite:" + dbPath, props);
+				profile.configureConnection(con);
+				connection = new CaseDbConnection(con, true, slowQueries);
+				opened++;
+				return connection;
+			}
+		}
+		try {
+			while (true) {
+				connection = idle.poll(1, TimeUnit.SECONDS);
+				if (connection != null) {
+					return connection;
+				}
+				synchronized (this) {
+					if (closed) {
+						throw new SQLException("The case database is closed");
+					}
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for a database connection");
+		}
+	}
+
+	/**
+	 * Return a connection taken with borrow().
+	 */
+	void giveBack(CaseDbConnection connection) {
+		connection.release();
+		synchronized (this) {
+			if (!closed) {
+				idle.offer(connection);
+				return;
+			}
+		}
+		connection.close();
+	}
+
+	/**
+	 * Close all the connections. A connection still borrowed (in WAL mode
+	 * readers do not wait for the write lock close() holds) is closed when it
+	 * is given back.
+	 */
+	synchronized void close() {
+		closed = true;
+		CaseDbConnection connection;
+		while ((connection = idle.poll()) != null) {
+			connection.close();
+		}
+	}
+}
@@ -25,24 +25,72 @@ import java.util.logging.Logger;
 
 /**
  * InputStream to read bytes from a Content object's data
+ *
+ * By default every read is a read of the content, a call into the native
+ * library. With a read-ahead buffer (see the constructors taking a buffer
+ * size or a buffer), the content is read in large chunks that start at
+ * multiples of ALIGNMENT, and small reads and single bytes are served from
+ * the buffer. Reads of at least a buffer's worth into the start of the
+ * caller's array go straight to the content, so they are not copied twice.
  */
 public class ReadContentInputStream extends InputStream {
 
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+	public static final int MAX_BUFFER_SIZE = 8 * 1024 * 1024;
+	//file system blocks and image sectors divide this
+	public static final int ALIGNMENT = 4096;
 	private long position;
 	private long length;
 	private Content content;
+	//the read-ahead buffer, null if unbuffered, and the content bytes it holds
+	private final byte[] buffer;
+	private long bufferStart = 0;
+	private int bufferLength = 0;
+	//for unbuffered reads of one byte or into an offset in the caller's array
+	private byte[] scratch;
 	private static final Logger logger = Logger.getLogger(ReadContentInputStream.class.getName());
 
 	public ReadContentInputStream(Content content) {
+		this(content, null);
+	}
+
+	/**
+	 * @param content the content to read
+	 * @param bufferSize size of the read-ahead buffer, from ALIGNMENT to
+	 * MAX_BUFFER_SIZE, e.g. DEFAULT_BUFFER_SIZE
+	 */
+	public ReadContentInputStream(Content content, int bufferSize) {
+		this(content, new byte[Math.min(Math.max(bufferSize, ALIGNMENT), MAX_BUFFER_SIZE)]);
+	}
+
+	/**
+	 * Read content through a buffer of the caller's, so that a thread reading
+	 * many files in turn can use one buffer for all of them. The buffer must
+	 * not be used by another stream at the same time.
+	 *
+	 * @param content the content to read
+	 * @param buffer the read-ahead buffer, at least ALIGNMENT bytes, or null
+	 * to read unbuffered
+	 */
+	public ReadContentInputStream(Content content, byte[] buffer) {
+		if (buffer != null && buffer.length < ALIGNMENT) {
+			throw new IllegalArgumentException("Read-ahead buffer smaller than " + ALIGNMENT + " bytes");
+		}
 		this.content = content;
 		this.position = 0;
 		this.length = content.getSize();
+		this.buffer = buffer;
 	}
 
 	@Override
 	public int read() throws IOException {
-		byte[] buff = new byte[1];
-		return (read(buff) != -1) ? buff[0] : -1;
+		if (buffer != null && position >= bufferStart && position < bufferStart + bufferLength) {
+			return buffer[(int) (position++ - bufferStart)] & 0xFF;
+		}
+		if (scratch == null) {
+			scratch = new byte[1];
+		}
+		return (read(scratch, 0, 1) != -1) ? scratch[0] & 0xFF : -1;
 	}
 
 	@Override
@@ -78,34 +126,72 @@ public class ReadContentInputStream extends InputStream {
 		int lenToRead = (int) Math.min(length - position, buffLen - off);
 		lenToRead = Math.min(lenToRead, len);
 
+		if (buffer != null && (off != 0 || lenToRead < buffer.length)) {
+			return readBuffered(b, off, lenToRead);
+		}
+
 		byte[] retBuf = null;
 		if (off == 0) {
 			//write directly to user buffer
 			retBuf = b;
 		} else {
 			//write to a temp buffer, then copy to user buffer
-			retBuf = new byte[lenToRead];
+			if (scratch == null || scratch.length < lenToRead) {
+				scratch = new byte[lenToRead];
+			}
+			retBuf = scratch;
 		}
-		try {
-			final int lenRead = content.read(retBuf, position, lenToRead);
+		final int lenRead = readContent(retBuf, position, lenToRead);
+		if (lenRead == 0 || lenRead == -1) {
+			//error or no more bytes to read, report EOF
+			return -1;
+		} else {
+			position += lenRead;
 
-			if (lenRead == 0 || lenRead == -1) {
-				//error or no more bytes to read, report EOF
-				return -1;
-			} else {
-				position += lenRead;
+			//if read into user-specified offset, copy back from temp buffer to user
+			if (off != 0) {
+				System.arraycopy(retBuf, 0, b, off, lenRead);
+			}
 
-				//if read into user-specified offset, copy back from temp buffer to user
-				if (off != 0) {
-					System.arraycopy(retBuf, 0, b, off, lenRead);
-				}
+			return lenRead;
+		}
+	}
 
-				return lenRead;
+	/**
+	 * Copy from the read-ahead buffer, filling it first if it does not hold
+	 * the current position
+	 */
+	private int readBuffered(byte[] b, int off, int lenToRead) throws IOException {
+		if (position < bufferStart || position >= bufferStart + bufferLength) {
+			//start the chunk at the aligned offset before the position
+			long start = position - (position % ALIGNMENT);
+			int lenRead = readContent(buffer, start, (int) Math.min(buffer.length, length - start));
+			if (lenRead > 0 && lenRead <= position - start) {
+				//a short read that stopped before the position, read from it
+				start = position;
+				lenRead = readContent(buffer, start, (int) Math.min(buffer.length, length - start));
+			}
+			if (lenRead <= position - start) {
+				bufferLength = 0;
+				//error or no more bytes to read, report EOF
+				return -1;
 			}
+			bufferStart = start;
+			bufferLength = lenRead;
+		}
+		int n = (int) Math.min(lenToRead, bufferStart + bufferLength - position);
+		System.arraycopy(buffer, (int) (position - bufferStart), b, off, n);
+		position += n;
+		return n;
+	}
+
+	private int readContent(byte[] buf, long offset, int len) throws IOException {
+		try {
+			return content.read(buf, offset, len);
 		} catch (TskCoreException ex) {
 			logger.log(Level.WARNING, ("Error reading content into stream: "
 					+ content.getId()) + ": " + content.getName()
-					+ ", at offset " + position + ", length to read: " + lenToRead, ex);
+					+ ", at offset " + offset + ", length to read: " + len, ex);
 			throw new IOException(ex);
 		}
 
@@ -116,7 +202,7 @@ public class ReadContentInputStream extends InputStream {
 		if (position > length) {
 			return 0;
 		}
-        return (int)(length - position);
+        return (int) Math.min(length - position, Integer.MAX_VALUE);
     }
 
 	@Override
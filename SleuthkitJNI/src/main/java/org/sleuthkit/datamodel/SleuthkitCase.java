@@ -32,6 +32,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
@@ -69,24 +73,101 @@ public class SleuthkitCase {
 	
 	// for use by getCarvedDirectoryId method only
 	private final Map<Long, Long> systemIdMap = new HashMap<Long, Long>();
-
-	//database lock
-	private static final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock(true); //use fairness policy
-	private static final Lock caseDbLock = rwLock.writeLock(); //using exclusing lock for all db ops for now
-	//private static final Lock caseDbWriteLock = rwLock.writeLock();
-	//private static final Lock caseDbReadLock = rwLock.readLock();
+	//null unless the profile asks for slow queries to be logged
+	private final SlowQueryLog slowQueries;
+	private final ContentCache contentCache = new ContentCache(ContentCache.DEFAULT_MAX_CONTAINERS, ContentCache.DEFAULT_MAX_FILES);
+	private final ImageBlockCache imageBlockCache = new ImageBlockCache(ImageBlockCache.DEFAULT_MAX_BYTES);
+	private volatile boolean rawImageMapping = true;
+	//images whose files are mapped, unmapped when the case closes
+	private final Set<Image> mappedImages = Collections.newSetFromMap(new IdentityHashMap<Image, Boolean>());
+	private final HandleManager handleManager = new HandleManager(HandleManager.DEFAULT_MAX_BYTES);
+	// unique paths of the objects other unique paths are built on, by object id
+	private final ConcurrentMap<Long, String> uniquePathPrefixes = new ConcurrentHashMap<Long, String>();
+
+	//database lock, one per case so cases open in the same JVM do not block each other
+	private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock(true); //use fairness policy
+	private final Lock caseDbWriteLock = rwLock.writeLock();
+	private final Lock caseDbReadLock = rwLock.readLock();
+	//serializes opening and creating case databases
+	private static final Object caseOpenLock = new Object();
+	//open cases in the order they were opened, for the deprecated static write lock
+	private static final AtomicLong caseCounter = new AtomicLong();
+	private final long caseNumber = caseCounter.incrementAndGet();
+	private static final Set<SleuthkitCase> openCases = new ConcurrentSkipListSet<SleuthkitCase>(new Comparator<SleuthkitCase>() {
+		@Override
+		public int compare(SleuthkitCase a, SleuthkitCase b) {
+			return a.caseNumber < b.caseNumber ? -1 : (a.caseNumber == b.caseNumber ? 0 : 1);
+		}
+	});
+	//cases locked by each dbWriteLock() the thread holds, innermost last
+	private static final ThreadLocal<LinkedList<List<SleuthkitCase>>> staticWriteLocks = new ThreadLocal<LinkedList<List<SleuthkitCase>>>() {
+		@Override
+		protected LinkedList<List<SleuthkitCase>> initialValue() {
+			return new LinkedList<List<SleuthkitCase>>();
+		}
+	};
+	//read-only connections used by readers, and the one each reading thread holds
+	private ReadConnectionPool readConnections;
+	private CaseDbConnection writeConnection;
+	private volatile boolean fileNameIndex;
+	//SQLite settings, whether the database is in WAL mode, and whether readers
+	//skip the read lock: only if it is and the profile asked for WAL, as the
+	//journal mode stays WAL for later opens whatever their profile
+	private final CaseDbProfile profile;
+	private boolean walMode = false;
+	private boolean lockFreeReads = false;
+	//held shared by every reader and exclusively by close(), so that the
+	//connections are not closed under a query, WAL mode or not
+	private final ReentrantReadWriteLock openCloseLock = new ReentrantReadWriteLock();
+	private WalCheckpointer checkpointer;
+	private final ThreadLocal<ReadContext> readContext = new ThreadLocal<ReadContext>() {
+		@Override
+		protected ReadContext initialValue() {
+			return new ReadContext();
+		}
+	};
+	//queries run on the connection of the thread reading, see getReadConnection()
+	private static final String GET_BLACKBOARD_ATTRIBUTES = "SELECT artifact_id, source, context, attribute_type_id, value_type, value_byte, value_text, value_int32, value_int64, value_double FROM blackboard_attributes WHERE artifact_id = ?";
+	private static final String GET_BLACKBOARD_ARTIFACT = "SELECT obj_id, artifact_type_id FROM blackboard_artifacts WHERE artifact_id = ?";
+	private static final String GET_BLACKBOARD_ARTIFACTS = "SELECT artifact_id, obj_id FROM blackboard_artifacts WHERE artifact_type_id = ?";
+	private static final String GET_BLACKBOARD_ARTIFACTS_TYPE_COUNT = "SELECT COUNT(*) FROM blackboard_artifacts WHERE artifact_type_id = ?";
+	private static final String GET_BLACKBOARD_ARTIFACTS_CONTENT_COUNT = "SELECT COUNT(*) FROM blackboard_artifacts WHERE obj_id = ?";
+	private static final String GET_ARTIFACTS_HELPER1 = "SELECT artifact_id FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ?";
+	private static final String GET_ARTIFACTS_HELPER2 = "SELECT artifact_id, obj_id FROM blackboard_artifacts WHERE artifact_type_id = ?";
+	private static final String GET_ARTIFACTS_COUNT_HELPER = "SELECT COUNT(*) FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ?";
+	private static final String GET_ABSTRACT_FILE_CHILDREN = "SELECT tsk_files.* FROM tsk_objects JOIN tsk_files ON tsk_objects.obj_id=tsk_files.obj_id WHERE (tsk_objects.par_obj_id = ? AND tsk_files.type = ? )";
+	private static final String GET_ABSTRACT_FILE_CHILDREN_IDS = "SELECT tsk_files.obj_id FROM tsk_objects JOIN tsk_files ON tsk_objects.obj_id=tsk_files.obj_id WHERE (tsk_objects.par_obj_id = ? AND tsk_files.type = ? )";
+	private static final String GET_ABSTRACT_FILE_BY_ID = "SELECT * FROM tsk_files WHERE obj_id = ? LIMIT 1";
+	//LIKE is case insensitive, and on name rather than LOWER(name) it can use the NOCASE name index
+	private static final String GET_FILE = "SELECT * FROM tsk_files WHERE name LIKE ? AND name NOT LIKE '%journal%' AND fs_obj_id = ?";
+	private static final String GET_FILE_WITH_PARENT = "SELECT * FROM tsk_files WHERE name LIKE ? AND name NOT LIKE '%journal%' AND parent_path LIKE ? AND fs_obj_id = ?";
+	private static final String HAS_CHILDREN = "SELECT COUNT(obj_id) FROM tsk_objects WHERE par_obj_id = ?";
+	private static final String GET_FS_ID_FOR_FILE_ID = "SELECT fs_obj_id from tsk_files WHERE obj_id=?";
+	private static final String GET_PATH = "SELECT path FROM tsk_files_path WHERE obj_id = ?";
+	private static final String GET_FILE_PARENT_PATH = "SELECT parent_path FROM tsk_files WHERE obj_id = ?";
+	private static final String GET_FILE_NAME = "SELECT name FROM tsk_files WHERE obj_id = ?";
+	private static final String GET_DERIVED_INFO = "SELECT derived_id, rederive FROM tsk_files_derived WHERE obj_id = ?";
+	private static final String GET_DERIVED_METHOD = "SELECT tool_name, tool_version, other FROM tsk_files_derived_method WHERE derived_id = ?";
+	private static final String GET_LAST_CONTENT_ID = "SELECT MAX(obj_id) from tsk_objects";
+	private static final String GET_ARTIFACTS_BY_ATTRIBUTE_TEXT = "SELECT DISTINCT blackboard_artifacts.artifact_id, blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id FROM blackboard_artifacts, blackboard_attributes WHERE blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id AND blackboard_attributes.attribute_type_id IS ? AND blackboard_attributes.value_text IS ?";
+	private static final String GET_ARTIFACTS_BY_ATTRIBUTE_TEXT_LIKE = "SELECT DISTINCT blackboard_artifacts.artifact_id, blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id FROM blackboard_artifacts, blackboard_attributes WHERE blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id AND blackboard_attributes.attribute_type_id IS ? AND blackboard_attributes.value_text LIKE ?";
+	private static final String GET_ARTIFACTS_BY_ATTRIBUTE_INT32 = "SELECT DISTINCT blackboard_artifacts.artifact_id, blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id FROM blackboard_artifacts, blackboard_attributes WHERE blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id AND blackboard_attributes.attribute_type_id IS ? AND blackboard_attributes.value_int32 IS ?";
+	private static final String GET_ARTIFACTS_BY_ATTRIBUTE_INT64 = "SELECT DISTINCT blackboard_artifacts.artifact_id, blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id FROM blackboard_artifacts, blackboard_attributes WHERE blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id AND blackboard_attributes.attribute_type_id IS ? AND blackboard_attributes.value_int64 IS ?";
+	private static final String GET_ARTIFACTS_BY_ATTRIBUTE_DOUBLE = "SELECT DISTINCT blackboard_artifacts.artifact_id, blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id FROM blackboard_artifacts, blackboard_attributes WHERE blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id AND blackboard_attributes.attribute_type_id IS ? AND blackboard_attributes.value_double IS ?";
+	private static final String GET_ARTIFACTS_BY_ATTRIBUTE_BYTE = "SELECT DISTINCT blackboard_artifacts.artifact_id, blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id FROM blackboard_artifacts, blackboard_attributes WHERE blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id AND blackboard_attributes.attribute_type_id IS ? AND blackboard_attributes.value_byte IS ?";
+	private static final String GET_OBJECT = "SELECT * FROM tsk_objects WHERE obj_id = ? LIMIT 1";
+	private static final String GET_CHILDREN_INFO = "SELECT tsk_objects.obj_id, tsk_objects.type FROM tsk_objects left join tsk_files ON tsk_objects.obj_id=tsk_files.obj_id WHERE tsk_objects.par_obj_id = ?";
+	private static final String GET_PARENT_INFO = "SELECT parent.obj_id, parent.type FROM tsk_objects AS parent JOIN tsk_objects AS child ON child.par_obj_id = parent.obj_id WHERE child.obj_id = ?";
+	private static final String GET_IMAGE_INFO = "SELECT * FROM tsk_image_info WHERE obj_id = ?";
+	private static final String GET_IMAGE_NAMES = "SELECT * FROM tsk_image_names WHERE obj_id = ?";
+	private static final String GET_VS_INFO = "SELECT * FROM tsk_vs_info WHERE obj_id = ?";
+	private static final String GET_FS_INFO = "SELECT * FROM tsk_fs_info WHERE obj_id = ?";
+	private static final String GET_VOLUME = "SELECT * FROM tsk_vs_parts WHERE obj_id = ?";
+	private static final String GET_ALL_FS_INFO = "SELECT * FROM tsk_fs_info";
+	private static final String GET_FILES_BY_MD5 = "SELECT * FROM tsk_files WHERE md5 = ? AND size > 0";
+	private static final String COUNT_FILES_NOT_MD5_HASHED = "SELECT COUNT(*) FROM tsk_files WHERE dir_type = ? AND md5 IS NULL AND size > 0";
+	private static final String COUNT_FILES_MD5_HASHED = "SELECT COUNT(*) FROM tsk_files WHERE md5 IS NOT NULL AND size > 0";
 	//prepared statements
-	private PreparedStatement getBlackboardAttributesSt;
-	private PreparedStatement getBlackboardArtifactSt;
-	private PreparedStatement getBlackboardArtifactsSt;
-	private PreparedStatement getBlackboardArtifactsTypeCountSt;
-	private PreparedStatement getBlackboardArtifactsContentCountSt;
-	private PreparedStatement getArtifactsHelper1St;
-	private PreparedStatement getArtifactsHelper2St;
-	private PreparedStatement getArtifactsCountHelperSt;
-	private PreparedStatement getAbstractFileChildren;
-	private PreparedStatement getAbstractFileChildrenIds;
-	private PreparedStatement getAbstractFileById;
 	private PreparedStatement addArtifactSt1;
 	private PreparedStatement addArtifactSt2;
 	private PreparedStatement getLastArtifactId;
@@ -95,21 +176,11 @@ public class SleuthkitCase {
 	private PreparedStatement addBlackboardAttributeIntegerSt;
 	private PreparedStatement addBlackboardAttributeLongSt;
 	private PreparedStatement addBlackboardAttributeDoubleSt;
-	private PreparedStatement getFileSt;
-	private PreparedStatement getFileWithParentSt;
 	private PreparedStatement updateMd5St;
-	private PreparedStatement getPathSt;
-	private PreparedStatement getFileParentPathSt;
-	private PreparedStatement getFileNameSt;
-	private PreparedStatement getDerivedInfoSt;
-	private PreparedStatement getDerivedMethodSt;
 	private PreparedStatement addObjectSt;
 	private PreparedStatement addFileSt;
 	private PreparedStatement addLayoutFileSt;
 	private PreparedStatement addPathSt;
-	private PreparedStatement hasChildrenSt;
-	private PreparedStatement getLastContentIdSt;
-	private PreparedStatement getFsIdForFileIdSt;
 	private static final Logger logger = Logger.getLogger(SleuthkitCase.class.getName());
 
 	private ArrayList<ErrorObserver> errorObservers = new ArrayList<ErrorObserver>();
@@ -119,22 +190,27 @@ public class SleuthkitCase {
 	 *
 	 * @param dbPath path to the database file
 	 * @param caseHandle handle to the case database API
+	 * @param profile SQLite settings to open the database with
 	 * @throws java.sql.SQLException thrown if SQL error occurred
 	 * @throws ClassNotFoundException thrown if database driver could not be
 	 * loaded
 	 * @throws TskCoreException thrown if critical error occurred within TSK
 	 * case
 	 */
-	private SleuthkitCase(String dbPath, SleuthkitJNI.CaseDbHandle caseHandle) throws SQLException, ClassNotFoundException, TskCoreException {
+	private SleuthkitCase(String dbPath, SleuthkitJNI.CaseDbHandle caseHandle, CaseDbProfile profile) throws SQLException, ClassNotFoundException, TskCoreException {
 		Class.forName("org.sqlite.JDBC");
 		this.dbPath = dbPath;
 		this.dbDirPath = new java.io.File(dbPath).getParentFile().getAbsolutePath();
 		this.caseHandle = caseHandle;
+		this.profile = profile;
+		this.slowQueries = profile.isLogSlowQueries() ? new SlowQueryLog() : null;
 		con = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+		writeConnection = new CaseDbConnection(con, false, slowQueries);
+		readConnections = new ReadConnectionPool(dbPath, Runtime.getRuntime().availableProcessors(), profile, slowQueries);
 		configureDB();
 		initBlackboardTypes();
 		initStatements();
-		
+		openCases.add(this);
 	}
 
 	/**
@@ -147,59 +223,14 @@ public class SleuthkitCase {
 	}
 
 	private void initStatements() throws SQLException {
-		getBlackboardAttributesSt = con.prepareStatement(
-				"SELECT artifact_id, source, context, attribute_type_id, value_type, "
-				+ "value_byte, value_text, value_int32, value_int64, value_double "
-				+ "FROM blackboard_attributes WHERE artifact_id = ?");
-
-		getBlackboardArtifactSt = con.prepareStatement(
-				"SELECT obj_id, artifact_type_id FROM blackboard_artifacts WHERE artifact_id = ?");
-
-		getBlackboardArtifactsSt = con.prepareStatement(
-				"SELECT artifact_id, obj_id FROM blackboard_artifacts "
-				+ "WHERE artifact_type_id = ?");
-
-		getBlackboardArtifactsTypeCountSt = con.prepareStatement(
-				"SELECT COUNT(*) FROM blackboard_artifacts WHERE artifact_type_id = ?");
-
-		getBlackboardArtifactsContentCountSt = con.prepareStatement(
-				"SELECT COUNT(*) FROM blackboard_artifacts WHERE obj_id = ?");
-
-		getArtifactsHelper1St = con.prepareStatement(
-				"SELECT artifact_id FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ?");
-
-		getArtifactsHelper2St = con.prepareStatement(
-				"SELECT artifact_id, obj_id FROM blackboard_artifacts WHERE artifact_type_id = ?");
-
-		getArtifactsCountHelperSt = con.prepareStatement(
-				"SELECT COUNT(*) FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ?");
-
-		getAbstractFileChildren = con.prepareStatement(
-				"SELECT tsk_files.* "
-				+ "FROM tsk_objects JOIN tsk_files "
-				+ "ON tsk_objects.obj_id=tsk_files.obj_id "
-				+ "WHERE (tsk_objects.par_obj_id = ? "
-				+ "AND tsk_files.type = ? )");
-
-		getAbstractFileChildrenIds = con.prepareStatement(
-				"SELECT tsk_files.obj_id "
-				+ "FROM tsk_objects JOIN tsk_files "
-				+ "ON tsk_objects.obj_id=tsk_files.obj_id "
-				+ "WHERE (tsk_objects.par_obj_id = ? "
-				+ "AND tsk_files.type = ? )");
-
-		getAbstractFileById = con.prepareStatement("SELECT * FROM tsk_files WHERE obj_id = ? LIMIT 1");
-
 		addArtifactSt1 = con.prepareStatement(
 				"INSERT INTO blackboard_artifacts (artifact_id, obj_id, artifact_type_id) "
 				+ "VALUES (NULL, ?, ?)");
 
-
 		getLastArtifactId = con.prepareStatement(
 				"SELECT MAX(artifact_id) from blackboard_artifacts "
 				+ "WHERE obj_id = ? AND + artifact_type_id = ?");
 
-
 		addBlackboardAttributeStringSt = con.prepareStatement(
 				"INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, value_text) "
 				+ "VALUES (?,?,?,?,?,?)");
@@ -220,32 +251,15 @@ public class SleuthkitCase {
 				"INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, value_double) "
 				+ "VALUES (?,?,?,?,?,?)");
 
-		getFileSt = con.prepareStatement("SELECT * FROM tsk_files WHERE LOWER(name) LIKE ? and LOWER(name) NOT LIKE '%journal%' AND fs_obj_id = ?");
-
-		getFileWithParentSt = con.prepareStatement("SELECT * FROM tsk_files WHERE LOWER(name) LIKE ? AND LOWER(name) NOT LIKE '%journal%' AND LOWER(parent_path) LIKE ? AND fs_obj_id = ?");
-
 		updateMd5St = con.prepareStatement("UPDATE tsk_files SET md5 = ? WHERE obj_id = ?");
 
-		getPathSt = con.prepareStatement("SELECT path FROM tsk_files_path WHERE obj_id = ?");
-		
-		getFileParentPathSt = con.prepareStatement("SELECT parent_path FROM tsk_files WHERE obj_id = ?");
-		
-		getFileNameSt = con.prepareStatement("SELECT name FROM tsk_files WHERE obj_id = ?");
-
-		getDerivedInfoSt = con.prepareStatement("SELECT derived_id, rederive FROM tsk_files_derived WHERE obj_id = ?");
-
-		getDerivedMethodSt = con.prepareStatement("SELECT tool_name, tool_version, other FROM tsk_files_derived_method WHERE derived_id = ?");
-
-		getLastContentIdSt = con.prepareStatement(
-				"SELECT MAX(obj_id) from tsk_objects");
-
 		addObjectSt = con.prepareStatement(
 				"INSERT INTO tsk_objects (obj_id, par_obj_id, type) VALUES (?, ?, ?)");
 
 		addFileSt = con.prepareStatement(
 				"INSERT INTO tsk_files (obj_id, fs_obj_id, name, type, has_path, dir_type, meta_type, dir_flags, meta_flags, size, ctime, crtime, atime, mtime, parent_path) "
 				+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
-		
+
 		addLayoutFileSt = con.prepareStatement(
 				"INSERT INTO tsk_file_layout (obj_id, byte_start, byte_len, sequence) "
 				+ "VALUES (?, ?, ?, ?)");
@@ -253,61 +267,10 @@ public class SleuthkitCase {
 		addPathSt = con.prepareStatement(
 				"INSERT INTO tsk_files_path (obj_id, path) VALUES (?, ?)");
 
-		hasChildrenSt = con.prepareStatement(
-				"SELECT COUNT(obj_id) FROM tsk_objects WHERE par_obj_id = ?");
-		
-		getFsIdForFileIdSt = con.prepareStatement(
-				"SELECT fs_obj_id from tsk_files WHERE obj_id=?");
-
 	}
 
 	private void closeStatements() {
 		try {
-			if (getBlackboardAttributesSt != null) {
-				getBlackboardAttributesSt.close();
-				getBlackboardAttributesSt = null;
-			}
-			if (getBlackboardArtifactSt != null) {
-				getBlackboardArtifactSt.close();
-				getBlackboardArtifactSt = null;
-			}
-			if (getBlackboardArtifactsSt != null) {
-				getBlackboardArtifactsSt.close();
-				getBlackboardArtifactsSt = null;
-			}
-			if (getBlackboardArtifactsTypeCountSt != null) {
-				getBlackboardArtifactsTypeCountSt.close();
-				getBlackboardArtifactsTypeCountSt = null;
-			}
-			if (getBlackboardArtifactsContentCountSt != null) {
-				getBlackboardArtifactsContentCountSt.close();
-				getBlackboardArtifactsContentCountSt = null;
-			}
-			if (getArtifactsHelper1St != null) {
-				getArtifactsHelper1St.close();
-				getArtifactsHelper1St = null;
-			}
-			if (getArtifactsHelper2St != null) {
-				getArtifactsHelper2St.close();
-				getArtifactsHelper2St = null;
-			}
-			if (getArtifactsCountHelperSt != null) {
-				getArtifactsCountHelperSt.close();
-				getArtifactsCountHelperSt = null;
-			}
-
-			if (getAbstractFileChildren != null) {
-				getAbstractFileChildren.close();
-				getAbstractFileChildren = null;
-			}
-			if (getAbstractFileChildrenIds != null) {
-				getAbstractFileChildrenIds.close();
-				getAbstractFileChildrenIds = null;
-			}
-			if (getAbstractFileById != null) {
-				getAbstractFileById.close();
-				getAbstractFileById = null;
-			}
 			if (addArtifactSt1 != null) {
 				addArtifactSt1.close();
 				addArtifactSt1 = null;
@@ -346,51 +309,10 @@ public class SleuthkitCase {
 				addBlackboardAttributeDoubleSt = null;
 			}
 
-			if (getFileSt != null) {
-				getFileSt.close();
-				getFileSt = null;
-			}
-
-			if (getFileWithParentSt != null) {
-				getFileWithParentSt.close();
-				getFileWithParentSt = null;
-			}
-			
-			if (getFileNameSt != null) {
-				getFileNameSt.close();
-				getFileNameSt = null;
-			}
-
 			if (updateMd5St != null) {
 				updateMd5St.close();
 				updateMd5St = null;
 			}
-			
-			if (getLastContentIdSt != null) {
-				getLastContentIdSt.close();
-				getLastContentIdSt = null;
-			}
-
-			if (getPathSt != null) {
-				getPathSt.close();
-				getPathSt = null;
-			}
-			
-			if (getFileParentPathSt != null) {
-				getFileParentPathSt.close();
-				getFileParentPathSt = null;
-			}
-
-			if (getDerivedInfoSt != null) {
-				getDerivedInfoSt.close();
-				getDerivedInfoSt = null;
-			}
-
-			if (getDerivedMethodSt != null) {
-				getDerivedMethodSt.close();
-				getDerivedMethodSt = null;
-			}
-
 
 			if (addObjectSt != null) {
 				addObjectSt.close();
@@ -401,7 +323,7 @@ public class SleuthkitCase {
 				addFileSt.close();
 				addFileSt = null;
 			}
-			
+
 			if (addLayoutFileSt != null) {
 				addLayoutFileSt.close();
 				addLayoutFileSt = null;
@@ -411,18 +333,6 @@ public class SleuthkitCase {
 				addPathSt.close();
 				addPathSt = null;
 			}
-
-			if (hasChildrenSt != null) {
-				hasChildrenSt.close();
-				hasChildrenSt = null;
-			}
-			
-			if (getFsIdForFileIdSt != null) {
-				getFsIdForFileIdSt.close();
-				getFsIdForFileIdSt = null;
-			}
-			
-
 		} catch (SQLException e) {
 			logger.log(Level.WARNING,
 					"Error closing prepared statements", e);
@@ -432,13 +342,35 @@ public class SleuthkitCase {
 	private void configureDB() throws TskCoreException {
 		try {
 			//this should match SleuthkitJNI db setup
+			//journal mode, page size and checkpointing first, they are stored in the database
+			profile.configureDatabase(con);
+			//synchronous (OFF by default: reduce i/o operations, we have no OS crash recovery anyway), cache, mmap
+			profile.configureConnection(con);
 			final Statement statement = con.createStatement();
-			//reduce i/o operations, we have no OS crash recovery anyway
-			statement.execute("PRAGMA synchronous = OFF;");
 			//allow to query while in transaction - no need read locks
 			statement.execute("PRAGMA read_uncommitted = True;");
+			//the journal mode may have been set by an earlier open, whatever this profile says
+			ResultSet rs = statement.executeQuery("PRAGMA journal_mode;");
+			walMode = rs.next() && "wal".equalsIgnoreCase(rs.getString(1));
+			lockFreeReads = walMode && profile.isWal();
+			rs.close();
 			statement.close();
 
+			if (profile.isCreateIndexes()) {
+				try {
+					CaseDbIndexes.create(con);
+				} catch (SQLException e) {
+					//a read-only case database can still be read without them
+					logger.log(Level.WARNING, "Could not create the case database indexes, opening without them", e);
+				}
+			}
+			fileNameIndex = FileNameIndex.exists(con);
+
+			if (walMode && profile.getCheckpointInterval() > 0) {
+				checkpointer = new WalCheckpointer(dbPath, profile.getCheckpointInterval());
+			}
+			logger.log(Level.INFO, "Case database opened with " + profile + (walMode ? ", in WAL mode" : ""));
+
 			logger.log(Level.INFO, String.format("sqlite-jdbc version %s loaded in %s mode",
 					SQLiteJDBCLoader.getVersion(), SQLiteJDBCLoader.isNativeMode()
 					? "native" : "pure-java"));
@@ -452,32 +384,74 @@ public class SleuthkitCase {
 	 * Lock to protect against concurrent write accesses to case database and to
 	 * block readers while database is in write transaction. Should be utilized
 	 * by all db code where underlying storage supports max. 1 concurrent writer
-	 * MUST always call dbWriteUnLock() as early as possible, in the same thread
-	 * where dbWriteLock() was called
+	 * MUST always call writeUnlock() as early as possible, in the same thread
+	 * where writeLock() was called. The lock is per case, so writes to one
+	 * case do not block readers of another.
 	 */
-	public static void dbWriteLock() {
+	public void writeLock() {
 		//Logger.getLogger("LOCK").log(Level.INFO, "Locking " + rwLock.toString());
-		caseDbLock.lock();
+		caseDbWriteLock.lock();
 	}
 
 	/**
 	 * Release previously acquired write lock acquired in this thread using
-	 * dbWriteLock(). Call in "finally" block to ensure the lock is always
+	 * writeLock(). Call in "finally" block to ensure the lock is always
 	 * released.
 	 */
-	public static void dbWriteUnlock() {
+	public void writeUnlock() {
 		//Logger.getLogger("LOCK").log(Level.INFO, "UNLocking " + rwLock.toString());
-		caseDbLock.unlock();
+		caseDbWriteLock.unlock();
+	}
+
+	/**
+	 * Take the write lock of every open case, as the single lock all cases
+	 * used to share did. Cases are locked in the order they were opened, so
+	 * this cannot deadlock with itself; cases opened while it is held are
+	 * not locked.
+	 *
+	 * @deprecated each case has its own lock now; use writeLock() on the case
+	 * being written to
+	 */
+	@Deprecated
+	public static void dbWriteLock() {
+		List<SleuthkitCase> locked = new ArrayList<SleuthkitCase>(openCases);
+		for (SleuthkitCase sleuthkitCase : locked) {
+			sleuthkitCase.writeLock();
+		}
+		staticWriteLocks.get().addLast(locked);
+	}
+
+	/**
+	 * Release the write locks taken by the last dbWriteLock() in this thread.
+	 *
+	 * @deprecated use writeUnlock() on the case locked with writeLock()
+	 */
+	@Deprecated
+	public static void dbWriteUnlock() {
+		List<SleuthkitCase> locked = staticWriteLocks.get().removeLast();
+		for (int i = locked.size() - 1; i >= 0; i--) {
+			locked.get(i).writeUnlock();
+		}
 	}
 
 	/**
 	 * Lock to protect against read while it is in a write transaction state.
 	 * Supports multiple concurrent readers if there is no writer. MUST always
 	 * call dbReadUnLock() as early as possible, in the same thread where
-	 * dbReadLock() was called.
+	 * dbReadLock() was called. Queries made while holding it should use
+	 * getReadConnection(), which gives each reading thread its own connection.
+	 * A thread holding the read lock must not try to take the write lock,
+	 * nor close the case.
+	 * In WAL mode readers see the last commit whatever a writer is doing, so
+	 * when opened with a WAL profile the lock does not wait for writers, only
+	 * for the case to finish closing.
 	 */
-	static void dbReadLock() {
-		caseDbLock.lock();
+	void dbReadLock() {
+		if (!lockFreeReads) {
+			caseDbReadLock.lock();
+		}
+		openCloseLock.readLock().lock();
+		readContext.get().depth++;
 	}
 
 	/**
@@ -485,8 +459,56 @@ public class SleuthkitCase {
 	 * dbReadLock(). Call in "finally" block to ensure the lock is always
 	 * released.
 	 */
-	static void dbReadUnlock() {
-		caseDbLock.unlock();
+	void dbReadUnlock() {
+		ReadContext context = readContext.get();
+		if (--context.depth == 0 && context.connection != null) {
+			readConnections.giveBack(context.connection);
+			context.connection = null;
+		}
+		openCloseLock.readLock().unlock();
+		if (!lockFreeReads) {
+			caseDbReadLock.unlock();
+		}
+	}
+
+	/**
+	 * Get the connection to query with while holding the read lock. Each
+	 * reading thread gets a read-only connection of its own, kept until it
+	 * releases its outermost read lock. A thread that also holds the write
+	 * lock reads through the write connection, so it sees its own
+	 * uncommitted changes.
+	 *
+	 * @return connection for the calling thread to read with
+	 * @throws SQLException thrown if a read connection could not be opened
+	 */
+	CaseDbConnection getReadConnection() throws SQLException {
+		ReadContext context = readContext.get();
+		if (context.depth == 0 || rwLock.isWriteLockedByCurrentThread()) {
+			return writeConnection;
+		}
+		if (context.connection == null) {
+			context.connection = readConnections.borrow();
+		}
+		return context.connection;
+	}
+
+	/**
+	 * Get the connection writes go through. Only use it while holding the
+	 * write lock.
+	 *
+	 * @return the write connection of the case
+	 */
+	CaseDbConnection getWriteConnection() {
+		return writeConnection;
+	}
+
+	/**
+	 * Read lock state of one thread
+	 */
+	private static class ReadContext {
+
+		int depth = 0;
+		CaseDbConnection connection;
 	}
 
 	/**
@@ -496,16 +518,26 @@ public class SleuthkitCase {
 	 * @return Case object
 	 */
 	public static SleuthkitCase openCase(String dbPath) throws TskCoreException {
-		SleuthkitCase.dbWriteLock();
-		final SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.openCaseDb(dbPath);
-		try {
-			return new SleuthkitCase(dbPath, caseHandle);
-		} catch (SQLException ex) {
-			throw new TskCoreException("Couldn't open case at " + dbPath, ex);
-		} catch (ClassNotFoundException ex) {
-			throw new TskCoreException("Couldn't open case at " + dbPath, ex);
-		} finally {
-			SleuthkitCase.dbWriteUnlock();
+		return openCase(dbPath, CaseDbProfile.defaults());
+	}
+
+	/**
+	 * Open an existing case with the given SQLite settings
+	 *
+	 * @param dbPath Path to SQLite database.
+	 * @param profile SQLite settings, e.g. CaseDbProfile.wal()
+	 * @return Case object
+	 */
+	public static SleuthkitCase openCase(String dbPath, CaseDbProfile profile) throws TskCoreException {
+		synchronized (caseOpenLock) {
+			final SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.openCaseDb(dbPath);
+			try {
+				return new SleuthkitCase(dbPath, caseHandle, profile);
+			} catch (SQLException ex) {
+				throw new TskCoreException("Couldn't open case at " + dbPath, ex);
+			} catch (ClassNotFoundException ex) {
+				throw new TskCoreException("Couldn't open case at " + dbPath, ex);
+			}
 		}
 	}
 
@@ -516,22 +548,32 @@ public class SleuthkitCase {
 	 * @return Case object
 	 */
 	public static SleuthkitCase newCase(String dbPath) throws TskCoreException {
-		SleuthkitCase.dbWriteLock();
-		SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.newCaseDb(dbPath);
-		try {
-			return new SleuthkitCase(dbPath, caseHandle);
-		} catch (SQLException ex) {
-			throw new TskCoreException("Couldn't open case at " + dbPath, ex);
-		} catch (ClassNotFoundException ex) {
-			throw new TskCoreException("Couldn't open case at " + dbPath, ex);
-		} finally {
-			SleuthkitCase.dbWriteUnlock();
+		return newCase(dbPath, CaseDbProfile.defaults());
+	}
+
+	/**
+	 * Create a new case with the given SQLite settings
+	 *
+	 * @param dbPath Path to where SQlite database should be created.
+	 * @param profile SQLite settings, e.g. CaseDbProfile.wal()
+	 * @return Case object
+	 */
+	public static SleuthkitCase newCase(String dbPath, CaseDbProfile profile) throws TskCoreException {
+		synchronized (caseOpenLock) {
+			SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.newCaseDb(dbPath);
+			try {
+				return new SleuthkitCase(dbPath, caseHandle, profile);
+			} catch (SQLException ex) {
+				throw new TskCoreException("Couldn't open case at " + dbPath, ex);
+			} catch (ClassNotFoundException ex) {
+				throw new TskCoreException("Couldn't open case at " + dbPath, ex);
+			}
 		}
 
 	}
 
 	private void initBlackboardTypes() throws SQLException, TskCoreException {
-		dbReadLock();
+		writeLock();
 		try {
 			Statement s = con.createStatement();
 			for (ARTIFACT_TYPE type : ARTIFACT_TYPE.values()) {
@@ -550,7 +592,7 @@ public class SleuthkitCase {
 			}
 			s.close();
 		} finally {
-			dbReadUnlock();
+			writeUnlock();
 		}
 	}
 
@@ -599,6 +641,29 @@ public class SleuthkitCase {
 		this.caseHandle.clearLookupDatabases();
 	}
 
+	/**
+	 * Load the whole content hierarchy of the case in a few table scans. The
+	 * content objects in the returned tree answer getChildrenCount() and
+	 * getParent() from the tree, and getChildren() with one query per few
+	 * hundred files of the child list. The tree keeps only object ids and
+	 * links, not the files themselves. It is a snapshot and does not see
+	 * objects added after it was loaded.
+	 *
+	 * @return the case tree
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 * within tsk core
+	 */
+	public CaseTree loadCaseTree() throws TskCoreException {
+		dbReadLock();
+		try {
+			return new CaseTree(this, getReadConnection());
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error loading the case tree.", ex);
+		} finally {
+			dbReadUnlock();
+		}
+	}
+
 	/**
 	 * Get the list of root objects, meaning image files or local files virtual dir container.
 	 *
@@ -611,7 +676,7 @@ public class SleuthkitCase {
 		dbReadLock();
 		try {
 
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT obj_id, type from tsk_objects "
 					+ "WHERE par_obj_id IS NULL");
 
@@ -663,6 +728,7 @@ public class SleuthkitCase {
 		String artifactTypeName = this.getArtifactTypeString(artifactTypeID);
 		dbReadLock();
 		try {
+			PreparedStatement getBlackboardArtifactsSt = getReadConnection().prepareStatement(GET_BLACKBOARD_ARTIFACTS);
 			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
 
 			getBlackboardArtifactsSt.setInt(1, artifactTypeID);
@@ -695,6 +761,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
+			PreparedStatement getBlackboardArtifactsContentCountSt = getReadConnection().prepareStatement(GET_BLACKBOARD_ARTIFACTS_CONTENT_COUNT);
 			long count = 0;
 			getBlackboardArtifactsContentCountSt.setLong(1, objId);
 			rs = getBlackboardArtifactsContentCountSt.executeQuery();
@@ -734,6 +801,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
+			PreparedStatement getBlackboardArtifactsTypeCountSt = getReadConnection().prepareStatement(GET_BLACKBOARD_ARTIFACTS_TYPE_COUNT);
 			long count = 0;
 			getBlackboardArtifactsTypeCountSt.setInt(1, artifactTypeID);
 			rs = getBlackboardArtifactsTypeCountSt.executeQuery();
@@ -797,18 +865,14 @@ public class SleuthkitCase {
 	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, String value) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
-			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
-					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
-					+ "FROM blackboard_artifacts, blackboard_attributes "
-					+ "WHERE blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id "
-					+ "AND blackboard_attributes.attribute_type_id IS " + attrType.getTypeID()
-					+ " AND blackboard_attributes.value_text IS '" + value + "'");
+			PreparedStatement getArtifactsByAttribute = getReadConnection().prepareStatement(GET_ARTIFACTS_BY_ATTRIBUTE_TEXT);
+			getArtifactsByAttribute.setInt(1, attrType.getTypeID());
+			getArtifactsByAttribute.setString(2, value);
+			ResultSet rs = getArtifactsByAttribute.executeQuery();
 
 			List<BlackboardArtifact> artifacts = getArtifactsHelper(rs);
 
 			rs.close();
-			s.close();
 			return artifacts;
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
@@ -840,18 +904,14 @@ public class SleuthkitCase {
 
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
-			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
-					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
-					+ "FROM blackboard_artifacts, blackboard_attributes "
-					+ "WHERE blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id "
-					+ "AND blackboard_attributes.attribute_type_id IS " + attrType.getTypeID()
-					+ " AND blackboard_attributes.value_text LIKE '" + subString + "'");
+			PreparedStatement getArtifactsByAttribute = getReadConnection().prepareStatement(GET_ARTIFACTS_BY_ATTRIBUTE_TEXT_LIKE);
+			getArtifactsByAttribute.setInt(1, attrType.getTypeID());
+			getArtifactsByAttribute.setString(2, subString);
+			ResultSet rs = getArtifactsByAttribute.executeQuery();
 
 			List<BlackboardArtifact> artifacts = getArtifactsHelper(rs);
 
 			rs.close();
-			s.close();
 			return artifacts;
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
@@ -874,18 +934,14 @@ public class SleuthkitCase {
 	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, int value) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
-			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
-					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
-					+ "FROM blackboard_artifacts, blackboard_attributes "
-					+ "WHERE blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id "
-					+ "AND blackboard_attributes.attribute_type_id IS " + attrType.getTypeID()
-					+ " AND blackboard_attributes.value_int32 IS " + value);
+			PreparedStatement getArtifactsByAttribute = getReadConnection().prepareStatement(GET_ARTIFACTS_BY_ATTRIBUTE_INT32);
+			getArtifactsByAttribute.setInt(1, attrType.getTypeID());
+			getArtifactsByAttribute.setInt(2, value);
+			ResultSet rs = getArtifactsByAttribute.executeQuery();
 
 			List<BlackboardArtifact> artifacts = getArtifactsHelper(rs);
 
 			rs.close();
-			s.close();
 			return artifacts;
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
@@ -908,18 +964,14 @@ public class SleuthkitCase {
 	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, long value) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
-			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
-					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
-					+ "FROM blackboard_artifacts, blackboard_attributes "
-					+ "WHERE blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id "
-					+ "AND blackboard_attributes.attribute_type_id IS " + attrType.getTypeID()
-					+ " AND blackboard_attributes.value_int64 IS " + value);
+			PreparedStatement getArtifactsByAttribute = getReadConnection().prepareStatement(GET_ARTIFACTS_BY_ATTRIBUTE_INT64);
+			getArtifactsByAttribute.setInt(1, attrType.getTypeID());
+			getArtifactsByAttribute.setLong(2, value);
+			ResultSet rs = getArtifactsByAttribute.executeQuery();
 
 			List<BlackboardArtifact> artifacts = getArtifactsHelper(rs);
 
 			rs.close();
-			s.close();
 			return artifacts;
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
@@ -942,18 +994,14 @@ public class SleuthkitCase {
 	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, double value) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
-			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
-					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
-					+ "FROM blackboard_artifacts, blackboard_attributes "
-					+ "WHERE blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id "
-					+ "AND blackboard_attributes.attribute_type_id IS " + attrType.getTypeID()
-					+ " AND blackboard_attributes.value_double IS " + value);
+			PreparedStatement getArtifactsByAttribute = getReadConnection().prepareStatement(GET_ARTIFACTS_BY_ATTRIBUTE_DOUBLE);
+			getArtifactsByAttribute.setInt(1, attrType.getTypeID());
+			getArtifactsByAttribute.setDouble(2, value);
+			ResultSet rs = getArtifactsByAttribute.executeQuery();
 
 			List<BlackboardArtifact> artifacts = getArtifactsHelper(rs);
 
 			rs.close();
-			s.close();
 			return artifacts;
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
@@ -976,18 +1024,14 @@ public class SleuthkitCase {
 	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, byte value) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
-			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
-					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
-					+ "FROM blackboard_artifacts, blackboard_attributes "
-					+ "WHERE blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id "
-					+ "AND blackboard_attributes.attribute_type_id IS " + attrType.getTypeID()
-					+ " AND blackboard_attributes.value_byte IS " + value);
+			PreparedStatement getArtifactsByAttribute = getReadConnection().prepareStatement(GET_ARTIFACTS_BY_ATTRIBUTE_BYTE);
+			getArtifactsByAttribute.setInt(1, attrType.getTypeID());
+			getArtifactsByAttribute.setByte(2, value);
+			ResultSet rs = getArtifactsByAttribute.executeQuery();
 
 			List<BlackboardArtifact> artifacts = getArtifactsHelper(rs);
 
 			rs.close();
-			s.close();
 			return artifacts;
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
@@ -1007,7 +1051,7 @@ public class SleuthkitCase {
 		dbReadLock();
 		try {
 			ArrayList<BlackboardArtifact.ARTIFACT_TYPE> artifact_types = new ArrayList<BlackboardArtifact.ARTIFACT_TYPE>();
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT artifact_type_id FROM blackboard_artifact_types");
 
 			while (rs.next()) {
@@ -1058,7 +1102,7 @@ public class SleuthkitCase {
 		dbReadLock();
 		try {
 			ArrayList<BlackboardAttribute.ATTRIBUTE_TYPE> attribute_types = new ArrayList<BlackboardAttribute.ATTRIBUTE_TYPE>();
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT type_name FROM blackboard_attribute_types");
 
 			while (rs.next()) {
@@ -1090,7 +1134,7 @@ public class SleuthkitCase {
 		dbReadLock();
 		try {
 			int count = 0;
-			s = con.createStatement();
+			s = getReadConnection().createStatement();
 			rs = s.executeQuery("SELECT COUNT(*) FROM blackboard_attribute_types");
 
 			if (rs.next()) {
@@ -1137,6 +1181,7 @@ public class SleuthkitCase {
 	private ArrayList<BlackboardArtifact> getArtifactsHelper(int artifactTypeID, String artifactTypeName, long obj_id) throws TskCoreException {
 		dbReadLock();
 		try {
+			PreparedStatement getArtifactsHelper1St = getReadConnection().prepareStatement(GET_ARTIFACTS_HELPER1);
 			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
 
 			getArtifactsHelper1St.setLong(1, obj_id);
@@ -1170,6 +1215,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
+			PreparedStatement getArtifactsCountHelperSt = getReadConnection().prepareStatement(GET_ARTIFACTS_COUNT_HELPER);
 			long count = 0;
 
 			getArtifactsCountHelperSt.setLong(1, obj_id);
@@ -1209,6 +1255,7 @@ public class SleuthkitCase {
 	private ArrayList<BlackboardArtifact> getArtifactsHelper(int artifactTypeID, String artifactTypeName) throws TskCoreException {
 		dbReadLock();
 		try {
+			PreparedStatement getArtifactsHelper2St = getReadConnection().prepareStatement(GET_ARTIFACTS_HELPER2);
 			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
 
 			getArtifactsHelper2St.setInt(1, artifactTypeID);
@@ -1351,7 +1398,7 @@ public class SleuthkitCase {
 	public List<BlackboardArtifact> getBlackboardArtifacts(ARTIFACT_TYPE artifactType, BlackboardAttribute.ATTRIBUTE_TYPE attrType, String value) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
 					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
 					+ "FROM blackboard_artifacts, blackboard_attributes "
@@ -1383,6 +1430,7 @@ public class SleuthkitCase {
 	public BlackboardArtifact getBlackboardArtifact(long artifactID) throws TskCoreException {
 		dbReadLock();
 		try {
+			PreparedStatement getBlackboardArtifactSt = getReadConnection().prepareStatement(GET_BLACKBOARD_ARTIFACT);
 			getBlackboardArtifactSt.setLong(1, artifactID);
 			ResultSet rs = getBlackboardArtifactSt.executeQuery();
 			long obj_id = rs.getLong(1);
@@ -1407,7 +1455,7 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public void addBlackboardAttribute(BlackboardAttribute attr) throws TskCoreException {
-		dbWriteLock();
+		writeLock();
 		try {
 			PreparedStatement ps = null;
 			switch (attr.getValueType()) {
@@ -1444,7 +1492,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting or creating a blackboard artifact.", ex);
 		} finally {
-			dbWriteUnlock();
+			writeUnlock();
 		}
 	}
 
@@ -1458,11 +1506,11 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public void addBlackboardAttributes(Collection<BlackboardAttribute> attributes) throws TskCoreException {
-		dbWriteLock();
+		writeLock();
 		try {
 			con.setAutoCommit(false);
 		} catch (SQLException ex) {
-			dbWriteUnlock();
+			writeUnlock();
 			throw new TskCoreException("Error creating transaction, no attributes created.", ex);
 		}
 
@@ -1518,7 +1566,7 @@ public class SleuthkitCase {
 			} catch (SQLException ex) {
 				throw new TskCoreException("Error setting autocommit and closing the transaction!", ex);
 			} finally {
-				dbWriteUnlock();
+				writeUnlock();
 			}
 		}
 
@@ -1551,7 +1599,7 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	private void addAttrType(String attrTypeString, String displayName, int typeID) throws TskCoreException {
-		dbWriteLock();
+		writeLock();
 		try {
 			Statement s = con.createStatement();
 			ResultSet rs = s.executeQuery("SELECT * from blackboard_attribute_types WHERE type_name = '" + attrTypeString + "'");
@@ -1567,7 +1615,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting attribute type id.", ex);
 		} finally {
-			dbWriteUnlock();
+			writeUnlock();
 		}
 	}
 
@@ -1583,7 +1631,7 @@ public class SleuthkitCase {
 	public int getAttrTypeID(String attrTypeString) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs;
 
 			rs = s.executeQuery("SELECT attribute_type_id FROM blackboard_attribute_types WHERE type_name = '" + attrTypeString + "'");
@@ -1616,7 +1664,7 @@ public class SleuthkitCase {
 	public String getAttrTypeString(int attrTypeID) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs;
 
 			rs = s.executeQuery("SELECT type_name FROM blackboard_attribute_types WHERE attribute_type_id = " + attrTypeID);
@@ -1650,7 +1698,7 @@ public class SleuthkitCase {
 	public String getAttrTypeDisplayName(int attrTypeID) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs;
 
 			rs = s.executeQuery("SELECT display_name FROM blackboard_attribute_types WHERE attribute_type_id = " + attrTypeID);
@@ -1684,7 +1732,7 @@ public class SleuthkitCase {
 	int getArtifactTypeID(String artifactTypeString) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs;
 
 			rs = s.executeQuery("SELECT artifact_type_id FROM blackboard_artifact_types WHERE type_name = '" + artifactTypeString + "'");
@@ -1718,7 +1766,7 @@ public class SleuthkitCase {
 	String getArtifactTypeString(int artifactTypeID) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs;
 
 			rs = s.executeQuery("SELECT type_name FROM blackboard_artifact_types WHERE artifact_type_id = " + artifactTypeID);
@@ -1753,7 +1801,7 @@ public class SleuthkitCase {
 	String getArtifactTypeDisplayName(int artifactTypeID) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs;
 
 			rs = s.executeQuery("SELECT display_name FROM blackboard_artifact_types WHERE artifact_type_id = " + artifactTypeID);
@@ -1802,7 +1850,7 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	private void addArtifactType(String artifactTypeName, String displayName, int typeID) throws TskCoreException {
-		dbWriteLock();
+		writeLock();
 		try {
 			Statement s = con.createStatement();
 			ResultSet rs = s.executeQuery("SELECT * FROM blackboard_artifact_types WHERE type_name = '" + artifactTypeName + "'");
@@ -1818,7 +1866,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error adding artifact type.", ex);
 		} finally {
-			dbWriteUnlock();
+			writeUnlock();
 		}
 
 	}
@@ -1828,6 +1876,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
+			PreparedStatement getBlackboardAttributesSt = getReadConnection().prepareStatement(GET_BLACKBOARD_ATTRIBUTES);
 			getBlackboardAttributesSt.setLong(1, artifact.getArtifactID());
 			rs = getBlackboardAttributesSt.executeQuery();
 			while (rs.next()) {
@@ -1872,7 +1921,7 @@ public class SleuthkitCase {
 		try {
 			Statement s;
 
-			s = con.createStatement();
+			s = getReadConnection().createStatement();
 
 			ResultSet rs = s.executeQuery("Select artifact_id, source, context, attribute_type_id, value_type, "
 					+ "value_byte, value_text, value_int32, value_int64, value_double FROM blackboard_attributes " + whereClause);
@@ -1908,7 +1957,7 @@ public class SleuthkitCase {
 		dbReadLock();
 		try {
 			Statement s;
-			s = con.createStatement();
+			s = getReadConnection().createStatement();
 
 			ResultSet rs = s.executeQuery("Select artifact_id, obj_id, artifact_type_id FROM blackboard_artifacts " + whereClause);
 
@@ -1938,7 +1987,7 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public BlackboardArtifact newBlackboardArtifact(int artifactTypeID, long obj_id) throws TskCoreException {
-		dbWriteLock();
+		writeLock();
 		try {
 			String artifactTypeName = this.getArtifactTypeString(artifactTypeID);
 			String artifactDisplayName = this.getArtifactTypeDisplayName(artifactTypeID);
@@ -1964,7 +2013,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting or creating a blackboard artifact. " + ex.getMessage(), ex);
 		} finally {
-			dbWriteUnlock();
+			writeUnlock();
 		}
 	}
 
@@ -1978,7 +2027,7 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public BlackboardArtifact newBlackboardArtifact(ARTIFACT_TYPE artifactType, long obj_id) throws TskCoreException {
-		dbWriteLock();
+		writeLock();
 		try {
 			final int type = artifactType.getTypeID();
 
@@ -2005,7 +2054,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting or creating a blackboard artifact. " + ex.getMessage(), ex);
 		} finally {
-			dbWriteUnlock();
+			writeUnlock();
 		}
 	}
 
@@ -2048,6 +2097,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
+			PreparedStatement hasChildrenSt = getReadConnection().prepareStatement(HAS_CHILDREN);
 			hasChildrenSt.setLong(1, content.getId());
 			rs = hasChildrenSt.executeQuery();
 			if (rs.next()) {
@@ -2087,6 +2137,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
+			PreparedStatement hasChildrenSt = getReadConnection().prepareStatement(HAS_CHILDREN);
 			hasChildrenSt.setLong(1, content.getId());
 			rs = hasChildrenSt.executeQuery();
 			if (rs.next()) {
@@ -2119,11 +2170,16 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	List<Content> getAbstractFileChildren(Content parent, TSK_DB_FILES_TYPE_ENUM type) throws TskCoreException {
+		CaseTree tree = getCaseTree(parent);
+		if (tree != null) {
+			return tree.getChildren(parent, type);
+		}
 
 		List<Content> children = new ArrayList<Content>();
 
 		dbReadLock();
 		try {
+			PreparedStatement getAbstractFileChildren = getReadConnection().prepareStatement(GET_ABSTRACT_FILE_CHILDREN);
 
 			long parentId = parent.getId();
 
@@ -2178,10 +2234,15 @@ public class SleuthkitCase {
 	}
 
 	List<Long> getAbstractFileChildrenIds(Content parent, TSK_DB_FILES_TYPE_ENUM type) throws TskCoreException {
+		CaseTree tree = getCaseTree(parent);
+		if (tree != null) {
+			return tree.getChildrenIds(parent, type);
+		}
 		final List<Long> children = new ArrayList<Long>();
 
 		dbReadLock();
 		try {
+			PreparedStatement getAbstractFileChildrenIds = getReadConnection().prepareStatement(GET_ABSTRACT_FILE_CHILDREN_IDS);
 
 			getAbstractFileChildrenIds.setLong(1, parent.getId());
 			getAbstractFileChildrenIds.setShort(2, type.getFileType());
@@ -2200,6 +2261,15 @@ public class SleuthkitCase {
 		return children;
 	}
 
+	/**
+	 * @param c content object
+	 * @return the case tree the content was loaded with, or null if it was
+	 * queried on its own
+	 */
+	private static CaseTree getCaseTree(Content c) {
+		return c instanceof AbstractContent ? ((AbstractContent) c).getCaseTree() : null;
+	}
+
 	/**
 	 * Stores a pair of object ID and its type
 	 */
@@ -2225,12 +2295,9 @@ public class SleuthkitCase {
 	Collection<ObjectInfo> getChildrenInfo(Content c) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
-			String query = "SELECT tsk_objects.obj_id, tsk_objects.type ";
-			query += "FROM tsk_objects left join tsk_files ";
-			query += "ON tsk_objects.obj_id=tsk_files.obj_id ";
-			query += "WHERE tsk_objects.par_obj_id = " + c.getId() + " ";
-			ResultSet rs = s.executeQuery(query);
+			PreparedStatement getChildrenInfo = getReadConnection().prepareStatement(GET_CHILDREN_INFO);
+			getChildrenInfo.setLong(1, c.getId());
+			ResultSet rs = getChildrenInfo.executeQuery();
 
 			Collection<ObjectInfo> infos = new ArrayList<ObjectInfo>();
 
@@ -2238,7 +2305,6 @@ public class SleuthkitCase {
 				infos.add(new ObjectInfo(rs.getLong("obj_id"), ObjectType.valueOf(rs.getShort("type"))));
 			}
 			rs.close();
-			s.close();
 			return infos;
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting Children Info for Content.", ex);
@@ -2258,22 +2324,18 @@ public class SleuthkitCase {
 	ObjectInfo getParentInfo(Content c) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
-			ResultSet rs = s.executeQuery("SELECT parent.obj_id, parent.type "
-					+ "FROM tsk_objects AS parent JOIN tsk_objects AS child "
-					+ "ON child.par_obj_id = parent.obj_id "
-					+ "WHERE child.obj_id = " + c.getId());
+			PreparedStatement getParentInfo = getReadConnection().prepareStatement(GET_PARENT_INFO);
+			getParentInfo.setLong(1, c.getId());
+			ResultSet rs = getParentInfo.executeQuery();
 
 			ObjectInfo info;
 
 			if (rs.next()) {
 				info = new ObjectInfo(rs.getLong(1), ObjectType.valueOf(rs.getShort(2)));
 				rs.close();
-				s.close();
 				return info;
 			} else {
 				rs.close();
-				s.close();
 				throw new TskCoreException("Given content (id: " + c.getId() + ") has no parent.");
 			}
 		} catch (SQLException ex) {
@@ -2294,22 +2356,18 @@ public class SleuthkitCase {
 	ObjectInfo getParentInfo(long contentId) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
-			ResultSet rs = s.executeQuery("SELECT parent.obj_id, parent.type "
-					+ "FROM tsk_objects AS parent JOIN tsk_objects AS child "
-					+ "ON child.par_obj_id = parent.obj_id "
-					+ "WHERE child.obj_id = " + contentId);
+			PreparedStatement getParentInfo = getReadConnection().prepareStatement(GET_PARENT_INFO);
+			getParentInfo.setLong(1, contentId);
+			ResultSet rs = getParentInfo.executeQuery();
 
 			ObjectInfo info;
 
 			if (rs.next()) {
 				info = new ObjectInfo(rs.getLong(1), ObjectType.valueOf(rs.getShort(2)));
 				rs.close();
-				s.close();
 				return info;
 			} else {
 				rs.close();
-				s.close();
 				throw new TskCoreException("Given content (id: " + contentId + ") has no parent.");
 			}
 		} catch (SQLException ex) {
@@ -2319,6 +2377,275 @@ public class SleuthkitCase {
 		}
 	}
 
+	/**
+	 * @return the queries on this case that were slower than the log's
+	 * threshold, or null if the case was not opened with a profile that logs
+	 * slow queries
+	 */
+	public SlowQueryLog getSlowQueryLog() {
+		return slowQueries;
+	}
+
+	/**
+	 * Create the secondary indexes of CaseDbIndexes that the case database
+	 * does not have yet. This writes to the case database, and takes a while
+	 * for a large case the first time.
+	 *
+	 * @return the names of the indexes created
+	 * @throws TskCoreException thrown if an index could not be created
+	 */
+	public List<String> createIndexes() throws TskCoreException {
+		writeLock();
+		try {
+			return CaseDbIndexes.create(con);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error creating the case database indexes", ex);
+		} finally {
+			writeUnlock();
+		}
+	}
+
+	/**
+	 * Ask SQLite how it would run a query, to see whether it uses an index or
+	 * scans a table. Parameters (?) in the query are left unbound.
+	 *
+	 * @param sql the query
+	 * @return the query plan, one step per line
+	 * @throws TskCoreException thrown if the query could not be explained
+	 */
+	public String explainQueryPlan(String sql) throws TskCoreException {
+		dbReadLock();
+		try {
+			PreparedStatement statement = getReadConnection().getConnection().prepareStatement("EXPLAIN QUERY PLAN " + sql);
+			try {
+				ResultSet rs = statement.executeQuery();
+				StringBuilder plan = new StringBuilder();
+				while (rs.next()) {
+					//the last column is the detail in every SQLite version
+					plan.append(rs.getString(rs.getMetaData().getColumnCount())).append('\n');
+				}
+				rs.close();
+				return plan.toString();
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error explaining query: " + sql, ex);
+		} finally {
+			dbReadUnlock();
+		}
+	}
+
+	/**
+	 * Create the full-text index of file names and parent paths that
+	 * searchFileNames() uses, if the case database does not have it, and add
+	 * the files of the case to it. The index is kept in the case database;
+	 * files added later are indexed by the next search.
+	 *
+	 * @throws TskCoreException thrown if the index could not be created
+	 */
+	public void createFileNameIndex() throws TskCoreException {
+		writeLock();
+		try {
+			long start = System.currentTimeMillis();
+			FileNameIndex.create(con);
+			int added = FileNameIndex.catchUp(con);
+			fileNameIndex = true;
+			logger.log(Level.INFO, "Indexed {0} file names in {1} ms", new Object[]{added, System.currentTimeMillis() - start});
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error creating the file name index", ex);
+		} finally {
+			writeUnlock();
+		}
+	}
+
+	/**
+	 * @return true if the case database has the file name index, and
+	 * searchFileNames() can be used
+	 */
+	public boolean hasFileNameIndex() {
+		return fileNameIndex;
+	}
+
+	/**
+	 * Search the file name index for files whose name or parent path has
+	 * words starting with each word of the text. Files whose name matches come
+	 * first, then files matched through their path, each in object id order.
+	 *
+	 * @param text the words to search for, e.g. "report 2012"; case and
+	 * punctuation are ignored
+	 * @param offset number of matching files to skip, for paging
+	 * @param limit maximum number of files to return
+	 * @return object ids of the matching files, use getAbstractFileById() to
+	 * get the files
+	 * @throws TskCoreException thrown if the case has no file name index (see
+	 * createFileNameIndex()) or the search failed
+	 */
+	public List<Long> searchFileNames(String text, int offset, int limit) throws TskCoreException {
+		if (!fileNameIndex) {
+			throw new TskCoreException("The case has no file name index, create it with createFileNameIndex()");
+		}
+		List<Long> ids = new ArrayList<Long>();
+		String[] queries = FileNameIndex.toQueries(text);
+		if (queries == null || limit <= 0) {
+			return ids;
+		}
+		boolean behind;
+		dbReadLock();
+		try {
+			behind = FileNameIndex.isBehind(getReadConnection());
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error checking the file name index", ex);
+		} finally {
+			dbReadUnlock();
+		}
+		if (behind) {
+			writeLock();
+			try {
+				FileNameIndex.catchUp(con);
+			} catch (SQLException ex) {
+				throw new TskCoreException("Error updating the file name index", ex);
+			} finally {
+				writeUnlock();
+			}
+		}
+		dbReadLock();
+		try {
+			PreparedStatement statement = getReadConnection().prepareStatement(FileNameIndex.SEARCH);
+			statement.setString(1, queries[0]);
+			statement.setString(2, queries[1]);
+			statement.setString(3, queries[0]);
+			statement.setInt(4, limit);
+			statement.setInt(5, Math.max(offset, 0));
+			ResultSet rs = statement.executeQuery();
+			while (rs.next()) {
+				ids.add(rs.getLong(1));
+			}
+			rs.close();
+			return ids;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error searching file names for: " + text, ex);
+		} finally {
+			dbReadUnlock();
+		}
+	}
+
+	/**
+	 * @return the cache getContentById() and the other lookups by object id
+	 * share, with its hit and miss counts
+	 */
+	public ContentCache getContentCache() {
+		return contentCache;
+	}
+
+	/**
+	 * @return the cache of image blocks that small reads of the case's
+	 * images, volumes, file systems and layout files share, with its hit rate;
+	 * set its size to 0 to read uncached
+	 */
+	public ImageBlockCache getImageBlockCache() {
+		return imageBlockCache;
+	}
+
+	/**
+	 * @return the native handles of the case's images, volumes, file systems
+	 * and files, with counts of those open; set its budget to bound the
+	 * native memory they take
+	 */
+	public HandleManager getHandleManager() {
+		return handleManager;
+	}
+
+	/**
+	 * Whether raw images (dd files, single or split) are read from their
+	 * files memory mapped, rather than through the native library. On by
+	 * default; turn off before the first read of an image for it to be read
+	 * through the native library.
+	 *
+	 * @param rawImageMapping true to map raw images
+	 */
+	public void setRawImageMapping(boolean rawImageMapping) {
+		this.rawImageMapping = rawImageMapping;
+	}
+
+	/**
+	 * @return true if raw images are read from their files memory mapped
+	 */
+	public boolean isRawImageMapping() {
+		return rawImageMapping;
+	}
+
+	/**
+	 * Record an image whose files have been mapped, so that closing the case
+	 * unmaps them
+	 *
+	 * @return false if the case no longer maps images, having been closed
+	 */
+	boolean addMappedImage(Image image) {
+		synchronized (mappedImages) {
+			if (!rawImageMapping) {
+				return false;
+			}
+			mappedImages.add(image);
+			return true;
+		}
+	}
+
+	void removeMappedImage(Image image) {
+		synchronized (mappedImages) {
+			mappedImages.remove(image);
+		}
+	}
+
+	/**
+	 * Stop mapping images and unmap those mapped, so that their files are no
+	 * longer held open
+	 */
+	private void releaseMappedImages() {
+		List<Image> images;
+		synchronized (mappedImages) {
+			rawImageMapping = false;
+			images = new ArrayList<Image>(mappedImages);
+		}
+		for (Image image : images) {
+			image.releaseMappedImage();
+		}
+	}
+
+	/**
+	 * Get the unique path of an object from the case's table of path
+	 * prefixes, if it is there
+	 *
+	 * @param objId id of the object, typically a file system or a directory
+	 * @return the unique path of the object, or null if it has not been cached
+	 */
+	String getCachedUniquePath(long objId) {
+		return uniquePathPrefixes.get(objId);
+	}
+
+	/**
+	 * Get the unique path of an object that other unique paths start with,
+	 * caching it in the case's table of path prefixes. Every file in a file
+	 * system or directory shares the one cached string for their ancestors'
+	 * path, so resolving a file's path needs no further queries once its
+	 * parent has been seen.
+	 *
+	 * @param content the object, typically a file system or a directory
+	 * @return the unique path of the object
+	 * @throws TskCoreException thrown if the path could not be worked out
+	 */
+	String cacheUniquePath(Content content) throws TskCoreException {
+		String path = uniquePathPrefixes.get(content.getId());
+		if (path == null) {
+			path = content.getUniquePath();
+			String existing = uniquePathPrefixes.putIfAbsent(content.getId(), path);
+			if (existing != null) {
+				path = existing;
+			}
+		}
+		return path;
+	}
+
 	/**
 	 * Gets parent directory for FsContent object
 	 *
@@ -2355,15 +2682,17 @@ public class SleuthkitCase {
 	 * core
 	 */
 	public Content getContentById(long id) throws TskCoreException {
+		Content cached = contentCache.get(id);
+		if (cached != null) {
+			return cached;
+		}
 		dbReadLock();
-		Statement s = null;
 		ResultSet contentRs = null;
 		try {
-			s = con.createStatement();
-			contentRs = s.executeQuery("SELECT * FROM tsk_objects WHERE obj_id = " + id + " LIMIT  1");
+			PreparedStatement getObject = getReadConnection().prepareStatement(GET_OBJECT);
+			getObject.setLong(1, id);
+			contentRs = getObject.executeQuery();
 			if (!contentRs.next()) {
-				contentRs.close();
-				s.close();
 				return null;
 			}
 
@@ -2397,9 +2726,6 @@ public class SleuthkitCase {
 				if (contentRs != null) {
 					contentRs.close();
 				}
-				if (s != null) {
-					s.close();
-				}
 			} catch (SQLException ex) {
 				throw new TskCoreException("Error closing statement when getting Content by ID.", ex);
 			}
@@ -2420,6 +2746,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
+			PreparedStatement getPathSt = getReadConnection().prepareStatement(GET_PATH);
 			getPathSt.setLong(1, id);
 			rs = getPathSt.executeQuery();
 			if (rs.next()) {
@@ -2454,6 +2781,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
+			PreparedStatement getFileParentPathSt = getReadConnection().prepareStatement(GET_FILE_PARENT_PATH);
 			getFileParentPathSt.setLong(1, id);
 			rs = getFileParentPathSt.executeQuery();
 			if (rs.next()) {
@@ -2487,6 +2815,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
+			PreparedStatement getFileNameSt = getReadConnection().prepareStatement(GET_FILE_NAME);
 			getFileNameSt.setLong(1, id);
 			rs = getFileNameSt.executeQuery();
 			if (rs.next()) {
@@ -2522,6 +2851,8 @@ public class SleuthkitCase {
 		ResultSet rs2 = null;
 		dbReadLock();
 		try {
+			PreparedStatement getDerivedInfoSt = getReadConnection().prepareStatement(GET_DERIVED_INFO);
+			PreparedStatement getDerivedMethodSt = getReadConnection().prepareStatement(GET_DERIVED_METHOD);
 			getDerivedInfoSt.setLong(1, id);
 			rs1 = getDerivedInfoSt.executeQuery();
 			if (rs1.next()) {
@@ -2571,15 +2902,20 @@ public class SleuthkitCase {
 	 * core and file could not be queried
 	 */
 	public AbstractFile getAbstractFileById(long id) throws TskCoreException {
+		AbstractFile cached = contentCache.get(id, AbstractFile.class);
+		if (cached != null) {
+			return cached;
+		}
 		ResultSet rs = null;
 		dbReadLock();
 		try {
+			PreparedStatement getAbstractFileById = getReadConnection().prepareStatement(GET_ABSTRACT_FILE_BY_ID);
 			getAbstractFileById.setLong(1, id);
 			rs = getAbstractFileById.executeQuery();
 
 			List<AbstractFile> results;
 			if ((results = resultSetToAbstractFiles(rs)).size() > 0) {
-				return results.get(0);
+				return contentCache.put(results.get(0));
 			} else {
 				return null;
 			}
@@ -2615,6 +2951,7 @@ public class SleuthkitCase {
 
 		dbReadLock();
 		try {
+			PreparedStatement getFsIdForFileIdSt = getReadConnection().prepareStatement(GET_FS_ID_FOR_FILE_ID);
 			getFsIdForFileIdSt.setLong(1, fileId);
 			rs = getFsIdForFileIdSt.executeQuery();
 
@@ -2736,6 +3073,7 @@ public class SleuthkitCase {
 		
 		dbReadLock();
 		try {
+			PreparedStatement getFileSt = getReadConnection().prepareStatement(GET_FILE);
 			if (dataSource instanceof Image) {
 				for (FileSystem fileSystem : getFileSystems((Image) dataSource)) {
 					getFileSt.setString(1, fileName.toLowerCase());
@@ -2799,6 +3137,7 @@ public class SleuthkitCase {
 		
 		dbReadLock();
 		try {
+			PreparedStatement getFileWithParentSt = getReadConnection().prepareStatement(GET_FILE_WITH_PARENT);
 			if (dataSource instanceof Image) {
 				for (FileSystem fileSystem : getFileSystems((Image) dataSource)) {
 					getFileWithParentSt.setString(1, fileName.toLowerCase());
@@ -2898,7 +3237,7 @@ public class SleuthkitCase {
 			parentFs = parentId;
 		}
 		
-		dbWriteLock();
+		writeLock();
 		
 		VirtualDirectory vd = null;
 
@@ -2988,7 +3327,7 @@ public class SleuthkitCase {
 				} catch (SQLException ex) {
 					logger.log(Level.SEVERE, "Error setting auto-commit after adding virtual directory.", ex);
 				} finally {
-					dbWriteUnlock();
+					writeUnlock();
 				}
 			}
 		}
@@ -3012,7 +3351,7 @@ public class SleuthkitCase {
 		Statement statement = null;
 		ResultSet rs = null;
 		try {
-			statement = con.createStatement();
+			statement = getReadConnection().createStatement();
 			rs = statement.executeQuery("SELECT tsk_files.* FROM tsk_objects, tsk_files WHERE " 
 					+ "tsk_objects.par_obj_id IS NULL AND " 
 					+ "tsk_objects.type = " + ObjectType.ABSTRACTFILE.getObjectType() + " AND "
@@ -3057,7 +3396,7 @@ public class SleuthkitCase {
 		long ret = 0;
 
 		//use lock to ensure atomic cache check and db/cache update
-		dbWriteLock();
+		writeLock();
 
 		try {
 			// first, check the cache
@@ -3109,7 +3448,7 @@ public class SleuthkitCase {
 			// add it to the cache
 			systemIdMap.put(id, ret);
 		} finally {
-			dbWriteUnlock();
+			writeUnlock();
 		}
 
 		return ret;
@@ -3140,7 +3479,7 @@ public class SleuthkitCase {
 			parentPath = parentPath + "/" + parentName;
 		}
 		
-		dbWriteLock();
+		writeLock();
 		
 		LayoutFile lf = null;
 
@@ -3249,7 +3588,7 @@ public class SleuthkitCase {
 				} catch (SQLException ex) {
 					logger.log(Level.SEVERE, "Error setting auto-commit after adding derived file", ex);
 				} finally {
-					dbWriteUnlock();
+					writeUnlock();
 				}
 			}
 		}
@@ -3298,7 +3637,7 @@ public class SleuthkitCase {
 		
 		long newObjId = -1;
 
-		dbWriteLock();
+		writeLock();
 
 		//all in one write lock and transaction
 		//get last object id
@@ -3391,7 +3730,7 @@ public class SleuthkitCase {
 				} catch (SQLException ex) {
 					logger.log(Level.SEVERE, "Error setting auto-commit after adding derived file", ex);
 				} finally {
-					dbWriteUnlock();
+					writeUnlock();
 				}
 			}
 		}
@@ -3445,7 +3784,7 @@ public class SleuthkitCase {
 		
 		long newObjId = -1;
 
-		dbWriteLock();
+		writeLock();
 
 		//all in one write lock and transaction
 		//get last object id
@@ -3536,7 +3875,7 @@ public class SleuthkitCase {
 				} catch (SQLException ex) {
 					logger.log(Level.SEVERE, "Error setting auto-commit after adding derived file", ex);
 				} finally {
-					dbWriteUnlock();
+					writeUnlock();
 				}
 			}
 		}
@@ -3571,7 +3910,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
-			statement = con.createStatement();
+			statement = getReadConnection().createStatement();
 			rs = statement.executeQuery("SELECT COUNT (*) FROM tsk_files WHERE " + sqlWhereClause);
 			return rs.getLong(1);
 		} catch (SQLException e) {
@@ -3609,7 +3948,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
-			statement = con.createStatement();
+			statement = getReadConnection().createStatement();
 			rs = statement.executeQuery("SELECT * FROM tsk_files WHERE " + sqlWhereClause);
 			return resultSetToAbstractFiles(rs);
 		} catch (SQLException e) {
@@ -3647,7 +3986,7 @@ public class SleuthkitCase {
 		List<Long> ret = new ArrayList<Long>();
 		dbReadLock();
 		try {
-			statement = con.createStatement();
+			statement = getReadConnection().createStatement();
 			rs = statement.executeQuery("SELECT obj_id FROM tsk_files WHERE " + sqlWhereClause);
 			while(rs.next()) {
 				ret.add(rs.getLong(1));
@@ -3688,7 +4027,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
-			statement = con.createStatement();
+			statement = getReadConnection().createStatement();
 			rs = statement.executeQuery("SELECT * FROM tsk_files WHERE " + sqlWhereClause);
 			return resultSetToFsContents(rs);
 		} catch (SQLException e) {
@@ -3728,7 +4067,7 @@ public class SleuthkitCase {
 		List<Long> ret = new ArrayList<Long>();
 		dbReadLock();
 		try {
-			statement = con.createStatement();
+			statement = getReadConnection().createStatement();
 			rs = statement.executeQuery("SELECT obj_id FROM tsk_files WHERE " + sqlWhereClause);
 			while (rs.next()) {
 				ret.add(rs.getLong(1));
@@ -3756,6 +4095,38 @@ public class SleuthkitCase {
 		return ret;
 	}
 
+	/**
+	 * Open a cursor over the (abstract) files matching the specific Where
+	 * clause. Unlike findAllFilesWhere(), files are fetched fetchSize at a
+	 * time as they are read, and the database is only locked while a page is
+	 * fetched, so large results can be read in constant memory.
+	 *
+	 * @param sqlWhereClause a SQL where clause appropriate for the desired
+	 * files (do not begin the WHERE clause with the word WHERE, and do not
+	 * add ORDER BY or LIMIT)
+	 * @param fetchSize the number of files to fetch per query
+	 * @return a cursor over the files, in object id order
+	 */
+	public FileCursor<AbstractFile> openFileCursor(String sqlWhereClause, int fetchSize) {
+		return new FileCursor<AbstractFile>(this, sqlWhereClause, AbstractFile.class, fetchSize);
+	}
+
+	/**
+	 * Open a cursor over the file system files matching the specific Where
+	 * clause, fetched fetchSize at a time. The streaming counterpart of
+	 * findFilesWhere().
+	 *
+	 * @param sqlWhereClause a SQL where clause appropriate for the desired
+	 * files (do not begin the WHERE clause with the word WHERE, and do not
+	 * add ORDER BY or LIMIT)
+	 * @param fetchSize the number of files to fetch per query
+	 * @return a cursor over the files, in object id order
+	 */
+	public FileCursor<FsContent> openFsContentCursor(String sqlWhereClause, int fetchSize) {
+		return new FileCursor<FsContent>(this, "type = " + TSK_DB_FILES_TYPE_ENUM.FS.getFileType()
+				+ " AND (" + sqlWhereClause + ")", FsContent.class, fetchSize);
+	}
+
 	/**
 	 * @param dataSource the data source (Image, VirtualDirectory for file-sets, etc) to search for the given file name
 	 * @param filePath The full path to the file(s) of interest. This can
@@ -3796,7 +4167,7 @@ public class SleuthkitCase {
 		List<TskFileRange> ranges = new ArrayList<TskFileRange>();
 		dbReadLock();
 		try {
-			Statement s1 = con.createStatement();
+			Statement s1 = getReadConnection().createStatement();
 
 			ResultSet rs1 = s1.executeQuery("select * from tsk_file_layout where obj_id = " + id + " order by sequence");
 
@@ -3822,17 +4193,22 @@ public class SleuthkitCase {
 	 * core
 	 */
 	public Image getImageById(long id) throws TskCoreException {
+		Image cached = contentCache.get(id, Image.class);
+		if (cached != null) {
+			return cached;
+		}
 		dbReadLock();
 		try {
-			Statement s1 = con.createStatement();
-
-			ResultSet rs1 = s1.executeQuery("select * from tsk_image_info where obj_id = " + id);
+			PreparedStatement getImageInfo = getReadConnection().prepareStatement(GET_IMAGE_INFO);
+			getImageInfo.setLong(1, id);
+			ResultSet rs1 = getImageInfo.executeQuery();
 
 			Image temp;
 			if (rs1.next()) {
 				long obj_id = rs1.getLong("obj_id");
-				Statement s2 = con.createStatement();
-				ResultSet rs2 = s2.executeQuery("select * from tsk_image_names where obj_id = " + obj_id);
+				PreparedStatement getImageNames = getReadConnection().prepareStatement(GET_IMAGE_NAMES);
+				getImageNames.setLong(1, obj_id);
+				ResultSet rs2 = getImageNames.executeQuery();
 				List<String> imagePaths = new ArrayList<String>();
 				while (rs2.next()) {
 					imagePaths.add(rsHelper.imagePath(rs2));
@@ -3843,15 +4219,12 @@ public class SleuthkitCase {
 
 				temp = rsHelper.image(rs1, name, imagePaths.toArray(new String[imagePaths.size()]));
 				rs2.close();
-				s2.close();
 			} else {
 				rs1.close();
-				s1.close();
 				throw new TskCoreException("No image found for id: " + id);
 			}
 			rs1.close();
-			s1.close();
-			return temp;
+			return contentCache.put(temp);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting Image by ID.", ex);
 		} finally {
@@ -3869,24 +4242,28 @@ public class SleuthkitCase {
 	 * core
 	 */
 	VolumeSystem getVolumeSystemById(long id, Image parent) throws TskCoreException {
+		VolumeSystem cached = contentCache.get(id, VolumeSystem.class);
+		if (cached != null) {
+			if (parent != null) {
+				cached.setParent(parent);
+			}
+			return cached;
+		}
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
-
-			ResultSet rs = s.executeQuery("select * from tsk_vs_info "
-					+ "where obj_id = " + id);
+			PreparedStatement getVsInfo = getReadConnection().prepareStatement(GET_VS_INFO);
+			getVsInfo.setLong(1, id);
+			ResultSet rs = getVsInfo.executeQuery();
 			VolumeSystem temp;
 
 			if (rs.next()) {
 				temp = rsHelper.volumeSystem(rs, parent);
 			} else {
 				rs.close();
-				s.close();
 				throw new TskCoreException("No volume system found for id:" + id);
 			}
 			rs.close();
-			s.close();
-			return temp;
+			return contentCache.put(temp);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting Volume System by ID.", ex);
 		} finally {
@@ -3902,7 +4279,10 @@ public class SleuthkitCase {
 	 */
 	VolumeSystem getVolumeSystemById(long id, long parentId) throws TskCoreException {
 		VolumeSystem vs = getVolumeSystemById(id, null);
-		vs.setParentId(parentId);
+		//the instance may be cached and shared, so keep a parent id it already has
+		if (parentId != AbstractContent.UNKNOWN_ID) {
+			vs.setParentId(parentId);
+		}
 		return vs;
 	}
 
@@ -3928,7 +4308,10 @@ public class SleuthkitCase {
 	FileSystem getFileSystemById(long id, long parentId) throws TskCoreException {
 		Volume vol = null;
 		FileSystem fs = getFileSystemById(id, vol);
-		fs.setParentId(parentId);
+		//the instance may be cached and shared, so keep a parent id it already has
+		if (parentId != AbstractContent.UNKNOWN_ID) {
+			fs.setParentId(parentId);
+		}
 		return fs;
 	}
 
@@ -3955,25 +4338,30 @@ public class SleuthkitCase {
 	 * core
 	 */
 	private FileSystem getFileSystemByIdHelper(long id, Content parent) throws TskCoreException {
+		FileSystem cached = contentCache.get(id, FileSystem.class);
+		if (cached != null) {
+			if (parent != null) {
+				cached.setParent(parent);
+			}
+			return cached;
+		}
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
+			PreparedStatement getFsInfo = getReadConnection().prepareStatement(GET_FS_INFO);
+			getFsInfo.setLong(1, id);
 			FileSystem temp;
 
-			ResultSet rs = s.executeQuery("select * from tsk_fs_info "
-					+ "where obj_id = " + id);
+			ResultSet rs = getFsInfo.executeQuery();
 
 			if (rs.next()) {
 				temp = rsHelper.fileSystem(rs, parent);
 			} else {
 				rs.close();
-				s.close();
 				throw new TskCoreException("No file system found for id:" + id);
 			}
 			rs.close();
-			s.close();
 
-			return temp;
+			return contentCache.put(temp);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting File System by ID.", ex);
 		} finally {
@@ -3991,24 +4379,29 @@ public class SleuthkitCase {
 	 * core
 	 */
 	Volume getVolumeById(long id, VolumeSystem parent) throws TskCoreException {
+		Volume cached = contentCache.get(id, Volume.class);
+		if (cached != null) {
+			if (parent != null) {
+				cached.setParent(parent);
+			}
+			return cached;
+		}
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
+			PreparedStatement getVolume = getReadConnection().prepareStatement(GET_VOLUME);
+			getVolume.setLong(1, id);
 			Volume temp;
 
-			ResultSet rs = s.executeQuery("select * from tsk_vs_parts "
-					+ "where obj_id = " + id);
+			ResultSet rs = getVolume.executeQuery();
 
 			if (rs.next()) {
 				temp = rsHelper.volume(rs, parent);
 			} else {
 				rs.close();
-				s.close();
 				throw new TskCoreException("No volume found for id:" + id);
 			}
 			rs.close();
-			s.close();
-			return temp;
+			return contentCache.put(temp);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting Volume by ID.", ex);
 		} finally {
@@ -4024,7 +4417,10 @@ public class SleuthkitCase {
 	 */
 	Volume getVolumeById(long id, long parentId) throws TskCoreException {
 		Volume vol = getVolumeById(id, null);
-		vol.setParentId(parentId);
+		//the instance may be cached and shared, so keep a parent id it already has
+		if (parentId != AbstractContent.UNKNOWN_ID) {
+			vol.setParentId(parentId);
+		}
 		return vol;
 	}
 
@@ -4040,7 +4436,7 @@ public class SleuthkitCase {
 	Directory getDirectoryById(long id, FileSystem parentFs) throws TskCoreException {
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			Directory temp = null;
 
 			ResultSet rs = s.executeQuery("SELECT * FROM tsk_files "
@@ -4081,18 +4477,13 @@ public class SleuthkitCase {
 	 */
 	public Collection<FileSystem> getFileSystems(Image image) {
 
-		// create a query to get all file system objects
-		String allFsObjects = "SELECT * FROM tsk_fs_info";
-
 		// perform the query and create a list of FileSystem objects
 		List<FileSystem> allFileSystems = new ArrayList<FileSystem>();
 
 		dbReadLock();
-		Statement statement = null;
 		ResultSet rs = null;
 		try {
-			statement = con.createStatement();
-			rs = statement.executeQuery(allFsObjects);
+			rs = getReadConnection().prepareStatement(GET_ALL_FS_INFO).executeQuery();
 			while (rs.next()) {
 				allFileSystems.add(rsHelper.fileSystem(rs, null));
 			}
@@ -4106,13 +4497,6 @@ public class SleuthkitCase {
 					logger.log(Level.SEVERE, "Cannot close result set after query of all fs objects", ex);
 				}
 			}
-			if (statement != null) {
-				try {
-					statement.close();
-				} catch (SQLException ex) {
-					logger.log(Level.SEVERE, "Cannot close statement after query of all fs objects", ex);
-				}
-			}
 			dbReadUnlock();
 		}
 
@@ -4125,9 +4509,11 @@ public class SleuthkitCase {
 			Long currentObjID = fs.getId();
 			while (imageID == null) {
 				dbReadLock();
+				rs = null;
 				try {
-					statement = con.createStatement();
-					rs = statement.executeQuery("SELECT * FROM tsk_objects WHERE tsk_objects.obj_id = " + currentObjID);
+					PreparedStatement getObject = getReadConnection().prepareStatement(GET_OBJECT);
+					getObject.setLong(1, currentObjID);
+					rs = getObject.executeQuery();
 					currentObjID = rs.getLong("par_obj_id");
 					if (rs.getInt("type") == ObjectType.IMG.getObjectType()) {
 						imageID = rs.getLong("obj_id");
@@ -4142,13 +4528,6 @@ public class SleuthkitCase {
 							logger.log(Level.SEVERE, "Cannot close result set after query of all fs objects for fs", ex);
 						}
 					}
-					if (statement != null) {
-						try {
-							statement.close();
-						} catch (SQLException ex) {
-							logger.log(Level.SEVERE, "Cannot close statement after query of all fs objects for fs", ex);
-						}
-					}
 					dbReadUnlock();
 				}
 			}
@@ -4171,6 +4550,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	List<Content> getImageChildren(Image img) throws TskCoreException {
+		if (img.getCaseTree() != null) {
+			return img.getCaseTree().getChildren(img);
+		}
 		Collection<ObjectInfo> childInfos = getChildrenInfo(img);
 
 		List<Content> children = new ArrayList<Content>();
@@ -4200,6 +4582,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	List<Long> getImageChildrenIds(Image img) throws TskCoreException {
+		if (img.getCaseTree() != null) {
+			return img.getCaseTree().getChildrenIds(img);
+		}
 		Collection<ObjectInfo> childInfos = getChildrenInfo(img);
 
 		List<Long> children = new ArrayList<Long>();
@@ -4226,6 +4611,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	List<Content> getVolumeSystemChildren(VolumeSystem vs) throws TskCoreException {
+		if (vs.getCaseTree() != null) {
+			return vs.getCaseTree().getChildren(vs);
+		}
 		Collection<ObjectInfo> childInfos = getChildrenInfo(vs);
 
 		List<Content> children = new ArrayList<Content>();
@@ -4253,6 +4641,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	List<Long> getVolumeSystemChildrenIds(VolumeSystem vs) throws TskCoreException {
+		if (vs.getCaseTree() != null) {
+			return vs.getCaseTree().getChildrenIds(vs);
+		}
 		Collection<ObjectInfo> childInfos = getChildrenInfo(vs);
 
 		List<Long> children = new ArrayList<Long>();
@@ -4277,6 +4668,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	List<Content> getVolumeChildren(Volume vol) throws TskCoreException {
+		if (vol.getCaseTree() != null) {
+			return vol.getCaseTree().getChildren(vol);
+		}
 		Collection<ObjectInfo> childInfos = getChildrenInfo(vol);
 
 		List<Content> children = new ArrayList<Content>();
@@ -4303,6 +4697,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	List<Long> getVolumeChildrenIds(Volume vol) throws TskCoreException {
+		if (vol.getCaseTree() != null) {
+			return vol.getCaseTree().getChildrenIds(vol);
+		}
 		final Collection<ObjectInfo> childInfos = getChildrenInfo(vol);
 
 		final List<Long> children = new ArrayList<Long>();
@@ -4326,6 +4723,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	List<Content> getFileSystemChildren(FileSystem fs) throws TskCoreException {
+		if (fs.getCaseTree() != null) {
+			return fs.getCaseTree().getChildren(fs);
+		}
 		List<Content> ret = new ArrayList<Content>();
 		for (TSK_DB_FILES_TYPE_ENUM type : TSK_DB_FILES_TYPE_ENUM.values()) {
 			ret.addAll(getAbstractFileChildren(fs, type));
@@ -4342,6 +4742,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	List<Long> getFileSystemChildrenIds(FileSystem fs) throws TskCoreException {
+		if (fs.getCaseTree() != null) {
+			return fs.getCaseTree().getChildrenIds(fs);
+		}
 		List<Long> ret = new ArrayList<Long>();
 		for (TSK_DB_FILES_TYPE_ENUM type : TSK_DB_FILES_TYPE_ENUM.values()) {
 			ret.addAll(getAbstractFileChildrenIds(fs, type));
@@ -4358,6 +4761,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	List<Content> getDirectoryChildren(Directory dir) throws TskCoreException {
+		if (dir.getCaseTree() != null) {
+			return dir.getCaseTree().getChildren(dir);
+		}
 		List<Content> ret = new ArrayList<Content>();
 		for (TSK_DB_FILES_TYPE_ENUM type : TSK_DB_FILES_TYPE_ENUM.values()) {
 			ret.addAll(getAbstractFileChildren(dir, type));
@@ -4374,6 +4780,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	List<Long> getDirectoryChildrenIds(Directory dir) throws TskCoreException {
+		if (dir.getCaseTree() != null) {
+			return dir.getCaseTree().getChildrenIds(dir);
+		}
 		List<Long> ret = new ArrayList<Long>();
 		for (TSK_DB_FILES_TYPE_ENUM type : TSK_DB_FILES_TYPE_ENUM.values()) {
 			ret.addAll(getAbstractFileChildrenIds(dir, type));
@@ -4391,6 +4800,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	List<Content> getVirtualDirectoryChildren(VirtualDirectory vDir) throws TskCoreException {
+		if (vDir.getCaseTree() != null) {
+			return vDir.getCaseTree().getChildren(vDir);
+		}
 		List<Content> ret = new ArrayList<Content>();
 		for (TSK_DB_FILES_TYPE_ENUM type : TSK_DB_FILES_TYPE_ENUM.values()) {
 			ret.addAll(getAbstractFileChildren(vDir, type));
@@ -4408,6 +4820,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	List<Long> getLayoutDirectoryChildrenIds(VirtualDirectory ldir) throws TskCoreException {
+		if (ldir.getCaseTree() != null) {
+			return ldir.getCaseTree().getChildrenIds(ldir);
+		}
 		List<Long> ret = new ArrayList<Long>();
 		for (TSK_DB_FILES_TYPE_ENUM type : TSK_DB_FILES_TYPE_ENUM.values()) {
 			ret.addAll(getAbstractFileChildrenIds(ldir, type));
@@ -4428,13 +4843,13 @@ public class SleuthkitCase {
 
 		dbReadLock();
 		try {
-			Statement s1 = con.createStatement();
+			Statement s1 = getReadConnection().createStatement();
 
 			ResultSet rs1 = s1.executeQuery("select * from tsk_image_info");
 
 			while (rs1.next()) {
 				long obj_id = rs1.getLong("obj_id");
-				Statement s2 = con.createStatement();
+				Statement s2 = getReadConnection().createStatement();
 				ResultSet rs2 = s2.executeQuery("select * from tsk_image_names where obj_id = " + obj_id);
 				List<String> paths = new ArrayList<String>();
 				while (rs2.next()) {
@@ -4466,7 +4881,7 @@ public class SleuthkitCase {
 		dbReadLock();
 		Collection<Long> imageIDs = new ArrayList<Long>();
 		try {
-			ResultSet rs = con.createStatement().executeQuery("select * from tsk_image_info");
+			ResultSet rs = getReadConnection().createStatement().executeQuery("select * from tsk_image_info");
 			while (rs.next()) {
 				imageIDs.add(rs.getLong("obj_id"));
 			}
@@ -4502,6 +4917,7 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		dbReadLock();
 		try {
+			PreparedStatement getLastContentIdSt = getReadConnection().prepareStatement(GET_LAST_CONTENT_ID);
 			rs = getLastContentIdSt.executeQuery();
 			if (rs.next()) {
 				id = rs.getLong(1);
@@ -4535,7 +4951,7 @@ public class SleuthkitCase {
 	 */
 	public void setImagePaths(long obj_id, List<String> paths) throws TskCoreException {
 
-		dbWriteLock();
+		writeLock();
 		try {
 			Statement s1 = con.createStatement();
 
@@ -4548,7 +4964,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error updating image paths.", ex);
 		} finally {
-			dbWriteUnlock();
+			writeUnlock();
 		}
 
 	}
@@ -4569,43 +4985,10 @@ public class SleuthkitCase {
 		dbReadLock();
 		try {
 			while (rs.next()) {
-				final short type = rs.getShort("type");
-				if (type == TSK_DB_FILES_TYPE_ENUM.FS.getFileType()) {
-					FsContent result;
-					if (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) {
-						result = rsHelper.directory(rs, null);
-					} else {
-						result = rsHelper.file(rs, null);
-					}
+				AbstractFile result = resultSetToAbstractFile(rs, null, AbstractContent.UNKNOWN_ID);
+				if (result != null) {
 					results.add(result);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.VIRTUAL_DIR.getFileType()) {
-					final VirtualDirectory virtDir = rsHelper.virtualDirectory(rs);
-					results.add(virtDir);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS.getFileType() ||
-						type == TSK_DB_FILES_TYPE_ENUM.CARVED.getFileType()) {
-					TSK_DB_FILES_TYPE_ENUM atype = TSK_DB_FILES_TYPE_ENUM.valueOf(type);
-					String parentPath = rs.getString("parent_path");
-					if (parentPath == null) {
-						parentPath = "";
-					}
-					LayoutFile lf = new LayoutFile(this, rs.getLong("obj_id"),
-							rs.getString("name"),
-							atype,
-							TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), TSK_FS_META_TYPE_ENUM.ValueOf(rs.getShort("meta_type")),
-							TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), rs.getShort("meta_flags"),
-							rs.getLong("size"),
-							rs.getString("md5"), FileKnown.valueOf(rs.getByte("known")), parentPath);
-					results.add(lf);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.DERIVED.getFileType()) {
-					final DerivedFile df;
-					df = rsHelper.derivedFile(rs, AbstractContent.UNKNOWN_ID);
-					results.add(df);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.LOCAL.getFileType()) {
-					final LocalFile lf;
-					lf = rsHelper.localFile(rs, AbstractContent.UNKNOWN_ID);
-					results.add(lf);
 				}
-
 			} //end for each rs
 		} catch (SQLException e) {
 			logger.log(Level.SEVERE, "Error getting abstract file from result set.", e);
@@ -4616,6 +4999,49 @@ public class SleuthkitCase {
 		return results;
 	}
 
+	/**
+	 * Creates a file object from the current row of a result set on the
+	 * tsk_files table
+	 *
+	 * @param rs ResultSet positioned on the row
+	 * @param fs the file system of the file if it is already known, else null
+	 * @param parentId the id of the parent of the file if it is already known,
+	 * else AbstractContent.UNKNOWN_ID
+	 * @return the file object, or null if the row has an unknown file type
+	 * @throws java.sql.SQLException if reading the row fails
+	 */
+	AbstractFile resultSetToAbstractFile(ResultSet rs, FileSystem fs, long parentId) throws SQLException {
+		final short type = rs.getShort("type");
+		if (type == TSK_DB_FILES_TYPE_ENUM.FS.getFileType()) {
+			if (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) {
+				return rsHelper.directory(rs, fs);
+			} else {
+				return rsHelper.file(rs, fs);
+			}
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.VIRTUAL_DIR.getFileType()) {
+			return rsHelper.virtualDirectory(rs);
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS.getFileType() ||
+				type == TSK_DB_FILES_TYPE_ENUM.CARVED.getFileType()) {
+			TSK_DB_FILES_TYPE_ENUM atype = TSK_DB_FILES_TYPE_ENUM.valueOf(type);
+			String parentPath = rs.getString("parent_path");
+			if (parentPath == null) {
+				parentPath = "";
+			}
+			return new LayoutFile(this, rs.getLong("obj_id"),
+					rs.getString("name"),
+					atype,
+					TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), TSK_FS_META_TYPE_ENUM.ValueOf(rs.getShort("meta_type")),
+					TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), rs.getShort("meta_flags"),
+					rs.getLong("size"),
+					rs.getString("md5"), FileKnown.valueOf(rs.getByte("known")), parentPath);
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.DERIVED.getFileType()) {
+			return rsHelper.derivedFile(rs, parentId);
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.LOCAL.getFileType()) {
+			return rsHelper.localFile(rs, parentId);
+		}
+		return null;
+	}
+
 	/**
 	 * Creates FsContent objects from SQL query result set on tsk_files table
 	 *
@@ -4694,8 +5120,22 @@ public class SleuthkitCase {
 	 * Closes the database connection of this instance.
 	 */
 	private void closeConnection() {
-		SleuthkitCase.dbWriteLock();
+		writeLock();
+		//wait for readers, which do not take the read lock in WAL mode
+		openCloseLock.writeLock().lock();
 		try {
+			if (checkpointer != null) {
+				checkpointer.close();
+				checkpointer = null;
+			}
+			readConnections.close();
+			writeConnection.close();
+			contentCache.clear();
+			imageBlockCache.clear();
+			int stillOpen = handleManager.closeAll();
+			if (stillOpen > 0) {
+				logger.log(Level.WARNING, "{0} native handles still being read when closing the case", stillOpen);
+			}
 			if (con != null) {
 				con.close();
 				con = null;
@@ -4707,7 +5147,8 @@ public class SleuthkitCase {
 			logger.log(Level.WARNING,
 					"Error closing connection.", e);
 		} finally {
-			SleuthkitCase.dbWriteUnlock();
+			openCloseLock.writeLock().unlock();
+			writeUnlock();
 		}
 	}
 
@@ -4717,7 +5158,9 @@ public class SleuthkitCase {
 	public void close() {
 		System.err.println(this.hashCode() + " closed");
 		System.err.flush();
-		SleuthkitCase.dbWriteLock();
+		openCases.remove(this);
+		releaseMappedImages();
+		writeLock();
 		this.closeConnection();
 		try {
 			if (this.caseHandle != null) {
@@ -4731,7 +5174,7 @@ public class SleuthkitCase {
 			logger.log(Level.WARNING,
 					"Error freeing case handle.", ex);
 		} finally {
-			SleuthkitCase.dbWriteUnlock();
+			writeUnlock();
 		}
 	}
 
@@ -4746,8 +5189,23 @@ public class SleuthkitCase {
 	public void copyCaseDB(String newDBPath) throws IOException {
 		InputStream in = null;
 		OutputStream out = null;
-		SleuthkitCase.dbReadLock();
+		//in WAL mode only the write lock keeps the database file still, and
+		//commits in the WAL have to be copied into it first
+		final boolean wal = walMode;
+		if (wal) {
+			writeLock();
+		} else {
+			dbReadLock();
+		}
 		try {
+			try {
+				if (wal && !checkpoint()) {
+					//only reported by SQLite 3.7.6 and later
+					logger.log(Level.WARNING, "The WAL could not be checkpointed in full, the copy of the case database may miss its last commits");
+				}
+			} catch (TskCoreException ex) {
+				throw new IOException("Could not checkpoint the WAL before copying the case database", ex);
+			}
 			InputStream inFile = new FileInputStream(this.dbPath);
 			in = new BufferedInputStream(inFile);
 			OutputStream outFile = new FileOutputStream(newDBPath);
@@ -4770,10 +5228,50 @@ public class SleuthkitCase {
 			} catch (IOException e) {
 				logger.log(Level.WARNING, "Could not close streams after db copy", e);
 			}
-			SleuthkitCase.dbReadUnlock();
+			if (wal) {
+				writeUnlock();
+			} else {
+				dbReadUnlock();
+			}
+		}
+	}
+
+	/**
+	 * Copy everything in the WAL into the database file. Writers are blocked
+	 * and readers waited for meanwhile, so that no one holds part of the WAL;
+	 * the calling thread must not hold the read lock. Does nothing if the
+	 * case database is not in WAL mode.
+	 *
+	 * @return false if SQLite reports that the WAL could not be copied in
+	 * full, e.g. because another process is reading the database; SQLite
+	 * before 3.7.6 reports nothing, and true is returned
+	 * @throws TskCoreException thrown if the checkpoint failed
+	 */
+	public boolean checkpoint() throws TskCoreException {
+		if (!walMode) {
+			return true;
+		}
+		writeLock();
+		//wait for readers, which do not take the read lock in WAL mode
+		openCloseLock.writeLock().lock();
+		try {
+			return WalCheckpointer.checkpoint(con);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error checkpointing the case database", ex);
+		} finally {
+			openCloseLock.writeLock().unlock();
+			writeUnlock();
 		}
 	}
 
+	/**
+	 * @return true if the case database is in WAL mode. Readers do not wait
+	 * for writers if the case was also opened with a WAL profile.
+	 */
+	public boolean isWalMode() {
+		return walMode;
+	}
+
 	/**
 	 * Store the known status for the FsContent in the database Note: will not
 	 * update status if content is already 'Known Bad'
@@ -4790,7 +5288,7 @@ public class SleuthkitCase {
 		if (currentKnown.compareTo(fileKnown) > 0) {
 			return false;
 		}
-		SleuthkitCase.dbWriteLock();
+		writeLock();
 		try {
 			Statement s = con.createStatement();
 			s.executeUpdate("UPDATE tsk_files "
@@ -4799,10 +5297,11 @@ public class SleuthkitCase {
 			s.close();
 			//update the object itself
 			file.setKnown(fileKnown);
+			contentCache.invalidate(file);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error setting Known status.", ex);
 		} finally {
-			SleuthkitCase.dbWriteUnlock();
+			writeUnlock();
 		}
 		return true;
 	}
@@ -4817,17 +5316,62 @@ public class SleuthkitCase {
 	 */
 	void setMd5Hash(AbstractFile file, String md5Hash) throws TskCoreException {
 		long id = file.getId();
-		SleuthkitCase.dbWriteLock();
+		writeLock();
 		try {
 			updateMd5St.setString(1, md5Hash);
 			updateMd5St.setLong(2, id);
 			updateMd5St.executeUpdate();
 			//update the object itself
 			file.setMd5Hash(md5Hash);
+			contentCache.invalidate(file);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error setting MD5 hash.", ex);
 		} finally {
-			SleuthkitCase.dbWriteUnlock();
+			writeUnlock();
+		}
+	}
+
+	/**
+	 * Store the md5Hashes of a number of files in the database, in one
+	 * transaction
+	 *
+	 * @param	files	The file objects
+	 * @param	md5Hashes	The md5Hash of each file, in the same order
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 * core, no hash is stored then
+	 */
+	void setMd5Hashes(List<? extends AbstractFile> files, List<String> md5Hashes) throws TskCoreException {
+		if (files.isEmpty()) {
+			return;
+		}
+		writeLock();
+		try {
+			con.setAutoCommit(false);
+			try {
+				for (int i = 0; i < files.size(); i++) {
+					updateMd5St.setString(1, md5Hashes.get(i));
+					updateMd5St.setLong(2, files.get(i).getId());
+					updateMd5St.addBatch();
+				}
+				updateMd5St.executeBatch();
+				con.commit();
+			} catch (SQLException ex) {
+				updateMd5St.clearBatch();
+				con.rollback();
+				throw ex;
+			} finally {
+				con.setAutoCommit(true);
+			}
+			//update the objects themselves
+			for (int i = 0; i < files.size(); i++) {
+				AbstractFile file = files.get(i);
+				file.setMd5Hash(md5Hashes.get(i));
+				contentCache.invalidate(file);
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error setting MD5 hashes.", ex);
+		} finally {
+			writeUnlock();
 		}
 	}
 
@@ -4869,7 +5413,7 @@ public class SleuthkitCase {
 		Short contentShort = contentType.getValue();
 		dbReadLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM tsk_files WHERE meta_type = '" + contentShort.toString() + "'");
 			while (rs.next()) {
 				count = rs.getInt(1);
@@ -4892,7 +5436,7 @@ public class SleuthkitCase {
 	 * @param text
 	 * @return text the escaped version
 	 */
-	private static String escapeForBlackboard(String text) {
+	static String escapeForBlackboard(String text) {
 		if (text != null) {
 			text = text.replaceAll("'", "''");
 		}
@@ -4907,27 +5451,20 @@ public class SleuthkitCase {
 	 */
 	public List<AbstractFile> findFilesByMd5(String md5Hash) {
 		ResultSet rs = null;
-		Statement s = null;
 		dbReadLock();
 		try {
-			s = con.createStatement();
-			rs = s.executeQuery("SELECT * FROM tsk_files WHERE "
-				+ " md5 = '" + md5Hash + "' "
-					+ "AND size > 0");
+			PreparedStatement getFilesByMd5 = getReadConnection().prepareStatement(GET_FILES_BY_MD5);
+			getFilesByMd5.setString(1, md5Hash);
+			rs = getFilesByMd5.executeQuery();
 			return resultSetToAbstractFiles(rs);
-
-
 		} catch (SQLException ex) {
 			logger.log(Level.WARNING, "Error querying database.", ex);
 		} finally {
 			if (rs != null) {
 				try {
 					rs.close();
-					s.close();
-
-
 				} catch (SQLException ex) {
-					logger.log(Level.WARNING, "Unable to close ResultSet and Statement.", ex);
+					logger.log(Level.WARNING, "Unable to close ResultSet.", ex);
 				}
 			}
 			dbReadUnlock();
@@ -4943,20 +5480,15 @@ public class SleuthkitCase {
 	 */
 	public boolean allFilesMd5Hashed() {
 		ResultSet rs = null;
-		Statement s = null;
 		dbReadLock();
 		try {
-			s = con.createStatement();
-			rs = s.executeQuery("SELECT COUNT(*) FROM tsk_files "
-					+ "WHERE dir_type = '" + TSK_FS_NAME_TYPE_ENUM.REG.getValue() + "' "
-					+ "AND md5 IS NULL "
-					+ "AND size > '0'");
+			PreparedStatement countFilesNotMd5Hashed = getReadConnection().prepareStatement(COUNT_FILES_NOT_MD5_HASHED);
+			countFilesNotMd5Hashed.setShort(1, TSK_FS_NAME_TYPE_ENUM.REG.getValue());
+			rs = countFilesNotMd5Hashed.executeQuery();
 			rs.next();
 			int size = rs.getInt(1);
 			if (size == 0) {
 				return true;
-
-
 			}
 		} catch (SQLException ex) {
 			logger.log(Level.WARNING, "Failed to query for all the files.", ex);
@@ -4964,9 +5496,6 @@ public class SleuthkitCase {
 			if (rs != null) {
 				try {
 					rs.close();
-					s.close();
-
-
 				} catch (SQLException ex) {
 					logger.log(Level.WARNING, "Failed to close the result set.", ex);
 				}
@@ -4983,18 +5512,12 @@ public class SleuthkitCase {
 	 */
 	public int countFilesMd5Hashed() {
 		ResultSet rs = null;
-		Statement s = null;
 		int count = 0;
 		dbReadLock();
 		try {
-			s = con.createStatement();
-			rs = s.executeQuery("SELECT COUNT(*) FROM tsk_files "
-					+ "WHERE md5 IS NOT NULL "
-					+ "AND size > '0'");
+			rs = getReadConnection().prepareStatement(COUNT_FILES_MD5_HASHED).executeQuery();
 			rs.next();
 			count = rs.getInt(1);
-
-
 		} catch (SQLException ex) {
 			logger.log(Level.WARNING, "Failed to query for all the files.", ex);
 		} finally {
@@ -5005,13 +5528,6 @@ public class SleuthkitCase {
 					logger.log(Level.WARNING, "Failed to close the result set.", ex);
 				}
 			}
-			if (s != null) {
-				try {
-					s.close();
-				} catch (SQLException ex) {
-					logger.log(Level.WARNING, "Failed to close the statement.", ex);
-				}
-			}
 			dbReadUnlock();
 		}
 		return count;
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.GregorianCalendar;
@@ -40,6 +41,15 @@ import org.sleuthkit.datamodel.TskData.TSK_FS_ATTR_TYPE_ENUM;
 public class SleuthkitJNI {
 
 	private static final int MAX_DATABASES = 256;
+	private static final int READ_IMG = 0;
+	private static final int READ_VOL = 1;
+	private static final int READ_FS = 2;
+	private static final int READ_FILE = 3;
+	//largest per-thread array for copying reads into buffers; longer reads
+	//are copied a piece at a time
+	private static final int MAX_READ_ARRAY = 1024 * 1024;
+	//heap arrays for reads into buffers the native library cannot write to
+	private static final ThreadLocal<byte[]> readArrays = new ThreadLocal<byte[]>();
 
 	//Native methods
 	private static native String getVersionNat();
@@ -411,6 +421,28 @@ static {
 
 	}
 
+	/**
+	 * Open an image without the shared cache of image handles, for the
+	 * HandleManager, which closes it with closeImageHandle()
+	 *
+	 * @param imageFiles the paths to the images
+	 * @return the image info pointer
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	static long openImageHandle(String[] imageFiles) throws TskCoreException {
+		return openImgNat(imageFiles, imageFiles.length);
+	}
+
+	/**
+	 * Free an image info pointer from openImageHandle()
+	 *
+	 * @param imgHandle the image info pointer
+	 */
+	static void closeImageHandle(long imgHandle) {
+		closeImgNat(imgHandle);
+	}
+
 	/**
 	 * Get volume system Handle
 	 *
@@ -463,6 +495,29 @@ static {
 		return fsHandle;
 	}
 
+	/**
+	 * Open a file system without the shared cache of file system handles, for
+	 * the HandleManager, which closes it with closeFsHandle()
+	 *
+	 * @param imgHandle pointer to imgHandle in sleuthkit
+	 * @param fsOffset byte offset to the file system
+	 * @return pointer to a fsHandle structure in the sleuthkit
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	static long openFsHandle(long imgHandle, long fsOffset) throws TskCoreException {
+		return openFsNat(imgHandle, fsOffset);
+	}
+
+	/**
+	 * Free a file system pointer from openFsHandle()
+	 *
+	 * @param fsHandle pointer to file system structure in sleuthkit
+	 */
+	static void closeFsHandle(long fsHandle) {
+		closeFsNat(fsHandle);
+	}
+
 	/**
 	 * Get file Handle
 	 *
@@ -562,10 +617,129 @@ static {
 		return readFileNat(fileHandle, readBuffer, offset, len);
 	}
 
+	/**
+	 * reads data from an image into a buffer
+	 *
+	 * @param imgHandle
+	 * @param readBuffer buffer to read to, from its position up to its limit;
+	 * the position is moved past the data read
+	 * @param offset byte offset in the image to start at
+	 * @return the number of characters read, or -1 if the end of the stream has
+	 * been reached
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	public static int readImg(long imgHandle, ByteBuffer readBuffer, long offset) throws TskCoreException {
+		return read(READ_IMG, imgHandle, readBuffer, offset);
+	}
+
+	/**
+	 * reads data from an volume into a buffer
+	 *
+	 * @param volHandle pointer to a volume structure in the sleuthkit
+	 * @param readBuffer buffer to read to, from its position up to its limit;
+	 * the position is moved past the data read
+	 * @param offset byte offset in the volume to start at
+	 * @return the number of characters read, or -1 if the end of the stream has
+	 * been reached
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	public static int readVsPart(long volHandle, ByteBuffer readBuffer, long offset) throws TskCoreException {
+		return read(READ_VOL, volHandle, readBuffer, offset);
+	}
+
+	/**
+	 * reads data from an file system into a buffer
+	 *
+	 * @param fsHandle pointer to a file system structure in the sleuthkit
+	 * @param readBuffer buffer to read to, from its position up to its limit;
+	 * the position is moved past the data read
+	 * @param offset byte offset in the file system to start at
+	 * @return the number of characters read, or -1 if the end of the stream has
+	 * been reached
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	public static int readFs(long fsHandle, ByteBuffer readBuffer, long offset) throws TskCoreException {
+		return read(READ_FS, fsHandle, readBuffer, offset);
+	}
+
+	/**
+	 * reads data from an file into a buffer
+	 *
+	 * @param fileHandle pointer to a file structure in the sleuthkit
+	 * @param readBuffer buffer to read to, from its position up to its limit;
+	 * the position is moved past the data read
+	 * @param offset byte offset in the file to start at
+	 * @return the number of characters read, or -1 if the end of the stream has
+	 * been reached
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	public static int readFile(long fileHandle, ByteBuffer readBuffer, long offset) throws TskCoreException {
+		return read(READ_FILE, fileHandle, readBuffer, offset);
+	}
+
+	/**
+	 * Read into a buffer. The native library only reads into byte[], so a
+	 * heap buffer whose array starts at its position is read into like a
+	 * byte[], and anything else, direct buffers included, is read through a
+	 * reused per-thread array of at most MAX_READ_ARRAY bytes and copied.
+	 */
+	private static int read(int what, long handle, ByteBuffer readBuffer, long offset) throws TskCoreException {
+		int len = readBuffer.remaining();
+		if (len == 0) {
+			return 0;
+		}
+		int lenRead;
+		if (readBuffer.hasArray() && readBuffer.arrayOffset() + readBuffer.position() == 0) {
+			lenRead = readArray(what, handle, readBuffer.array(), offset, len);
+			if (lenRead > 0) {
+				readBuffer.position(lenRead);
+			}
+			return lenRead;
+		}
+		byte[] array = readArrays.get();
+		if (array == null || array.length < Math.min(len, MAX_READ_ARRAY)) {
+			array = new byte[Math.min(len, MAX_READ_ARRAY)];
+			readArrays.set(array);
+		}
+		int total = 0;
+		do {
+			int toRead = Math.min(len - total, array.length);
+			lenRead = readArray(what, handle, array, offset + total, toRead);
+			if (lenRead <= 0) {
+				return total > 0 ? total : lenRead;
+			}
+			readBuffer.put(array, 0, lenRead);
+			total += lenRead;
+			if (lenRead < toRead) {
+				break;
+			}
+		} while (total < len);
+		return total;
+	}
+
+	private static int readArray(int what, long handle, byte[] readBuffer, long offset, long len) throws TskCoreException {
+		switch (what) {
+			case READ_IMG:
+				return readImgNat(handle, readBuffer, offset, len);
+			case READ_VOL:
+				return readVolNat(handle, readBuffer, offset, len);
+			case READ_FS:
+				return readFsNat(handle, readBuffer, offset, len);
+			default:
+				return readFileNat(handle, readBuffer, offset, len);
+		}
+	}
+
 	//free pointers
 	/**
 	 * frees the imgHandle pointer currently does not close the image, until the
-	 * application terminates (image handle is cached)
+	 * application terminates (image handle is cached). Handles of the data
+	 * model's images are not from this cache; the case's HandleManager closes
+	 * them.
 	 *
 	 * @param imgHandle to close the image
 	 */
@@ -0,0 +1,154 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The case database queries that took longer than a threshold to execute,
+ * grouped by their SQL, with how often and how slowly they ran. Use it to
+ * find lookups that scan a table for want of an index; explain one with
+ * SleuthkitCase.explainQueryPlan().
+ *
+ * The time recorded is that of the execute call, which for a query is the
+ * time to the first row.
+ */
+public class SlowQueryLog {
+
+	public static final long DEFAULT_THRESHOLD_MILLIS = 50;
+	//queries with literals in their SQL are each a new entry, so stop somewhere
+	private static final int MAX_ENTRIES = 1000;
+	private static final Logger logger = Logger.getLogger(SlowQueryLog.class.getName());
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private volatile long thresholdNanos = DEFAULT_THRESHOLD_MILLIS * 1000000L;
+
+	/**
+	 * A query that was slow at least once.
+	 */
+	public static class Entry {
+
+		private final String sql;
+		private long count;
+		private long totalNanos;
+		private long maxNanos;
+
+		Entry(String sql) {
+			this.sql = sql;
+		}
+
+		synchronized void add(long nanos) {
+			count++;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public synchronized long getCount() {
+			return count;
+		}
+
+		public synchronized long getTotalMillis() {
+			return totalNanos / 1000000L;
+		}
+
+		public synchronized long getMaxMillis() {
+			return maxNanos / 1000000L;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return count + " x, " + getTotalMillis() + " ms total, " + getMaxMillis() + " ms max: " + sql;
+		}
+	}
+
+	/**
+	 * @param millis execution time from which a query is recorded
+	 */
+	public void setThresholdMillis(long millis) {
+		thresholdNanos = millis * 1000000L;
+	}
+
+	public long getThresholdMillis() {
+		return thresholdNanos / 1000000L;
+	}
+
+	/**
+	 * Record an execution, if it was slow.
+	 *
+	 * @param sql the SQL executed
+	 * @param nanos how long it took
+	 */
+	void record(String sql, long nanos) {
+		if (nanos < thresholdNanos || sql == null) {
+			return;
+		}
+		Entry entry = entries.get(sql);
+		if (entry == null) {
+			if (entries.size() >= MAX_ENTRIES) {
+				return;
+			}
+			Entry existing = entries.putIfAbsent(sql, entry = new Entry(sql));
+			if (existing != null) {
+				entry = existing;
+			} else {
+				logger.log(Level.INFO, "Slow case database query ({0} ms): {1}", new Object[]{nanos / 1000000L, sql});
+			}
+		}
+		entry.add(nanos);
+	}
+
+	/**
+	 * @return the slow queries, the most total time first
+	 */
+	public List<Entry> getSlowQueries() {
+		List<Entry> result = new ArrayList<Entry>(entries.values());
+		Collections.sort(result, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry a, Entry b) {
+				long ta = a.getTotalMillis();
+				long tb = b.getTotalMillis();
+				return ta < tb ? 1 : (ta == tb ? 0 : -1);
+			}
+		});
+		return result;
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Slow queries (over " + getThresholdMillis() + " ms):\n");
+		for (Entry entry : getSlowQueries()) {
+			sb.append("  ").append(entry).append('\n');
+		}
+		return sb.toString();
+	}
+}
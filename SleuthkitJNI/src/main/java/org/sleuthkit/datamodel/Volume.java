@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -33,7 +34,6 @@ public class Volume extends AbstractContent {
 	private long length; //in sectors
 	private long flags;
 	private String desc;
-	private volatile long volumeHandle = 0;
 
 	/**
 	 * Constructor to create the data object mapped from tsk_vs_parts entry
@@ -61,40 +61,83 @@ public class Volume extends AbstractContent {
 
 	@Override
 	public int read(byte[] buf, long offset, long len) throws TskCoreException {
-		synchronized (this) {
-			Content myParent = getParent();
-			if (!(myParent instanceof VolumeSystem)) {
-				throw new TskCoreException("This volume's parent should be a VolumeSystem, but it's not.");
-			}
-			VolumeSystem parentVs = (VolumeSystem) myParent;
-			// read from the volume
-			if (volumeHandle == 0) {
-				volumeHandle = SleuthkitJNI.openVsPart(parentVs.getVolumeSystemHandle(), addr);
-			}
-
+		if (getSleuthkitCase().getImageBlockCache().isCached(len)) {
+			//the volume's bytes are the image's from its start sector
+			VolumeSystem parentVs = getVolumeSystem();
+			len = Math.min(Math.min(len, buf.length), length * parentVs.getBlockSize() - offset);
+			return len > 0 ? getImage().read(buf, 0, getImageOffset(parentVs) + offset, (int) len) : 0;
+		}
+		NativeHandle handle = acquireNativeHandle();
+		try {
+			return SleuthkitJNI.readVsPart(handle.getPointer(), buf, offset, len);
+		} finally {
+			handle.release();
 		}
-		return SleuthkitJNI.readVsPart(volumeHandle, buf, offset, len);
 	}
 
 	@Override
-	public void close() {
-		if (volumeHandle != 0) {
-			synchronized(this) {
-				if (volumeHandle != 0) {
-					SleuthkitJNI.closeVs(volumeHandle);
-					volumeHandle = 0;
-				}
+	public int read(ByteBuffer buf, long offset) throws TskCoreException {
+		if (getSleuthkitCase().getImageBlockCache().isCached(buf.remaining())) {
+			VolumeSystem parentVs = getVolumeSystem();
+			int limit = buf.limit();
+			buf.limit(buf.position() + (int) Math.max(0, Math.min(buf.remaining(), length * parentVs.getBlockSize() - offset)));
+			try {
+				return getImage().read(buf, getImageOffset(parentVs) + offset);
+			} finally {
+				buf.limit(limit);
 			}
 		}
-	}
-	
-	@Override
-	public void finalize() throws Throwable {
+		NativeHandle handle = acquireNativeHandle();
 		try {
-			close();
+			return SleuthkitJNI.readVsPart(handle.getPointer(), buf, offset);
 		} finally {
-			super.finalize();
+			handle.release();
+		}
+	}
+
+	private long getImageOffset(VolumeSystem parentVs) {
+		return parentVs.getOffset() + start * parentVs.getBlockSize();
+	}
+
+	private VolumeSystem getVolumeSystem() throws TskCoreException {
+		Content myParent = getParent();
+		if (!(myParent instanceof VolumeSystem)) {
+			throw new TskCoreException("This volume's parent should be a VolumeSystem, but it's not.");
 		}
+		return (VolumeSystem) myParent;
+	}
+
+	/**
+	 * The volume's handle is a partition of its volume system's, which frees
+	 * it, so closing it only releases the volume system
+	 */
+	@Override
+	NativeHandle newNativeHandle() {
+		return new NativeHandle(getSleuthkitCase().getHandleManager(), getId(), HandleManager.Kind.VOLUME) {
+			@Override
+			protected NativeHandle acquireParent() throws TskCoreException {
+				return getVolumeSystem().acquireNativeHandle();
+			}
+
+			@Override
+			protected long open(long parentPointer) throws TskCoreException {
+				return SleuthkitJNI.openVsPart(parentPointer, addr);
+			}
+
+			@Override
+			protected void close(long pointer) {
+				//freed with the volume system
+			}
+		};
+	}
+
+	/**
+	 * Release the volume's native handle if no read holds it. It is reopened
+	 * if read again.
+	 */
+	@Override
+	public void close() {
+		getSleuthkitCase().getHandleManager().close(getId());
 	}
 	
 	
@@ -106,7 +149,7 @@ public class Volume extends AbstractContent {
 	}
 
 	@Override
-	public synchronized String getUniquePath() throws TskCoreException {
+	public String getUniquePath() throws TskCoreException {
 		String uniquePath = "";
 		String name = getName();
 		if (!name.isEmpty()) {
@@ -115,7 +158,7 @@ public class Volume extends AbstractContent {
 
 		Content myParent = getParent();
 		if (myParent != null) {
-			uniquePath = myParent.getUniquePath() + uniquePath;
+			uniquePath = getSleuthkitCase().cacheUniquePath(myParent) + uniquePath;
 		}
 		return uniquePath;
 	}
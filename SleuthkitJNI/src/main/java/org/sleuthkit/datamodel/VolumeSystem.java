@@ -26,7 +26,6 @@ import java.util.List;
  */
 public class VolumeSystem extends AbstractContent {
 
-	private volatile long volumeSystemHandle = 0;
 	private long type, imgOffset, blockSize;
 
 	/**
@@ -48,12 +47,12 @@ public class VolumeSystem extends AbstractContent {
 
 	@Override
 	public int read(byte[] readBuffer, long offset, long len) throws TskCoreException {
-		synchronized (this) {
-			if (volumeSystemHandle == 0) {
-				volumeSystemHandle = SleuthkitJNI.openVs(getImage().getImageHandle(), imgOffset);
-			}
+		NativeHandle handle = acquireNativeHandle();
+		try {
+			return SleuthkitJNI.readVs(handle.getPointer(), readBuffer, offset, len);
+		} finally {
+			handle.release();
 		}
-		return SleuthkitJNI.readVs(volumeSystemHandle, readBuffer, offset, len);
 	}
 
 	@Override
@@ -88,40 +87,33 @@ public class VolumeSystem extends AbstractContent {
 		return blockSize;
 	}
 
-	/**
-	 * get the volume system Handle pointer Open a new handle if needed,
-	 * otherwise resuse the existing handle.
-	 *
-	 * @return volume system Handle pointer
-	 * @throws org.sleuthkit.datamodel.TskException
-	 */
-	protected synchronized long getVolumeSystemHandle() throws TskCoreException {
-		if (volumeSystemHandle == 0) {
-			volumeSystemHandle = SleuthkitJNI.openVs(getImage().getImageHandle(), imgOffset);
-		}
+	@Override
+	NativeHandle newNativeHandle() {
+		return new NativeHandle(getSleuthkitCase().getHandleManager(), getId(), HandleManager.Kind.VOLUME_SYSTEM) {
+			@Override
+			protected NativeHandle acquireParent() throws TskCoreException {
+				return getImage().acquireNativeHandle();
+			}
 
-		return volumeSystemHandle;
-	}
+			@Override
+			protected long open(long parentPointer) throws TskCoreException {
+				return SleuthkitJNI.openVs(parentPointer, imgOffset);
+			}
 
-	@Override
-	public void close() {
-		if (volumeSystemHandle != 0) {
-			synchronized (this) {
-				if (volumeSystemHandle != 0) {
-					SleuthkitJNI.closeVs(volumeSystemHandle);
-					volumeSystemHandle = 0;
-				}
+			@Override
+			protected void close(long pointer) {
+				SleuthkitJNI.closeVs(pointer);
 			}
-		}
+		};
 	}
 
+	/**
+	 * Close the volume system's native handle, and those of its volumes, if
+	 * no read holds them. They are reopened if read again.
+	 */
 	@Override
-	public void finalize() throws Throwable {
-		try {
-			close();
-		} finally {
-			super.finalize();
-		}
+	public void close() {
+		getSleuthkitCase().getHandleManager().close(getId());
 	}
 
 	@Override
@@ -0,0 +1,111 @@
+package org.sleuthkit.datamodel;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checkpoints the WAL of a case database on a timer, on a connection of its
+ * own so it needs no case lock. Background checkpoints are passive: they copy
+ * what they can without waiting for readers or writers, so the WAL is kept
+ * short without any commit having to pay for the checkpoint.
+ *
+ * The bundled SQLite (3.7.2) predates checkpoint modes and results (3.7.6):
+ * it ignores a mode and returns no row. So checkpoints are plain
+ * "PRAGMA wal_checkpoint", which is passive, and their result is used only
+ * where SQLite gives one.
+ */
+class WalCheckpointer {
+
+	private static final Logger logger = Logger.getLogger(WalCheckpointer.class.getName());
+	private final Connection connection;
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * @param dbPath path to the case database, which must be in WAL mode
+	 * @param interval milliseconds between checkpoints
+	 * @throws SQLException if the connection could not be opened
+	 */
+	WalCheckpointer(String dbPath, long interval) throws SQLException {
+		connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+		timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "case-db-checkpoint");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		timer.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					checkpoint();
+				} catch (SQLException ex) {
+					logger.log(Level.WARNING, "Background WAL checkpoint failed", ex);
+				}
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Run a passive checkpoint now.
+	 *
+	 * @return false if SQLite reports that the WAL could not be copied in
+	 * full, true otherwise
+	 * @throws SQLException
+	 */
+	synchronized boolean checkpoint() throws SQLException {
+		return checkpoint(connection);
+	}
+
+	/**
+	 * Run a plain, passive checkpoint on a connection. It copies the whole
+	 * WAL unless a reader or writer is using part of it.
+	 *
+	 * @return false if SQLite reports that the WAL could not be copied in
+	 * full; true otherwise, including from SQLite before 3.7.6, which
+	 * reports nothing
+	 * @throws SQLException
+	 */
+	static boolean checkpoint(Connection connection) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			if (!statement.execute("PRAGMA wal_checkpoint;")) {
+				return true;
+			}
+			ResultSet rs = statement.getResultSet();
+			try {
+				if (!rs.next() || rs.getMetaData().getColumnCount() < 3) {
+					return true;
+				}
+				//busy flag, frames in the WAL, frames checkpointed
+				return rs.getInt(1) == 0 && rs.getInt(2) == rs.getInt(3);
+			} finally {
+				rs.close();
+			}
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Stop the timer and close the connection.
+	 */
+	synchronized void close() {
+		timer.shutdownNow();
+		try {
+			connection.close();
+		} catch (SQLException ex) {
+			logger.log(Level.WARNING, "Error closing checkpoint connection", ex);
+		}
+	}
+}
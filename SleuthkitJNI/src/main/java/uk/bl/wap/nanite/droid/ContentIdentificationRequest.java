@@ -0,0 +1,136 @@
+/**
+ *
+ */
+package uk.bl.wap.nanite.droid;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.domesdaybook.reader.ByteReader;
+
+import org.apache.log4j.Logger;
+import org.sleuthkit.datamodel.Content;
+import org.sleuthkit.datamodel.ReadContentInputStream;
+import org.sleuthkit.datamodel.TskCoreException;
+
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+
+/**
+ * An identification request that reads straight from a Sleuth Kit Content object.
+ *
+ * Content already supports random access, so rather than streaming the whole resource
+ * this reads only the blocks that the signatures touch, keeping the most recently used
+ * few in memory. Identifying a large video reads a handful of blocks from each end.
+ *
+ */
+public class ContentIdentificationRequest extends ByteArrayIdentificationRequest implements ByteReader {
+
+	private static Logger log = Logger.getLogger(ContentIdentificationRequest.class.getName());
+
+	private static final int BLOCK_SIZE = 4*1024;
+	private static final int MAX_BLOCKS = 16;
+
+	private final Content content;
+	private final long length;
+	private final Map<Long, byte[]> blocks = new LinkedHashMap<Long, byte[]>(MAX_BLOCKS, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+			return size() > MAX_BLOCKS;
+		}
+	};
+	private long lastBlockStart = -1;
+	private byte[] lastBlock;
+
+	public ContentIdentificationRequest(RequestMetaData metaData,
+			RequestIdentifier identifier, Content content) {
+		this.metaData = metaData;
+		this.identifier = identifier;
+		this.content = content;
+		this.length = content.getSize();
+		this.size = (int) Math.min(length, Integer.MAX_VALUE);
+	}
+
+	/* (non-Javadoc)
+	 * @see net.domesdaybook.reader.ByteReader#readByte(long)
+	 */
+	@Override
+	public byte readByte(long position) {
+		if( position < 0 || position >= length ) {
+			return 0;
+		}
+		long blockStart = position - position % BLOCK_SIZE;
+		if( blockStart != lastBlockStart ) {
+			byte[] block = blocks.get(blockStart);
+			if( block == null ) {
+				block = readBlock(blockStart);
+				blocks.put(blockStart, block);
+			}
+			lastBlockStart = blockStart;
+			lastBlock = block;
+		}
+		int index = (int) (position - blockStart);
+		return index < lastBlock.length ? lastBlock[index] : 0;
+	}
+
+	private byte[] readBlock(long blockStart) {
+		byte[] block = new byte[(int) Math.min(BLOCK_SIZE, length - blockStart)];
+		try {
+			int read = content.read(block, blockStart, block.length);
+			if( read < block.length ) {
+				byte[] shorter = new byte[Math.max(read, 0)];
+				System.arraycopy(block, 0, shorter, 0, shorter.length);
+				block = shorter;
+			}
+		} catch (TskCoreException e) {
+			log.warn("Could not read " + content.getName() + " at offset " + blockStart + ": " + e);
+			block = new byte[0];
+		}
+		return block;
+	}
+
+	/* (non-Javadoc)
+	 * @see uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest#getByte(long)
+	 */
+	@Override
+	public byte getByte(long position) {
+		return readByte(position);
+	}
+
+	/* (non-Javadoc)
+	 * @see uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest#getReader()
+	 */
+	@Override
+	public ByteReader getReader() {
+		return this;
+	}
+
+	/* (non-Javadoc)
+	 * @see uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest#size()
+	 */
+	@Override
+	public long size() {
+		return length;
+	}
+
+	/* (non-Javadoc)
+	 * @see uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		blocks.clear();
+		lastBlockStart = -1;
+		lastBlock = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest#getSourceInputStream()
+	 */
+	@Override
+	public InputStream getSourceInputStream() throws IOException {
+		return new ReadContentInputStream(content);
+	}
+
+}
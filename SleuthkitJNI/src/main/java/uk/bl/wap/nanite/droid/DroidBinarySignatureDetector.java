@@ -12,6 +12,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -25,6 +26,7 @@ import org.apache.log4j.PropertyConfigurator;
 import org.apache.tika.detect.Detector;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
+import org.sleuthkit.datamodel.Content;
 
 import uk.gov.nationalarchives.droid.core.BinarySignatureIdentifier;
 import uk.gov.nationalarchives.droid.core.SignatureParseException;
@@ -100,6 +102,9 @@ public class DroidBinarySignatureDetector extends Object implements Detector {
 
 	
 	private BinarySignatureIdentifier bsi;
+	// Shares the signatures of bsi, with the scan limited to what the windows hold:
+	private BinarySignatureIdentifier windowedBsi;
+	private SignatureWindow window;
 	//private SignatureManager sm;
 	//private ClassPathXmlApplicationContext context;
 	//private SubmissionGateway sg;
@@ -110,10 +115,14 @@ public class DroidBinarySignatureDetector extends Object implements Detector {
 	public MediaType detect(InputStream input, Metadata metadata)
 			throws IOException {
 		String uri = metadata.get(Metadata.RESOURCE_NAME_KEY);
-		IdentificationRequest ir = createInputStreamIdentificationRequest(URI.create(uri), input );		
-
-		IdentificationResultCollection resultCollection = this.identify(ir);
-		return getMimeTypeFromResults(resultCollection.getResults());
+		InputStreamIdentificationRequest ir = createInputStreamIdentificationRequest(URI.create(uri), input, getScanWindow() );		
+		try {
+			// A stream cannot go back to bytes between the windows, so search no further than they hold:
+			IdentificationResultCollection resultCollection = identify(windowedBsi, ir);
+			return getMimeTypeFromResults(resultCollection.getResults());
+		} finally {
+			ir.release();
+		}
 	}
 
 	/**
@@ -233,7 +242,6 @@ public class DroidBinarySignatureDetector extends Object implements Detector {
 */
 		
 		// Now set up the Binary Signature Identifier with the right signature from the manager:
-		bsi = new BinarySignatureIdentifier();
 
 		/*
 		// This downloads the latest version:
@@ -249,24 +257,28 @@ public class DroidBinarySignatureDetector extends Object implements Detector {
         //	System.out.println("Key:"+item+" "+sm.getAvailableSignatureFiles().get(SignatureType.BINARY).get(item).getVersion());
         //}
 
-		// This uses the cached default sig. file as specified by the GlobalConfig class:
-		bsi.setSignatureFile(sm.getDefaultSignatures().get(SignatureType.BINARY).getFile().getAbsolutePath());
+		// This uses the cached default sig. file as specified by the GlobalConfig class,
+		// precompiled so the XML is only parsed the first time this version is seen:
+		String sigFile = sm.getDefaultSignatures().get(SignatureType.BINARY).getFile().getAbsolutePath();
+		SignatureCache.Signatures signatures = SignatureCache.load(sigFile, getBinarySigFileVersion(), SignatureCache.getDefaultCacheDir());
+		bsi = signatures.getIdentifier();
+		
+		// Windowed identification needs only as much of each end as the signatures can reach:
+		window = signatures.getWindow();
+		windowedBsi = SignatureCache.share(bsi, sigFile);
+		windowedBsi.setMaxBytesToScan(window.getScanLimit());
 		
         // This uses a local file instead, but requires a path to a local file.
 	    //bsi.setSignatureFile("C:/Users/AnJackson/workspace/nanite/nanite-droid/src/main/resources/DROID_SignatureFile_V55 - no EOF.xml");
 	    //bsi.setSignatureFile("C:/Users/AnJackson/workspace/nanite/nanite-droid/src/main/resources/DROID_SignatureFile_V55.xml");
 
-		// The sig. files is specified, so initialise the binary sig matcher:
-		bsi.init();		
 	}
 
 	/**
 	 * @return The version of the binary signature file that is in use.
 	 */
 	public int getBinarySigFileVersion() {
-		String version = DroidDetector.DROID_SIGNATURE_FILE.replace("DROID_SignatureFile_V", "");
-		version = version.replace(".xml", "");
-		return Integer.parseInt(version);
+		return SignatureCache.getVersion(DroidDetector.DROID_SIGNATURE_FILE);
 	}
 
 	/**
@@ -275,10 +287,7 @@ public class DroidBinarySignatureDetector extends Object implements Detector {
 	 * @return
 	 */
 	private IdentificationResultCollection identify(IdentificationRequest ir) {
-		IdentificationResultCollection results = bsi.matchBinarySignatures(ir);
-		// Strip out lower priority results
-		bsi.removeLowerPriorityHits(results);
-		return results;
+		return identify(bsi, ir);
 		/*
 		Future<IdentificationResultCollection> task = sg.submit(ir);
 		while( ! task.isDone() ) {
@@ -302,6 +311,19 @@ public class DroidBinarySignatureDetector extends Object implements Detector {
 		*/
 	}
 
+	/**
+	 * 
+	 * @param identifier
+	 * @param ir
+	 * @return
+	 */
+	private static IdentificationResultCollection identify(BinarySignatureIdentifier identifier, IdentificationRequest ir) {
+		IdentificationResultCollection results = identifier.matchBinarySignatures(ir);
+		// Strip out lower priority results
+		identifier.removeLowerPriorityHits(results);
+		return results;
+	}
+
 	/**
 	 * 
 	 * @param payload
@@ -365,10 +387,11 @@ public class DroidBinarySignatureDetector extends Object implements Detector {
 	 * 
 	 * @param uri
 	 * @param in
+	 * @param windowSize
 	 * @return
 	 * @throws IOException
 	 */
-	private static IdentificationRequest createInputStreamIdentificationRequest( URI uri, InputStream in ) throws IOException {
+	private static InputStreamIdentificationRequest createInputStreamIdentificationRequest( URI uri, InputStream in, int windowSize ) throws IOException {
         RequestMetaData metaData = new RequestMetaData( (long)in.available(), null, uri.toString() );
         
         RequestIdentifier identifier = new RequestIdentifier(uri);
@@ -376,12 +399,61 @@ public class DroidBinarySignatureDetector extends Object implements Detector {
         //identifier.setParentResourceId(parentId);
         //identifier.setResourceId(nodeId);
         
-        IdentificationRequest ir = new InputStreamIdentificationRequest(metaData, identifier, in);
+        InputStreamIdentificationRequest ir = new InputStreamIdentificationRequest(metaData, identifier, in, windowSize);
         // Attach the byte arrays of content:
         //ir.open(in);
 		return ir;
 	}
 	
+	/**
+	 * 
+	 * @param uri
+	 * @param source
+	 * @param windowSize
+	 * @return
+	 * @throws IOException
+	 */
+	private static InputStreamIdentificationRequest createSeekableIdentificationRequest( URI uri, SeekableSource source, int windowSize ) throws IOException {
+        RequestMetaData metaData = new RequestMetaData( source.length(), null, uri.toString() );
+        
+        RequestIdentifier identifier = new RequestIdentifier(uri);
+		identifier.setParentId(1L);
+        
+		return new InputStreamIdentificationRequest(metaData, identifier, source, windowSize);
+	}
+	
+	/**
+	 * 
+	 * @param uri
+	 * @param head
+	 * @param tail
+	 * @param length
+	 * @return
+	 */
+	private static IdentificationRequest createWindowedIdentificationRequest( URI uri, byte[] head, byte[] tail, long length ) {
+        RequestMetaData metaData = new RequestMetaData( length, null, uri.toString() );
+        
+        RequestIdentifier identifier = new RequestIdentifier(uri);
+		identifier.setParentId(1L);
+        
+		return new WindowedIdentificationRequest(metaData, identifier, head, tail, length);
+	}
+	
+	/**
+	 * 
+	 * @param uri
+	 * @param content
+	 * @return
+	 */
+	private static IdentificationRequest createContentIdentificationRequest( URI uri, Content content ) {
+        RequestMetaData metaData = new RequestMetaData( content.getSize(), null, uri.toString() );
+        
+        RequestIdentifier identifier = new RequestIdentifier(uri);
+		identifier.setParentId(1L);
+        
+		return new ContentIdentificationRequest(metaData, identifier, content);
+	}
+	
 	/**
 	 * TODO Choose 'vnd' Vendor-style MIME types over other options when there are many in each Result.
 	 * TODO This does not cope ideally with multiple/degenerate Results. 
@@ -454,9 +526,12 @@ public class DroidBinarySignatureDetector extends Object implements Detector {
 		
 		//byte[] data =  org.apache.commons.io.FileUtils.readFileToByteArray(file);
 		//IdentificationRequest ir = createByteArrayIdentificationRequest(file.toURI(), data);		
-		Metadata metadata = new Metadata();
-		metadata.set(Metadata.RESOURCE_NAME_KEY, file.toURI().toString());
-		return this.detect(new FileInputStream(file), metadata).toString();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return getMimeType(SeekableSource.of(raf), file.getPath());
+		} finally {
+			raf.close();
+		}
 	}
 
     public String getMimeType(InputStream is, String localPath) throws FileNotFoundException, IOException, ConfigurationException, SignatureFileException {
@@ -465,6 +540,87 @@ public class DroidBinarySignatureDetector extends Object implements Detector {
         return this.detect(is, metadata).toString();
     }
 
+    /**
+     * Identify a resource that can be read at any position, reading the windows at each end
+     * and only the blocks in between that the signatures touch.
+     * 
+     * @param source
+     * @param localPath
+     * @return
+     */
+    public String getMimeType(SeekableSource source, String localPath) throws IOException {
+        InputStreamIdentificationRequest ir = createSeekableIdentificationRequest(new File(localPath).toURI(), source, getScanWindow());
+        try {
+            return getMimeTypeFromResults(this.identify(ir).getResults()).toString();
+        } finally {
+            ir.release();
+        }
+    }
+
+    /**
+     * Identify a Sleuth Kit content object, reading only the parts of it that the signatures need.
+     * 
+     * As with identification from windows, signatures are searched for no further from either
+     * end than the signature file needs, so a large file that matches nothing is not read through.
+     * 
+     * @param content
+     * @param localPath
+     * @return
+     */
+    public String getMimeType(Content content, String localPath) throws IOException {
+        IdentificationRequest ir = createContentIdentificationRequest(new File(localPath).toURI(), content);
+        try {
+            return getMimeTypeFromResults(identify(windowedBsi, ir).getResults()).toString();
+        } finally {
+            ir.close();
+        }
+    }
+
+    /**
+     * Identify a resource from its first and last bytes only.
+     * 
+     * Signatures are searched for no further from either end than the signature file needs,
+     * so the windows must hold getScanWindow() bytes each, or the whole resource. Identification
+     * of files and seekable sources on this detector is not limited; that of streams and
+     * content objects is, in the same way.
+     * 
+     * @throws IllegalArgumentException if the windows are too small
+     * 
+     * @param head the first bytes of the resource
+     * @param tail the last bytes of the resource
+     * @param length the full length of the resource
+     * @param localPath
+     * @return
+     */
+    public String getMimeType(byte[] head, byte[] tail, long length, String localPath) {
+        long needed = Math.min(length, getScanWindow());
+        if( head.length < needed || tail.length < needed ) {
+            throw new IllegalArgumentException("Windows of " + head.length + " and " + tail.length
+                    + " bytes are too small to identify " + localPath + ": " + needed + " bytes are needed from each end");
+        }
+        IdentificationRequest ir = createWindowedIdentificationRequest(new File(localPath).toURI(), head, tail, length);
+        return getMimeTypeFromResults(identify(windowedBsi, ir).getResults()).toString();
+    }
+
+    /**
+     * @return the number of bytes from each end of a resource that identification from
+     * windows needs, worked out from the signature file
+     */
+    public int getScanWindow() {
+        return window.getWindowSize();
+    }
+
+    /**
+     * Limit how far into a resource variable-offset signatures are searched for.
+     * 
+     * Set this before sharing the detector; it is not safe to change while other threads are identifying.
+     * 
+     * @param maxBytesToScan the number of bytes to scan, or -1 for no limit
+     */
+    public void setMaxBytesToScan(long maxBytesToScan) {
+        bsi.setMaxBytesToScan(maxBytesToScan);
+    }
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#finalize()
 	 */
@@ -51,7 +51,7 @@ public class DroidDetector implements Detector {
 
 	private static Logger log = Logger.getLogger(DroidDetector.class.getName());
 
-    static final String DROID_SIGNATURE_FILE = "DROID_SignatureFile_V66.xml";
+    public static final String DROID_SIGNATURE_FILE = "DROID_SignatureFile_V66.xml";
     static final String DROID_SIG_RESOURCE = "droid/"+DROID_SIGNATURE_FILE;
     
 	static final String DROID_SIG_FILE = "src/main/resources/droid/DROID_SignatureFile_V66.xml";
@@ -59,11 +59,15 @@ public class DroidDetector implements Detector {
 
 	// Set up DROID binary handler:
 	private BinarySignatureIdentifier binarySignatureIdentifier;
+	// Shares the signatures, with the scan limited to what a stream's windows hold:
+	private BinarySignatureIdentifier windowedIdentifier;
 	private ContainerSignatureDefinitions containerSignatureDefinitions;
 	
     private static final String FORWARD_SLASH = "/";
     private static final String BACKWARD_SLASH = "\\";
     private int maxBytesToScan = -1;
+    // Bytes to keep from each end of a stream, as the signature file needs:
+    private int scanWindow;
     boolean archives = false;
 
 	private uk.gov.nationalarchives.droid.core.CustomResultPrinter resultPrinter;
@@ -75,19 +79,25 @@ public class DroidDetector implements Detector {
 
 	public DroidDetector() throws CommandExecutionException {
 		
-        binarySignatureIdentifier = new BinarySignatureIdentifier();
         File fileSignaturesFile = new File(DROID_SIG_FILE);
         if (!fileSignaturesFile.exists()) {
             throw new CommandExecutionException("Signature file not found");
         }
 
-        binarySignatureIdentifier.setSignatureFile(DROID_SIG_FILE);
+        SignatureCache.Signatures signatures;
         try {
-            binarySignatureIdentifier.init();
+            signatures = SignatureCache.load(DROID_SIG_FILE,
+                    SignatureCache.getVersion(DROID_SIGNATURE_FILE), SignatureCache.getDefaultCacheDir());
         } catch (SignatureParseException e) {
             throw new CommandExecutionException("Can't parse signature file");
+        } catch (IOException e) {
+            throw new CommandExecutionException(e);
         }
+        binarySignatureIdentifier = signatures.getIdentifier();
         binarySignatureIdentifier.setMaxBytesToScan(maxBytesToScan);
+        scanWindow = signatures.getWindow().getWindowSize();
+        windowedIdentifier = SignatureCache.share(binarySignatureIdentifier, DROID_SIG_FILE);
+        windowedIdentifier.setMaxBytesToScan(signatures.getWindow().getScanLimit());
         String path = fileSignaturesFile.getAbsolutePath();
         String slash = path.contains(FORWARD_SLASH) ? FORWARD_SLASH : BACKWARD_SLASH;
         String slash1 = slash;
@@ -243,11 +253,12 @@ public class DroidDetector implements Detector {
 			RequestIdentifier identifier = new RequestIdentifier(URI.create("file:///dummy"));
 			identifier.setParentId(1L);
 
-			IdentificationRequest request = new InputStreamIdentificationRequest(metaData, identifier, input);
+			InputStreamIdentificationRequest request = new InputStreamIdentificationRequest(metaData, identifier, input, scanWindow);
 			try {
 				request.open(input);
+				// The stream cannot go back to bytes between the windows, so search no further than they hold:
 				IdentificationResultCollection results =
-						binarySignatureIdentifier.matchBinarySignatures(request);
+						windowedIdentifier.matchBinarySignatures(request);
 
 				// Also get container results:
 				resultPrinter.print(results, request);
@@ -257,6 +268,8 @@ public class DroidDetector implements Detector {
 
 			} catch (IOException e) {
 				throw new CommandExecutionException(e);
+			} finally {
+				request.release();
 			}
 		} catch (CommandExecutionException e) {
 			// TODO Auto-generated catch block
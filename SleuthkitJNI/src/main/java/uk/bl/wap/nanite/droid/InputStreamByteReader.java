@@ -1,51 +1,247 @@
 /**
- * 
+ *
  */
 package uk.bl.wap.nanite.droid;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import net.domesdaybook.reader.ByteReader;
 
+import org.apache.log4j.Logger;
+
 /**
- * A ByteReader wrapped around an InputStream, using a large buffer to simulate random access.
- * 
+ * A ByteReader wrapped around an InputStream, serving the windows that DROID signatures
+ * look at rather than buffering the whole stream.
+ *
+ * The first and last windowSize bytes are each held in a buffer taken from a shared pool,
+ * and anything in between is served one small block at a time. The window size should be
+ * the one the signature file needs (see SignatureWindow), so that bounded signatures are
+ * matched from the windows alone.
+ *
+ * Given a SeekableSource, the EOF window and the blocks are read where they are, so any
+ * position can be read in any order. A plain stream can only move forwards: the BOF window
+ * is always read in full before skipping on, but a position behind the stream that is in
+ * neither window cannot be read again and is returned as 0, with one warning per reader.
+ * Identify streams with a scan limit that keeps to the windows (see
+ * SignatureWindow.getScanLimit()) so that this never happens.
+ *
+ * Peak memory is two windows and one block, whatever the size of the stream.
+ *
  * @author Andrew Jackson <Andrew.Jackson@bl.uk>
  *
  */
 public class InputStreamByteReader implements ByteReader {
-	
-	private BufferedInputStream in;
-	private long nextpos = 0;
-	private static int BUFFER_SIZE = 10*1024*1024; //Integer.MAX_VALUE;
 
-	public InputStreamByteReader( InputStream in ) {
-		// Set up a large buffer for the input stream, allowing random access:
-		this.in = new BufferedInputStream(in, BUFFER_SIZE);
-		this.nextpos = 0;
-		// The 'reset' logic will fail if the buffer is not big enough.
-		this.in.mark(BUFFER_SIZE);
+	private static Logger log = Logger.getLogger(InputStreamByteReader.class.getName());
+
+	private static final int BLOCK_SIZE = 4*1024;
+	private static final int MAX_POOLED = 64;
+	private static final ConcurrentLinkedQueue<byte[]> pool = new ConcurrentLinkedQueue<byte[]>();
+
+	private final InputStream in;
+	private final SeekableSource source;
+	private final long length;
+	private final int windowSize;
+	private long streamPos = 0;
+	// A failed read is logged once, not for every byte after it:
+	private boolean warned = false;
+
+	private byte[] head;
+	private int headLen = 0;
+	private byte[] tail;
+	private long tailStart = -1;
+	private int tailLen = 0;
+	private byte[] block;
+	private long blockStart = -1;
+	private int blockLen = 0;
+
+	/**
+	 * @param in a stream, read forwards only
+	 * @param length the length of the stream
+	 * @param windowSize the number of bytes at each end of the stream to keep in memory
+	 */
+	public InputStreamByteReader( InputStream in, long length, int windowSize ) {
+		this.in = in;
+		this.source = null;
+		this.length = length;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * @param source a resource that can be read at any position
+	 * @param windowSize the number of bytes at each end of the resource to keep in memory
+	 * @throws IOException if the length of the resource cannot be read
+	 */
+	public InputStreamByteReader( SeekableSource source, int windowSize ) throws IOException {
+		this.in = null;
+		this.source = source;
+		this.length = source.length();
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * @return the length of the stream
+	 */
+	public long length() {
+		return length;
 	}
 
 	@Override
 	public byte readByte(long position) {
-		//System.out.println("Reading "+position);
+		if( position < 0 || position >= length ) {
+			return 0;
+		}
 		try {
-			// If skipping back, skip back.
-			if( position < this.nextpos ) {
-				in.reset();
-				in.skip(position);
-			} else if( position > this.nextpos ) {
-				in.skip( position - this.nextpos );
-			}
-			this.nextpos = position+1;
-			return (byte)in.read();
+			if( position < windowSize ) {
+				fillHead(position);
+				return position < headLen ? head[(int) position] : 0;
+			}
+			if( position >= length - windowSize ) {
+				fillTail();
+				return position - tailStart < tailLen ? tail[(int) (position - tailStart)] : 0;
+			}
+			if( position < blockStart || position >= blockStart + blockLen ) {
+				fillBlock(position);
+			}
+			if( position >= blockStart && position < blockStart + blockLen ) {
+				return block[(int) (position - blockStart)];
+			}
 		} catch (IOException e) {
-			e.printStackTrace();
+			warnOnce("Could not read byte " + position + ": " + e);
 		}
 		return 0;
 	}
 
+	/**
+	 * Return the window buffers to the pool. The reader must not be used afterwards.
+	 */
+	public void release() {
+		giveBack(head);
+		giveBack(tail);
+		head = null;
+		tail = null;
+		block = null;
+	}
+
+	private void fillHead( long position ) throws IOException {
+		if( head == null ) {
+			head = take();
+		}
+		int want = (int) Math.min(Math.min(length, windowSize), Math.max(position + 1, headLen + BLOCK_SIZE));
+		if( want <= headLen ) {
+			return;
+		}
+		headLen += readAt(headLen, head, headLen, want - headLen);
+	}
+
+	private void fillTail() throws IOException {
+		if( tail != null ) {
+			return;
+		}
+		tail = take();
+		tailStart = Math.max(0, length - windowSize);
+		// A forward-only stream must keep the BOF window before skipping past it:
+		if( source == null ) {
+			fillHead(windowSize - 1);
+		}
+		tailLen = readAt(tailStart, tail, 0, (int) (length - tailStart));
+	}
+
+	private void fillBlock( long position ) throws IOException {
+		if( block == null ) {
+			block = new byte[BLOCK_SIZE];
+		}
+		long start = position - position % BLOCK_SIZE;
+		if( source == null ) {
+			fillHead(windowSize - 1);
+			// Start from where the stream is rather than miss the position:
+			if( start < streamPos && position >= streamPos ) {
+				start = streamPos;
+			}
+		}
+		blockStart = start;
+		// Blocks stop where the EOF window starts, so a stream is not read past it
+		blockLen = readAt(start, block, 0, (int) Math.min(BLOCK_SIZE, length - windowSize - start));
+	}
+
+	/**
+	 * Read up to len bytes at a position, from the source if there is one and by
+	 * skipping the stream forwards to it if not.
+	 * @return the number of bytes read, which is 0 if the position is behind the stream
+	 */
+	private int readAt( long position, byte[] b, int off, int len ) throws IOException {
+		if( source != null ) {
+			int total = 0;
+			while( total < len ) {
+				int n = source.read(position + total, b, off + total, len - total);
+				if( n <= 0 ) {
+					break;
+				}
+				total += n;
+			}
+			return total;
+		}
+		if( ! skipTo(position) ) {
+			return 0;
+		}
+		return readFully(b, off, len);
+	}
+
+	/**
+	 * Skip the stream forwards to a position.
+	 * @return false if the position is behind the stream
+	 */
+	private boolean skipTo( long position ) throws IOException {
+		if( position < streamPos ) {
+			warnOnce("Cannot seek back to " + position + " in a stream already at " + streamPos
+					+ ", reading bytes between the windows as 0");
+			return false;
+		}
+		while( streamPos < position ) {
+			long skipped = in.skip(position - streamPos);
+			if( skipped <= 0 ) {
+				return false;
+			}
+			streamPos += skipped;
+		}
+		return true;
+	}
+
+	private int readFully( byte[] b, int off, int len ) throws IOException {
+		int total = 0;
+		while( total < len ) {
+			int n = in.read(b, off + total, len - total);
+			if( n == -1 ) {
+				break;
+			}
+			total += n;
+		}
+		streamPos += total;
+		return total;
+	}
+
+	private void warnOnce( String message ) {
+		if( ! warned ) {
+			warned = true;
+			log.warn(message);
+		}
+	}
+
+	private byte[] take() {
+		// The pool holds windows of the size the signature file needs, which is the same for every reader
+		byte[] b = pool.poll();
+		if( b != null && b.length == windowSize ) {
+			return b;
+		}
+		return new byte[windowSize];
+	}
+
+	private static void giveBack( byte[] b ) {
+		if( b != null && pool.size() < MAX_POOLED ) {
+			pool.offer(b);
+		}
+	}
+
 }
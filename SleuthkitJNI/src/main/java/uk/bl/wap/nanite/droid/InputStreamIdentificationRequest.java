@@ -7,10 +7,14 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import net.domesdaybook.reader.ByteReader;
+
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 
 /**
+ * An identification request over a stream, or over a resource that can be read at any
+ * position, keeping only the windows at each end in memory (see InputStreamByteReader).
+ *
  * @author Andrew Jackson <Andrew.Jackson@bl.uk>
  *
  */
@@ -19,17 +23,35 @@ public class InputStreamIdentificationRequest extends ByteArrayIdentificationReq
 	private InputStream in = null;
 	private InputStreamByteReader isReader;
 	
+	/**
+	 * @param metaData
+	 * @param identifier
+	 * @param in a stream, read forwards only; its length is taken from metaData
+	 * @param windowSize the number of bytes at each end to keep in memory
+	 */
 	public InputStreamIdentificationRequest(RequestMetaData metaData,
-			RequestIdentifier identifier, InputStream in) {
+			RequestIdentifier identifier, InputStream in, int windowSize) {
 		this.metaData = metaData;
 		this.identifier = identifier;
-		try {
-			this.size = in.available();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		long length = metaData.getSize() != null ? metaData.getSize() : 0;
+		this.size = (int) Math.min(length, Integer.MAX_VALUE);
 		this.in = in;
-		this.isReader = new InputStreamByteReader(in);
+		this.isReader = new InputStreamByteReader(in, length, windowSize);
+	}
+
+	/**
+	 * @param metaData
+	 * @param identifier
+	 * @param source a resource that can be read at any position
+	 * @param windowSize the number of bytes at each end to keep in memory
+	 * @throws IOException if the length of the resource cannot be read
+	 */
+	public InputStreamIdentificationRequest(RequestMetaData metaData,
+			RequestIdentifier identifier, SeekableSource source, int windowSize) throws IOException {
+		this.metaData = metaData;
+		this.identifier = identifier;
+		this.isReader = new InputStreamByteReader(source, windowSize);
+		this.size = (int) Math.min(isReader.length(), Integer.MAX_VALUE);
 	}
 
 	/* (non-Javadoc)
@@ -53,11 +75,24 @@ public class InputStreamIdentificationRequest extends ByteArrayIdentificationReq
 	 */
 	@Override
 	public void close() throws IOException {
-		in.close();
+		release();
+		if( in != null ) {
+			in.close();
+		}
+	}
+
+	/**
+	 * Return the reader's buffers to the pool without closing the stream,
+	 * for callers that do not own the stream. The request must not be used afterwards.
+	 */
+	public void release() {
+		isReader.release();
 	}
 
 	/* (non-Javadoc)
 	 * @see uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest#getSourceInputStream()
+	 * 
+	 * This is null for a request over a SeekableSource.
 	 */
 	@Override
 	public InputStream getSourceInputStream() throws IOException {
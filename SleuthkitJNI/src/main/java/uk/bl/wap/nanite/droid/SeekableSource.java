@@ -0,0 +1,74 @@
+/**
+ *
+ */
+package uk.bl.wap.nanite.droid;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.sleuthkit.datamodel.ReadContentInputStream;
+
+/**
+ * A resource that can be read at any position, for identifying it without streaming
+ * it from the start. Passing one to InputStreamByteReader lets it read the EOF window
+ * and anything between the windows directly, where a plain stream would have to skip
+ * over everything in front of them.
+ *
+ * A source is read by one identification at a time.
+ *
+ */
+public abstract class SeekableSource {
+
+	/**
+	 * @return the length of the resource
+	 */
+	public abstract long length() throws IOException;
+
+	/**
+	 * Read bytes at a position, as InputStream.read would from there.
+	 *
+	 * @return the number of bytes read, or -1 at the end of the resource
+	 */
+	public abstract int read( long position, byte[] b, int off, int len ) throws IOException;
+
+	/**
+	 * @param in a stream over Sleuth Kit content, which is moved about by the reads
+	 * @return a source reading from the stream
+	 */
+	public static SeekableSource of( final ReadContentInputStream in ) {
+		return new SeekableSource() {
+			@Override
+			public long length() {
+				return in.getLength();
+			}
+
+			@Override
+			public int read( long position, byte[] b, int off, int len ) throws IOException {
+				if( in.seek(position) != position ) {
+					return -1;
+				}
+				return in.read(b, off, len);
+			}
+		};
+	}
+
+	/**
+	 * @param file an open file, which is moved about by the reads
+	 * @return a source reading from the file
+	 */
+	public static SeekableSource of( final RandomAccessFile file ) {
+		return new SeekableSource() {
+			@Override
+			public long length() throws IOException {
+				return file.length();
+			}
+
+			@Override
+			public int read( long position, byte[] b, int off, int len ) throws IOException {
+				file.seek(position);
+				return file.read(b, off, len);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,378 @@
+/**
+ *
+ */
+package uk.bl.wap.nanite.droid;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import uk.gov.nationalarchives.droid.core.BinarySignatureIdentifier;
+import uk.gov.nationalarchives.droid.core.SignatureParseException;
+import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
+
+/**
+ * Keeps a precompiled copy of a binary signature file in a cache directory, so that
+ * the PRONOM XML only has to be parsed the first time a signature version is used.
+ *
+ * The cache holds the parsed and prepared FFSignatureFile in Java serialized form,
+ * behind a header recording the signature file version, a SHA-256 digest of the
+ * XML it was built from and the file's SignatureWindow, so that neither has to be
+ * worked out from the XML again. A cache whose header does not match is rebuilt
+ * from the XML. The cache is read with a memory-mapped channel rather than a
+ * buffered stream.
+ *
+ * Deserializing is only as safe as the file being read, so the default cache lives
+ * in the user's home directory, which is created readable by its owner only, and only
+ * DROID signature classes and the basic types they are built from are deserialized.
+ * A cache that cannot be read is rebuilt from the XML.
+ *
+ * BinarySignatureIdentifier has no setter for its parsed signatures, so a loaded
+ * cache is injected into its private sigFile field. If DROID no longer has that
+ * field, this fails with an IllegalStateException rather than quietly parsing the
+ * XML every time.
+ *
+ */
+public class SignatureCache {
+
+	private static Logger log = Logger.getLogger(SignatureCache.class.getName());
+
+	private static final int MAGIC = 0x4e534333; // "NSC3"
+	private static final String SIG_FILE_FIELD = "sigFile";
+	private static final String DIGEST = "SHA-256";
+	// Packages whose classes make up parsed signatures, and the other classes allowed in a cache:
+	private static final String[] ALLOWED_PACKAGES = {
+		"uk.gov.nationalarchives.droid.core.signature.",
+		"net.domesdaybook."
+	};
+	private static final Set<String> ALLOWED_CLASSES = new HashSet<String>(Arrays.asList(
+			"java.lang.Boolean", "java.lang.Byte", "java.lang.Character", "java.lang.Enum",
+			"java.lang.Integer", "java.lang.Long", "java.lang.Number", "java.lang.Object",
+			"java.lang.Short", "java.lang.String",
+			"java.util.ArrayList", "java.util.HashMap", "java.util.HashSet", "java.util.LinkedHashMap",
+			"java.util.LinkedHashSet", "java.util.LinkedList", "java.util.TreeMap", "java.util.TreeSet"));
+
+	private SignatureCache() { }
+
+	/**
+	 * @return the cache directory used when the caller has no better place for it,
+	 * in the user's home directory
+	 */
+	public static File getDefaultCacheDir() {
+		return new File(System.getProperty("user.home") + File.separator + ".droid6", "signature-cache");
+	}
+
+	/**
+	 * @param signatureFileName e.g. DROID_SignatureFile_V66.xml
+	 * @return the version number in the file name, e.g. 66
+	 */
+	public static int getVersion( String signatureFileName ) {
+		String version = new File(signatureFileName).getName().replace("DROID_SignatureFile_V", "");
+		version = version.replace(".xml", "");
+		return Integer.parseInt(version);
+	}
+
+	/**
+	 * A signature file's parsed signatures and window, as loaded from the cache or the XML.
+	 */
+	public static class Signatures {
+
+		private final BinarySignatureIdentifier identifier;
+		private final SignatureWindow window;
+
+		Signatures( BinarySignatureIdentifier identifier, SignatureWindow window ) {
+			this.identifier = identifier;
+			this.window = window;
+		}
+
+		/**
+		 * @return an initialised identifier with no scan limit
+		 */
+		public BinarySignatureIdentifier getIdentifier() {
+			return identifier;
+		}
+
+		/**
+		 * @return how much of each end of a resource the signatures can look at
+		 */
+		public SignatureWindow getWindow() {
+			return window;
+		}
+	}
+
+	/**
+	 * Create an initialised BinarySignatureIdentifier for the given signature file,
+	 * and the file's window, from the cache if there is a current one and from the
+	 * XML otherwise.
+	 *
+	 * @param signatureFile path to the DROID signature file XML
+	 * @param version the version of the signature file
+	 * @param cacheDir where to keep the precompiled signatures
+	 * @return
+	 * @throws SignatureParseException
+	 * @throws IOException if the window could not be read from the XML
+	 * @throws IllegalStateException if the cached signatures cannot be given to DROID
+	 */
+	public static Signatures load( String signatureFile, int version, File cacheDir ) throws SignatureParseException, IOException {
+		BinarySignatureIdentifier bsi = new BinarySignatureIdentifier();
+		bsi.setSignatureFile(signatureFile);
+		File cacheFile = new File(cacheDir, "DROID_SignatureFile_V" + version + ".bin");
+		byte[] sourceDigest;
+		try {
+			sourceDigest = digest(new File(signatureFile));
+		} catch( IOException e ) {
+			log.warn("Could not read signature file " + signatureFile + ", not caching it: " + e);
+			bsi.init();
+			return new Signatures(bsi, SignatureWindow.read(new File(signatureFile)));
+		}
+
+		if( cacheFile.exists() ) {
+			Signatures cached = null;
+			try {
+				cached = read(cacheFile, version, sourceDigest, bsi);
+				if( cached == null ) {
+					log.info("Signature cache is stale, rebuilding: " + cacheFile.getAbsolutePath());
+				}
+			} catch( Exception e ) {
+				log.warn("Could not load signature cache " + cacheFile.getAbsolutePath() + ": " + e);
+			}
+			if( cached != null ) {
+				return cached;
+			}
+		}
+
+		bsi.init();
+		SignatureWindow window = SignatureWindow.read(new File(signatureFile));
+		try {
+			write(cacheFile, version, sourceDigest, window, bsi.getSigFile());
+		} catch( Exception e ) {
+			log.warn("Could not write signature cache " + cacheFile.getAbsolutePath() + ": " + e);
+			cacheFile.delete();
+		}
+		return new Signatures(bsi, window);
+	}
+
+	/**
+	 * Create a BinarySignatureIdentifier over the same parsed signatures as another,
+	 * so that it can be given its own scan limit without parsing the signatures again.
+	 * The signatures are only read while identifying, so sharing them is safe.
+	 *
+	 * @param bsi an initialised identifier
+	 * @param signatureFile path to the DROID signature file XML it was loaded from
+	 * @return an identifier sharing the signatures of bsi
+	 */
+	public static BinarySignatureIdentifier share( BinarySignatureIdentifier bsi, String signatureFile ) {
+		BinarySignatureIdentifier shared = new BinarySignatureIdentifier();
+		shared.setSignatureFile(signatureFile);
+		setSigFile(shared, bsi.getSigFile());
+		return shared;
+	}
+
+	/**
+	 * @return the SHA-256 digest of a file's contents
+	 */
+	private static byte[] digest( File file ) throws IOException {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance(DIGEST);
+		} catch( NoSuchAlgorithmException e ) {
+			throw new IOException(e);
+		}
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			int len;
+			while( (len = in.read(buffer)) != -1 ) {
+				md.update(buffer, 0, len);
+			}
+		} finally {
+			in.close();
+		}
+		return md.digest();
+	}
+
+	/**
+	 * @param bsi the identifier to give the cached signatures to
+	 * @return the cached signatures, or null if the cache was built for a different signature file
+	 */
+	private static Signatures read( File cacheFile, int version, byte[] sourceDigest, BinarySignatureIdentifier bsi ) throws IOException, ClassNotFoundException {
+		FileInputStream fis = new FileInputStream(cacheFile);
+		try {
+			FileChannel channel = fis.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+			if( in.readInt() != MAGIC || in.readInt() != version ) {
+				return null;
+			}
+			byte[] digest = new byte[in.readUnsignedByte()];
+			in.readFully(digest);
+			if( ! Arrays.equals(digest, sourceDigest) ) {
+				return null;
+			}
+			SignatureWindow window = new SignatureWindow(in.readLong(), in.readLong());
+			ObjectInputStream ois = new SignatureInputStream(in);
+			setSigFile(bsi, (FFSignatureFile) ois.readObject());
+			return new Signatures(bsi, window);
+		} finally {
+			fis.close();
+		}
+	}
+
+	private static void write( File cacheFile, int version, byte[] sourceDigest, SignatureWindow window, FFSignatureFile sigFile ) throws IOException {
+		File dir = cacheFile.getParentFile();
+		if( ! dir.isDirectory() && ! (dir.mkdirs() && ownerOnly(dir)) ) {
+			throw new IOException("Could not create " + dir + " readable by its owner only");
+		}
+		// Write to a temporary file first so a concurrent reader never sees half a cache:
+		File tmp = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+		ownerOnly(tmp);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(version);
+			out.writeByte(sourceDigest.length);
+			out.write(sourceDigest);
+			out.writeLong(window.getScanLimit());
+			out.writeLong(window.getLongestMatch());
+			ObjectOutputStream oos = new ObjectOutputStream(out);
+			oos.writeObject(sigFile);
+			oos.flush();
+		} finally {
+			out.close();
+		}
+		if( ! tmp.renameTo(cacheFile) ) {
+			tmp.delete();
+			throw new IOException("Could not move " + tmp + " to " + cacheFile);
+		}
+	}
+
+	/**
+	 * Take away everyone's access to a file but its owner's
+	 *
+	 * @return true if the permissions could be set
+	 */
+	private static boolean ownerOnly( File file ) {
+		boolean set = file.setReadable(false, false) & file.setWritable(false, false) & file.setExecutable(false, false);
+		set &= file.setReadable(true, true) & file.setWritable(true, true);
+		if( file.isDirectory() ) {
+			set &= file.setExecutable(true, true);
+		}
+		return set;
+	}
+
+	private static void setSigFile( BinarySignatureIdentifier bsi, FFSignatureFile sigFile ) {
+		try {
+			Field field = BinarySignatureIdentifier.class.getDeclaredField(SIG_FILE_FIELD);
+			field.setAccessible(true);
+			field.set(bsi, sigFile);
+		} catch( NoSuchFieldException e ) {
+			throw new IllegalStateException("BinarySignatureIdentifier has no " + SIG_FILE_FIELD + " field to set", e);
+		} catch( IllegalAccessException e ) {
+			throw new IllegalStateException("Cannot set the " + SIG_FILE_FIELD + " field of BinarySignatureIdentifier", e);
+		}
+	}
+
+	/**
+	 * Deserializes only the classes parsed signatures are made of, so that a tampered
+	 * cache cannot instantiate anything else.
+	 */
+	private static class SignatureInputStream extends ObjectInputStream {
+
+		SignatureInputStream( InputStream in ) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass( ObjectStreamClass desc ) throws IOException, ClassNotFoundException {
+			if( ! isAllowed(desc.getName()) ) {
+				throw new InvalidClassException(desc.getName(), "not allowed in a signature cache");
+			}
+			return super.resolveClass(desc);
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass( String[] interfaces ) throws IOException, ClassNotFoundException {
+			throw new InvalidClassException("proxy classes are not allowed in a signature cache");
+		}
+
+		private static boolean isAllowed( String name ) {
+			// Arrays are allowed if what they hold is: [I, [[B, [Ljava.lang.String; and so on
+			String element = name;
+			if( name.startsWith("[") ) {
+				int dims = name.lastIndexOf('[') + 1;
+				if( dims == name.length() - 1 ) {
+					return true;
+				}
+				if( name.charAt(dims) != 'L' || ! name.endsWith(";") ) {
+					return false;
+				}
+				element = name.substring(dims + 1, name.length() - 1);
+			}
+			if( ALLOWED_CLASSES.contains(element) ) {
+				return true;
+			}
+			for( String prefix : ALLOWED_PACKAGES ) {
+				if( element.startsWith(prefix) ) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * An InputStream over a ByteBuffer, so the mapped cache can be deserialized in place.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream( ByteBuffer buffer ) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read( byte[] b, int off, int len ) {
+			if( len == 0 ) {
+				return 0;
+			}
+			if( ! buffer.hasRemaining() ) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+}
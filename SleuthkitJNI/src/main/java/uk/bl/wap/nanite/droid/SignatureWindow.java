@@ -0,0 +1,159 @@
+/**
+ *
+ */
+package uk.bl.wap.nanite.droid;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * How much of each end of a resource the binary signatures in a signature file can look at.
+ *
+ * A byte sequence anchored to BOF or EOF with a maximum offset on every sub-sequence can only
+ * match within a fixed distance of its end: the sum of the maximum offsets and the lengths of
+ * its sequences and fragments. The scan limit is the largest such distance in the file.
+ * Sequences with no maximum offset, or with no anchor, are searched for as far as the scan
+ * limit allows, and a match found at the limit runs on for up to the longest sequence, so the
+ * window to keep from each end is the scan limit plus that length.
+ *
+ * The files DROID uses are compiled: sequences and fragments are plain hex, which is all
+ * this reads. A window worked out this way covers every bounded signature in the file, unlike
+ * a fixed 64 KB, which some signatures reach past.
+ *
+ */
+public class SignatureWindow {
+
+	private final long scanLimit;
+	private final long longestMatch;
+
+	SignatureWindow( long scanLimit, long longestMatch ) {
+		this.scanLimit = scanLimit;
+		this.longestMatch = longestMatch;
+	}
+
+	/**
+	 * Work out the window of a DROID signature file.
+	 *
+	 * @param signatureFile the signature file XML
+	 * @return its window
+	 * @throws IOException if the file could not be read or parsed
+	 */
+	public static SignatureWindow read( File signatureFile ) throws IOException {
+		ExtentHandler handler = new ExtentHandler();
+		try {
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+			factory.newSAXParser().parse(signatureFile, handler);
+		} catch (ParserConfigurationException e) {
+			throw new IOException("Could not read signature file " + signatureFile, e);
+		} catch (SAXException e) {
+			throw new IOException("Could not read signature file " + signatureFile, e);
+		}
+		return new SignatureWindow(handler.scanLimit, handler.longestMatch);
+	}
+
+	/**
+	 * @return how far from either end of a resource to search for signatures: every
+	 * bounded signature matches within this distance
+	 */
+	public long getScanLimit() {
+		return scanLimit;
+	}
+
+	/**
+	 * @return the length of the longest sequence a signature matches
+	 */
+	long getLongestMatch() {
+		return longestMatch;
+	}
+
+	/**
+	 * @return the number of bytes at each end of a resource that identification with the
+	 * scan limit can read
+	 */
+	public int getWindowSize() {
+		return (int) Math.min(Integer.MAX_VALUE, scanLimit + longestMatch);
+	}
+
+	/**
+	 * Adds up each ByteSequence's sub-sequences as they are parsed.
+	 */
+	private static class ExtentHandler extends DefaultHandler {
+
+		private long scanLimit = 0;
+		private long longestMatch = 0;
+		// The ByteSequence being parsed:
+		private boolean bounded;
+		private long extent;
+		private long matchLength;
+		// Hex text of the Sequence or fragment being parsed, if any:
+		private StringBuilder text;
+
+		@Override
+		public void startElement( String uri, String localName, String qName, Attributes attributes ) {
+			if( "ByteSequence".equals(localName) ) {
+				String reference = attributes.getValue("Reference");
+				bounded = "BOFoffset".equals(reference) || "EOFoffset".equals(reference);
+				extent = 0;
+				matchLength = 0;
+			} else if( "SubSequence".equals(localName) ) {
+				String maxOffset = attributes.getValue("SubSeqMaxOffset");
+				if( maxOffset == null ) {
+					bounded = false;
+				} else {
+					extent += Long.parseLong(maxOffset);
+				}
+			} else if( "Sequence".equals(localName) ) {
+				text = new StringBuilder();
+			} else if( "LeftFragment".equals(localName) || "RightFragment".equals(localName) ) {
+				String maxOffset = attributes.getValue("MaxOffset");
+				if( maxOffset == null ) {
+					bounded = false;
+				} else {
+					extent += Long.parseLong(maxOffset);
+				}
+				text = new StringBuilder();
+			}
+		}
+
+		@Override
+		public void characters( char[] ch, int start, int length ) {
+			if( text != null ) {
+				text.append(ch, start, length);
+			}
+		}
+
+		@Override
+		public void endElement( String uri, String localName, String qName ) {
+			if( "Sequence".equals(localName) || "LeftFragment".equals(localName) || "RightFragment".equals(localName) ) {
+				long bytes = hexLength(text);
+				extent += bytes;
+				matchLength += bytes;
+				text = null;
+			} else if( "ByteSequence".equals(localName) ) {
+				if( bounded ) {
+					scanLimit = Math.max(scanLimit, extent);
+				}
+				longestMatch = Math.max(longestMatch, matchLength);
+			}
+		}
+
+		private static long hexLength( CharSequence hex ) {
+			long digits = 0;
+			for( int i = 0; i < hex.length(); i++ ) {
+				if( Character.digit(hex.charAt(i), 16) >= 0 ) {
+					digits++;
+				}
+			}
+			return (digits + 1) / 2;
+		}
+	}
+
+}
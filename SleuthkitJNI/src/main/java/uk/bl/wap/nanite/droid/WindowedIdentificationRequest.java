@@ -0,0 +1,96 @@
+/**
+ *
+ */
+package uk.bl.wap.nanite.droid;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.domesdaybook.reader.ByteReader;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+
+/**
+ * An identification request over just the first and last bytes of a resource.
+ *
+ * This is for callers that have already streamed the whole resource once (to hash it, say)
+ * and kept only the windows that BOF and EOF signatures look at, so DROID never needs the
+ * resource again. Bytes between the two windows are not known, and reading one throws
+ * rather than matching signatures against made-up bytes, so the identifier must not be
+ * allowed to scan further into the resource than the windows reach.
+ *
+ */
+public class WindowedIdentificationRequest extends ByteArrayIdentificationRequest implements ByteReader {
+
+	private final byte[] head;
+	private final byte[] tail;
+	private final long length;
+	private final long tailStart;
+
+	/**
+	 * @param metaData
+	 * @param identifier
+	 * @param head the first bytes of the resource
+	 * @param tail the last bytes of the resource, which may overlap head for small resources
+	 * @param length the full length of the resource
+	 */
+	public WindowedIdentificationRequest(RequestMetaData metaData,
+			RequestIdentifier identifier, byte[] head, byte[] tail, long length) {
+		this.metaData = metaData;
+		this.identifier = identifier;
+		this.head = head;
+		this.tail = tail;
+		this.length = length;
+		this.tailStart = length - tail.length;
+		this.size = (int) Math.min(length, Integer.MAX_VALUE);
+	}
+
+	/* (non-Javadoc)
+	 * @see net.domesdaybook.reader.ByteReader#readByte(long)
+	 */
+	@Override
+	public byte readByte(long position) {
+		if( position >= 0 && position < head.length ) {
+			return head[(int) position];
+		}
+		if( position >= tailStart && position >= 0 && position < length ) {
+			return tail[(int) (position - tailStart)];
+		}
+		throw new IndexOutOfBoundsException("Position " + position + " is outside the first " + head.length
+				+ " and last " + tail.length + " bytes of a resource of " + length + " bytes");
+	}
+
+	/* (non-Javadoc)
+	 * @see uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest#getByte(long)
+	 */
+	@Override
+	public byte getByte(long position) {
+		return readByte(position);
+	}
+
+	/* (non-Javadoc)
+	 * @see uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest#getReader()
+	 */
+	@Override
+	public ByteReader getReader() {
+		return this;
+	}
+
+	/* (non-Javadoc)
+	 * @see uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest#size()
+	 */
+	@Override
+	public long size() {
+		return length;
+	}
+
+	/* (non-Javadoc)
+	 * @see uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest#getSourceInputStream()
+	 */
+	@Override
+	public InputStream getSourceInputStream() throws IOException {
+		return new ByteArrayInputStream(head);
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests LayoutFile.RangeIndex's lookup of the range holding a file offset,
+ * with empty ranges among the others.
+ */
+public class LayoutFileRangeIndexTest {
+
+	private static LayoutFile.RangeIndex index(long... lengths) {
+		List<TskFileRange> ranges = new ArrayList<TskFileRange>();
+		long imageStart = 1000;
+		for (int i = 0; i < lengths.length; i++) {
+			ranges.add(new TskFileRange(imageStart, lengths[i], i));
+			imageStart += lengths[i] + 512;
+		}
+		return new LayoutFile.RangeIndex(ranges);
+	}
+
+	@Test
+	public void testRangeAt() {
+		LayoutFile.RangeIndex index = index(10, 5, 20);
+		assertEquals(3, index.size());
+		assertEquals(0, index.rangeAt(0));
+		assertEquals(0, index.rangeAt(9));
+		assertEquals(1, index.rangeAt(10));
+		assertEquals(1, index.rangeAt(14));
+		assertEquals(2, index.rangeAt(15));
+		assertEquals(2, index.rangeAt(34));
+		assertEquals(-1, index.rangeAt(35));
+		assertEquals(-1, index.rangeAt(-1));
+	}
+
+	@Test
+	public void testEmptyRangesAreSkipped() {
+		//empty ranges first, between others, in a row and last
+		LayoutFile.RangeIndex index = index(0, 10, 0, 0, 5, 0, 20, 0);
+		assertEquals(8, index.size());
+		assertEquals(1, index.rangeAt(0));
+		assertEquals(1, index.rangeAt(9));
+		assertEquals(4, index.rangeAt(10));
+		assertEquals(4, index.rangeAt(14));
+		assertEquals(6, index.rangeAt(15));
+		assertEquals(6, index.rangeAt(34));
+		assertEquals(-1, index.rangeAt(35));
+	}
+
+	@Test
+	public void testOnlyEmptyRanges() {
+		LayoutFile.RangeIndex index = index(0, 0, 0);
+		assertEquals(3, index.size());
+		assertEquals(-1, index.rangeAt(0));
+	}
+
+	@Test
+	public void testNoRanges() {
+		LayoutFile.RangeIndex index = index();
+		assertEquals(0, index.size());
+		assertEquals(-1, index.rangeAt(0));
+	}
+}
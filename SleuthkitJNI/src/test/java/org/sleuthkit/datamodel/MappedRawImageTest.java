@@ -0,0 +1,150 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests MappedRawImage's lookup of the chunk holding an offset, and reads
+ * across chunks and files.
+ */
+public class MappedRawImageTest {
+
+	private static byte[] data(int size) {
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) (i * 7 + (i >> 8));
+		}
+		return data;
+	}
+
+	/**
+	 * @return the data split into chunks of the given sizes
+	 */
+	private static MappedRawImage chunked(byte[] data, int... sizes) {
+		long[] starts = new long[sizes.length];
+		ByteBuffer[] chunks = new ByteBuffer[sizes.length];
+		int start = 0;
+		for (int i = 0; i < sizes.length; i++) {
+			starts[i] = start;
+			chunks[i] = ByteBuffer.wrap(data, start, sizes[i]).slice();
+			start += sizes[i];
+		}
+		return new MappedRawImage(starts, chunks);
+	}
+
+	@Test
+	public void testChunkAt() {
+		MappedRawImage image = chunked(data(100), 10, 1, 39, 50);
+		assertEquals(0, image.chunkAt(0));
+		assertEquals(0, image.chunkAt(9));
+		assertEquals(1, image.chunkAt(10));
+		assertEquals(2, image.chunkAt(11));
+		assertEquals(2, image.chunkAt(49));
+		assertEquals(3, image.chunkAt(50));
+		assertEquals(3, image.chunkAt(99));
+	}
+
+	@Test
+	public void testSingleChunk() {
+		MappedRawImage image = chunked(data(10), 10);
+		assertEquals(10, image.getSize());
+		assertEquals(0, image.chunkAt(0));
+		assertEquals(0, image.chunkAt(9));
+	}
+
+	@Test
+	public void testReadsAcrossChunks() throws TskCoreException {
+		byte[] data = data(100);
+		MappedRawImage image = chunked(data, 10, 1, 39, 50);
+		assertEquals(100, image.getSize());
+		for (int offset = 0; offset < 100; offset += 3) {
+			for (int len = 1; len <= 100 - offset; len += 7) {
+				byte[] buf = new byte[len + 2];
+				assertEquals(len, image.read(buf, 2, offset, len));
+				for (int i = 0; i < len; i++) {
+					assertEquals(data[offset + i], buf[2 + i]);
+				}
+				ByteBuffer buffer = ByteBuffer.allocate(len);
+				assertEquals(len, image.read(buffer, offset));
+				assertEquals(len, buffer.position());
+				for (int i = 0; i < len; i++) {
+					assertEquals(data[offset + i], buffer.get(i));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testReadAtEnd() throws TskCoreException {
+		MappedRawImage image = chunked(data(100), 60, 40);
+		byte[] buf = new byte[20];
+		assertEquals(10, image.read(buf, 0, 90, 20));
+		assertEquals(0, image.read(buf, 0, 100, 20));
+		assertEquals(0, image.read(ByteBuffer.allocate(20), 100));
+	}
+
+	@Test
+	public void testReadAfterClose() throws TskCoreException {
+		MappedRawImage image = chunked(data(100), 60, 40);
+		image.close();
+		assertEquals(-1, image.read(new byte[10], 0, 0, 10));
+		assertEquals(-1, image.read(ByteBuffer.allocate(10), 0));
+		image.close();
+	}
+
+	@Test
+	public void testSplitImageFiles() throws IOException, TskCoreException {
+		byte[] data = data(10000);
+		File first = File.createTempFile("MappedRawImageTest", ".001");
+		File second = File.createTempFile("MappedRawImageTest", ".002");
+		try {
+			write(first, data, 0, 4096);
+			write(second, data, 4096, data.length - 4096);
+			MappedRawImage image = new MappedRawImage(new String[]{first.getPath(), second.getPath()});
+			try {
+				assertEquals(data.length, image.getSize());
+				assertEquals(0, image.chunkAt(4095));
+				assertEquals(1, image.chunkAt(4096));
+				byte[] buf = new byte[data.length];
+				assertEquals(data.length, image.read(buf, 0, 0, data.length));
+				assertArrayEquals(data, buf);
+			} finally {
+				image.close();
+			}
+		} finally {
+			first.delete();
+			second.delete();
+		}
+	}
+
+	private static void write(File file, byte[] data, int off, int len) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(data, off, len);
+		} finally {
+			out.close();
+		}
+	}
+}
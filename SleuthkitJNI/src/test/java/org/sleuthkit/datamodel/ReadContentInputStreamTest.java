@@ -0,0 +1,202 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2011 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests ReadContentInputStream's read-ahead buffer against content held in
+ * memory.
+ */
+public class ReadContentInputStreamTest {
+
+	private static final int SIZE = 3 * ReadContentInputStream.ALIGNMENT + 123;
+
+	/**
+	 * Content backed by an array, which reads at most maxRead bytes at a time
+	 * and records the arrays it was read into
+	 */
+	private static class ArrayContent implements InvocationHandler {
+
+		private final byte[] data;
+		private final int maxRead;
+		private final List<byte[]> reads = new ArrayList<byte[]>();
+
+		ArrayContent(byte[] data, int maxRead) {
+			this.data = data;
+			this.maxRead = maxRead;
+		}
+
+		Content content() {
+			return (Content) Proxy.newProxyInstance(Content.class.getClassLoader(),
+					new Class<?>[]{Content.class}, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			String name = method.getName();
+			if (name.equals("getSize")) {
+				return (long) data.length;
+			} else if (name.equals("getId")) {
+				return 1L;
+			} else if (name.equals("getName")) {
+				return "test";
+			} else if (name.equals("read") && args[0] instanceof byte[]) {
+				byte[] buf = (byte[]) args[0];
+				long offset = (Long) args[1];
+				long len = (Long) args[2];
+				reads.add(buf);
+				if (offset >= data.length) {
+					return -1;
+				}
+				int n = (int) Math.min(Math.min(len, maxRead), data.length - offset);
+				System.arraycopy(data, (int) offset, buf, 0, n);
+				return n;
+			}
+			throw new UnsupportedOperationException(name);
+		}
+	}
+
+	private static byte[] data(int size) {
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) (i * 31 + (i >> 8));
+		}
+		return data;
+	}
+
+	private static byte[] readAll(ReadContentInputStream in, int chunk) throws IOException {
+		byte[] out = new byte[(int) in.getLength()];
+		byte[] b = new byte[chunk + 3];
+		int total = 0;
+		int n;
+		while ((n = in.read(b, 3, chunk)) != -1) {
+			System.arraycopy(b, 3, out, total, n);
+			total += n;
+		}
+		assertEquals(out.length, total);
+		return out;
+	}
+
+	@Test
+	public void testBufferedReadsMatchContent() throws IOException {
+		byte[] data = data(SIZE);
+		for (int chunk : new int[]{1, 7, 1000, ReadContentInputStream.ALIGNMENT, 5000}) {
+			ArrayContent content = new ArrayContent(data, Integer.MAX_VALUE);
+			ReadContentInputStream in = new ReadContentInputStream(content.content(), ReadContentInputStream.ALIGNMENT);
+			assertArrayEquals("chunk " + chunk, data, readAll(in, chunk));
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	public void testSmallReadsAreServedFromBuffer() throws IOException {
+		ArrayContent content = new ArrayContent(data(SIZE), Integer.MAX_VALUE);
+		ReadContentInputStream in = new ReadContentInputStream(content.content(), 2 * ReadContentInputStream.ALIGNMENT);
+		byte[] b = new byte[16];
+		for (int i = 0; i < 100; i++) {
+			assertEquals(16, in.read(b, 0, 16));
+		}
+		assertEquals(1, content.reads.size());
+	}
+
+	@Test
+	public void testSingleBytesAreUnsigned() throws IOException {
+		byte[] data = data(SIZE);
+		ReadContentInputStream in = new ReadContentInputStream(new ArrayContent(data, Integer.MAX_VALUE).content(),
+				ReadContentInputStream.ALIGNMENT);
+		for (int i = 0; i < data.length; i++) {
+			int value = in.read();
+			assertTrue(value >= 0 && value <= 255);
+			assertEquals(data[i] & 0xFF, value);
+		}
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	public void testSeekWithinAndOutsideBuffer() throws IOException {
+		byte[] data = data(SIZE);
+		ReadContentInputStream in = new ReadContentInputStream(new ArrayContent(data, Integer.MAX_VALUE).content(),
+				ReadContentInputStream.ALIGNMENT);
+		long[] positions = {100, 50, 4095, 4096, 9000, 10, SIZE - 1, 0};
+		for (long position : positions) {
+			assertEquals(position, in.seek(position));
+			assertEquals(data[(int) position] & 0xFF, in.read());
+			assertEquals(position + 1, in.getCurPosition());
+		}
+		assertEquals(SIZE, in.seek(SIZE + 10));
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	public void testShortContentReads() throws IOException {
+		byte[] data = data(SIZE);
+		//reads stop before the position the chunk was read for
+		ArrayContent content = new ArrayContent(data, 100);
+		ReadContentInputStream in = new ReadContentInputStream(content.content(), ReadContentInputStream.ALIGNMENT);
+		in.seek(ReadContentInputStream.ALIGNMENT + 500);
+		assertEquals(data[ReadContentInputStream.ALIGNMENT + 500] & 0xFF, in.read());
+		in.seek(0);
+		assertArrayEquals(data, readAll(in, 333));
+	}
+
+	@Test
+	public void testLargeReadsBypassBuffer() throws IOException {
+		byte[] data = data(SIZE);
+		ArrayContent content = new ArrayContent(data, Integer.MAX_VALUE);
+		ReadContentInputStream in = new ReadContentInputStream(content.content(), ReadContentInputStream.ALIGNMENT);
+		byte[] b = new byte[SIZE];
+		assertEquals(SIZE, in.read(b, 0, SIZE));
+		assertArrayEquals(data, b);
+		assertEquals(1, content.reads.size());
+		assertSame(b, content.reads.get(0));
+	}
+
+	@Test
+	public void testSharedBuffer() throws IOException {
+		byte[] buffer = new byte[ReadContentInputStream.ALIGNMENT];
+		for (int size : new int[]{0, 1, SIZE}) {
+			byte[] data = data(size);
+			ReadContentInputStream in = new ReadContentInputStream(new ArrayContent(data, Integer.MAX_VALUE).content(), buffer);
+			byte[] b = new byte[size + 1];
+			int total = 0;
+			int n;
+			while ((n = in.read(b, total, 10)) != -1) {
+				total += n;
+			}
+			assertEquals(size, total);
+			for (int i = 0; i < size; i++) {
+				assertEquals(data[i], b[i]);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBufferSmallerThanAlignment() {
+		new ReadContentInputStream(new ArrayContent(data(10), Integer.MAX_VALUE).content(),
+				new byte[ReadContentInputStream.ALIGNMENT - 1]);
+	}
+}